@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups in a {@see Configuration} of the given number of sections, each holding ten values and
+ * an array of ten items.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationBenchmark {
+    @Param({"100", "10000"})
+    public int sections;
+
+    private Map<String, String> values;
+    private Configuration config;
+    private String[] names;
+    private String[] keys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        this.values = new HashMap<String, String>();
+        this.names = new String[this.sections];
+        this.keys = new String[this.sections];
+        for (int i = 0; i < this.sections; i++) {
+            this.names[i] = "section" + i;
+            this.keys[i] = this.names[i] + ".key5";
+            for (int j = 0; j < 10; j++) {
+                this.values.put(this.names[i] + ".key" + j, String.valueOf(j));
+                this.values.put(this.names[i] + ".items." + j, "item" + j);
+            }
+        }
+        this.config = new Configuration(this.values);
+    }
+
+    private int next() {
+        int i = this.next + 1;
+        this.next = i == this.sections ? 0 : i;
+        return this.next;
+    }
+
+    @Benchmark
+    public Configuration create() {
+        return new Configuration(this.values);
+    }
+
+    @Benchmark
+    public Configuration getSection() {
+        return this.config.getSection(this.names[this.next()]);
+    }
+
+    @Benchmark
+    public List<String> getArray() {
+        return this.config.getSection(this.names[this.next()]).getArray("items");
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return this.config.contains(this.keys[this.next()]);
+    }
+}
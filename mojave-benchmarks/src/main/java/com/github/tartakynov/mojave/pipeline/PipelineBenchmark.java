@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import com.github.tartakynov.mojave.Configuration;
+import com.github.tartakynov.mojave.Sink;
+import com.github.tartakynov.mojave.Source;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end throughput of a {@see Pipeline} moving messages from an in-memory source to an
+ * in-memory sink. Every invocation lets the source produce a fixed number of messages and waits
+ * until the sink has received them all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+    private static final int MESSAGES = 100000;
+
+    @Param({"1", "4"})
+    public int concurrencyLevel;
+
+    @Param({"1", "64"})
+    public int batchSize;
+
+    private StubSource source;
+    private StubSink sink;
+    private Pipeline pipeline;
+    private long expected;
+
+    private static Configuration section(String name, String... keyValues) {
+        Map<String, String> values = new HashMap<String, String>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            values.put(keyValues[i], keyValues[i + 1]);
+        }
+        return new Configuration(name, values);
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        String batchSize = String.valueOf(this.batchSize);
+        this.source = new StubSource();
+        this.source.configure(section("stub", "concurrencyLevel", String.valueOf(this.concurrencyLevel),
+                "batchSize", batchSize, "batchTimeout", "1"));
+        this.sink = new StubSink();
+        this.sink.configure(section("stub"));
+        this.pipeline = new Pipeline(section("pipeline"));
+        this.pipeline.addSink(this.sink, section("stub", "batchSize", batchSize, "batchTimeout", "1"));
+        this.pipeline.attach(this.source, Transform.IDENTITY);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        this.pipeline.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long sourceToSink() {
+        this.expected += MESSAGES;
+        this.source.remaining.addAndGet(MESSAGES);
+        while (this.sink.received.get() < this.expected) {
+            LockSupport.parkNanos(10000);
+        }
+        return this.sink.received.get();
+    }
+
+    /**
+     * Produces the same message as long as it has permits left.
+     */
+    static class StubSource extends Source {
+        final AtomicLong remaining = new AtomicLong();
+
+        @Override
+        public String take() {
+            for (;;) {
+                long current = this.remaining.get();
+                if (current <= 0) {
+                    return null;
+                }
+                if (this.remaining.compareAndSet(current, current - 1)) {
+                    return "message";
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts received messages.
+     */
+    static class StubSink implements Sink {
+        final AtomicLong received = new AtomicLong();
+        private String name;
+
+        @Override
+        public CompletableFuture<Void> write(List<String> batch) {
+            this.received.addAndGet(batch.size());
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public void configure(Configuration config) {
+            this.name = config.getSectionName();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of passing a batch through the JavaScript callback a {@see SourceRunner} attaches to the
+ * pipeline, for a callback returning the batch as is and one building new messages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallbackBenchmark {
+    @Param({"1", "64"})
+    public int batchSize;
+
+    private ScriptTransform identity;
+    private ScriptTransform map;
+    private List<CharSequence> batch;
+
+    @Setup
+    public void setUp() throws Exception {
+        Context ctx = Context.enter();
+        Global global = new Global(ctx, false);
+        ContextPool contexts = global.getContextPool();
+        this.identity = new ScriptTransform(global, this.compile(ctx, global,
+                "(function (messages) { return messages; })"), contexts);
+        this.map = new ScriptTransform(global, this.compile(ctx, global,
+                "(function (messages) { return messages.map(function (m) { return 'even ' + m; }); })"), contexts);
+        this.batch = new ArrayList<CharSequence>(this.batchSize);
+        for (int i = 0; i < this.batchSize; i++) {
+            this.batch.add("message " + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        Context.exit();
+    }
+
+    private Function compile(Context ctx, Global global, String source) {
+        return (Function) ctx.evaluateString(global, source, "callback", 1, null);
+    }
+
+    @Benchmark
+    public List<CharSequence> identity() {
+        return this.identity.apply(this.batch);
+    }
+
+    @Benchmark
+    public List<CharSequence> map() {
+        return this.map.apply(this.batch);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reading one field of a JSON message from a callback with JSON.parse, the native
+ * parseJson and the lazy json view, for messages with few and many fields.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    @Param({"4", "64"})
+    public int fields;
+
+    private Context ctx;
+    private Global global;
+    private Function jsonParse;
+    private Function parseJson;
+    private Function json;
+    private Object[] args;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.ctx = Context.enter();
+        this.global = new Global(this.ctx, false);
+        this.jsonParse = this.compile("(function (m) { return JSON.parse(m).field1; })");
+        this.parseJson = this.compile("(function (m) { return parseJson(m).field1; })");
+        this.json = this.compile("(function (m) { return json(m).field1; })");
+
+        StringBuilder message = new StringBuilder("{");
+        for (int i = 0; i < this.fields; i++) {
+            if (i > 0) {
+                message.append(',');
+            }
+            message.append("\"field").append(i).append("\":{\"value\":").append(i).append(",\"text\":\"some text\"}");
+        }
+        this.args = new Object[]{message.append('}').toString()};
+    }
+
+    @TearDown
+    public void tearDown() {
+        Context.exit();
+    }
+
+    private Function compile(String source) {
+        return (Function) this.ctx.evaluateString(this.global, source, "callback", 1, null);
+    }
+
+    @Benchmark
+    public Object jsonParse() {
+        return this.jsonParse.call(this.ctx, this.global, this.global, this.args);
+    }
+
+    @Benchmark
+    public Object parseJson() {
+        return this.parseJson.call(this.ctx, this.global, this.global, this.args);
+    }
+
+    @Benchmark
+    public Object jsonView() {
+        return this.json.call(this.ctx, this.global, this.global, this.args);
+    }
+}
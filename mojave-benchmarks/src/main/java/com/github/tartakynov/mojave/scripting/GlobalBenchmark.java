@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting pipeline configuration objects of the given number of sections with
+ * {@see Global#convertJsObjectToMap(NativeObject)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GlobalBenchmark {
+    @Param({"10", "1000"})
+    public int sections;
+
+    private Context ctx;
+    private Global global;
+    private NativeObject object;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.ctx = Context.enter();
+        this.global = new Global(this.ctx, false);
+
+        StringBuilder script = new StringBuilder("({ sinks: { stub: { class: 'Stub', items: [1, 2, 3] } }");
+        for (int i = 0; i < this.sections; i++) {
+            script.append(", section").append(i).append(": { value: ").append(i)
+                    .append(", nested: { name: 'n").append(i).append("', __: true } }");
+        }
+        script.append(" })");
+        this.object = (NativeObject) this.ctx.evaluateString(this.global, script.toString(), "config", 1, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Context.exit();
+    }
+
+    @Benchmark
+    public Map<String, String> convertJsObjectToMap() {
+        return Global.convertJsObjectToMap(this.object);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import org.mozilla.javascript.Context;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading modules with {@see Global#require}. A cold require compiles and runs the module, a warm
+ * one finds it already loaded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequireBenchmark {
+    private Context ctx;
+    private Global global;
+    private File module;
+    private Object[] args;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.ctx = Context.enter();
+        this.global = new Global(this.ctx, false);
+        this.module = File.createTempFile("module", ".js");
+        FileWriter writer = new FileWriter(this.module);
+        try {
+            writer.write("exports.square = function (x) { return x * x; };\n");
+        } finally {
+            writer.close();
+        }
+        this.global.defineProperty(Global.Properties.DIRECTORY_NAME.toString(), this.module.getParent(), 0);
+        this.args = new Object[]{this.module.getName()};
+    }
+
+    @TearDown
+    public void tearDown() {
+        Context.exit();
+        if (!this.module.delete()) {
+            this.module.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public Object requireWarm() throws IOException {
+        return Global.require(this.ctx, this.global, this.args, null);
+    }
+
+    @Benchmark
+    public Object requireCold(ColdModules modules) throws IOException {
+        return Global.require(this.ctx, this.global, this.args, null);
+    }
+
+    /**
+     * Forgets loaded modules and compiled scripts before every call.
+     */
+    @State(Scope.Thread)
+    public static class ColdModules {
+        @Setup(Level.Invocation)
+        public void forget(RequireBenchmark benchmark) {
+            benchmark.global.modules.clear();
+            Global.getScriptCache().clear();
+        }
+    }
+}
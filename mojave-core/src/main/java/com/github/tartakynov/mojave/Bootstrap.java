@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave;
+
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Creates and configures a graph of components, running {@link Component#configure(Configuration)}
+ * of components that don't depend on each other concurrently. A component is configured after all
+ * components it depends on have been.
+ * <p/>
+ * Once a component fails, components that haven't started yet are skipped, and the failures of the
+ * components already running are collected into one {@see ConfigurationException}. Components that
+ * have been created by then are closed if they're {@see Closeable}, including the failed ones.
+ */
+public class Bootstrap {
+    private static final Logger log = LoggerFactory.getLogger(Bootstrap.class);
+    private final ComponentsFactory factory;
+    private final Executor executor;
+    private final Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+    private volatile boolean failed;
+
+    /**
+     * Creates a bootstrap.
+     *
+     * @param factory  to create components with.
+     * @param executor to configure components on.
+     */
+    public Bootstrap(ComponentsFactory factory, Executor executor) {
+        this.factory = factory;
+        this.executor = executor;
+    }
+
+    /**
+     * Adds a source of the class given by the section's class.
+     *
+     * @param id           unique among the components of the bootstrap.
+     * @param section      of the source.
+     * @param dependencies ids of the components to configure first.
+     */
+    public void addSource(String id, Configuration section, Collection<String> dependencies) {
+        this.add(new Node(id, section, dependencies, false));
+    }
+
+    /**
+     * Adds a sink of the class given by the section's class.
+     *
+     * @param id           unique among the components of the bootstrap.
+     * @param section      of the sink.
+     * @param dependencies ids of the components to configure first.
+     */
+    public void addSink(String id, Configuration section, Collection<String> dependencies) {
+        this.add(new Node(id, section, dependencies, true));
+    }
+
+    /**
+     * Creates and configures all components, waiting for them to finish.
+     *
+     * @return configured components by their ids, in the order they were added.
+     * @throws ConfigurationException if a dependency is unknown or circular, or components have
+     *                                failed, with the failures of the other components suppressed.
+     */
+    public Map<String, Component> run() throws ConfigurationException {
+        this.validate();
+        long started = System.nanoTime();
+        for (Node node : this.nodes.values()) {
+            this.schedule(node);
+        }
+
+        Map<String, Component> components = new LinkedHashMap<String, Component>();
+        List<ConfigurationException> errors = new ArrayList<ConfigurationException>();
+        for (Node node : this.nodes.values()) {
+            try {
+                components.put(node.id, node.future.join());
+            } catch (CancellationException ex) {
+                // skipped after another component has failed
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof CancellationException) {
+                    continue;
+                }
+                errors.add(ex.getCause() instanceof ConfigurationException ? (ConfigurationException) ex.getCause()
+                        : new ConfigurationException("Unable to configure " + node.id + ": " + ex.getCause(), ex.getCause()));
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            close(components.values());
+            if (errors.size() == 1) {
+                throw errors.get(0);
+            }
+            StringBuilder message = new StringBuilder().append(errors.size()).append(" components have failed:");
+            for (ConfigurationException error : errors) {
+                message.append(' ').append(error.getMessage()).append(';');
+            }
+            ConfigurationException aggregated = new ConfigurationException(message.toString(), errors.get(0));
+            for (ConfigurationException error : errors.subList(1, errors.size())) {
+                aggregated.addSuppressed(error);
+            }
+            throw aggregated;
+        }
+        log.info("Configured {} components in {} ms", components.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return components;
+    }
+
+    /**
+     * Gets the time each configured component took to create and configure.
+     *
+     * @return milliseconds by component ids, in the order components were added.
+     */
+    public Map<String, Long> getTimings() {
+        Map<String, Long> timings = new LinkedHashMap<String, Long>();
+        for (Node node : this.nodes.values()) {
+            if (node.elapsed >= 0) {
+                timings.put(node.id, TimeUnit.NANOSECONDS.toMillis(node.elapsed));
+            }
+        }
+        return Collections.unmodifiableMap(timings);
+    }
+
+    private void add(Node node) {
+        if (this.nodes.containsKey(node.id)) {
+            throw new IllegalArgumentException("Duplicate component: " + node.id);
+        }
+        this.nodes.put(node.id, node);
+    }
+
+    /**
+     * Checks that all dependencies are known and no component depends on itself.
+     */
+    private void validate() throws ConfigurationException {
+        for (Node node : this.nodes.values()) {
+            for (String dependency : node.dependencies) {
+                if (!this.nodes.containsKey(dependency)) {
+                    throw new ConfigurationException("Unknown dependency of " + node.id + ": " + dependency);
+                }
+            }
+        }
+        Set<String> visited = new HashSet<String>();
+        for (Node node : this.nodes.values()) {
+            this.visit(node, visited, new ArrayList<String>());
+        }
+    }
+
+    private void visit(Node node, Set<String> visited, List<String> path) throws ConfigurationException {
+        int index = path.indexOf(node.id);
+        if (index >= 0) {
+            List<String> cycle = new ArrayList<String>(path.subList(index, path.size()));
+            cycle.add(node.id);
+            throw new ConfigurationException("Circular dependency: " + cycle);
+        }
+        if (!visited.add(node.id)) {
+            return;
+        }
+        path.add(node.id);
+        for (String dependency : node.dependencies) {
+            this.visit(this.nodes.get(dependency), visited, path);
+        }
+        path.remove(path.size() - 1);
+    }
+
+    /**
+     * Chains the configuration of a node after its dependencies, scheduling them first if needed.
+     */
+    private CompletableFuture<Component> schedule(final Node node) {
+        if (node.future != null) {
+            return node.future;
+        }
+        List<CompletableFuture<Component>> dependencies = new ArrayList<CompletableFuture<Component>>();
+        for (String dependency : node.dependencies) {
+            dependencies.add(this.schedule(this.nodes.get(dependency)));
+        }
+        CompletableFuture<Void> ready = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]));
+        node.future = ready.handleAsync(new BiFunction<Void, Throwable, Component>() {
+            @Override
+            public Component apply(Void ignored, Throwable dependencyFailure) {
+                if (dependencyFailure != null || failed) {
+                    throw new CancellationException();
+                }
+                try {
+                    return configure(node);
+                } catch (ConfigurationException ex) {
+                    failed = true;
+                    throw new CompletionException(ex);
+                } catch (RuntimeException ex) {
+                    failed = true;
+                    throw ex;
+                }
+            }
+        }, this.executor);
+        return node.future;
+    }
+
+    private Component configure(Node node) throws ConfigurationException {
+        long started = System.nanoTime();
+        String className = node.section.get("class");
+        if (className == null) {
+            throw new ConfigurationException("The class is not provided: " + node.id);
+        }
+        Component component = node.sink ? this.factory.createSink(className) : this.factory.createSource(className);
+        try {
+            component.configure(node.section);
+        } catch (ConfigurationException ex) {
+            close(Collections.singletonList(component));
+            throw ex;
+        } catch (RuntimeException ex) {
+            close(Collections.singletonList(component));
+            throw ex;
+        }
+        node.elapsed = System.nanoTime() - started;
+        log.debug("Configured {} in {} ms", node.id, TimeUnit.NANOSECONDS.toMillis(node.elapsed));
+        return component;
+    }
+
+    private static void close(Collection<Component> components) {
+        for (Component component : components) {
+            if (component instanceof Closeable) {
+                try {
+                    ((Closeable) component).close();
+                } catch (IOException ex) {
+                    log.warn("Unable to close a component", ex);
+                }
+            }
+        }
+    }
+
+    private static class Node {
+        private final String id;
+        private final Configuration section;
+        private final List<String> dependencies;
+        private final boolean sink;
+        private CompletableFuture<Component> future;
+        private volatile long elapsed = -1;
+
+        Node(String id, Configuration section, Collection<String> dependencies, boolean sink) {
+            this.id = id;
+            this.section = section;
+            this.dependencies = new ArrayList<String>(dependencies);
+            this.sink = sink;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of equally sized byte buffers, either heap or direct ones.
+ * When the pool is empty new buffers are allocated, and buffers returned to a full pool are dropped.
+ */
+public class BufferPool {
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int bufferSize;
+    private final int capacity;
+    private final boolean direct;
+
+    /**
+     * Creates a pool.
+     *
+     * @param bufferSize size of every buffer in bytes.
+     * @param capacity   maximum number of idle buffers kept.
+     * @param direct     whether to allocate direct buffers.
+     */
+    public BufferPool(int bufferSize, int capacity, boolean direct) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize");
+        }
+        this.bufferSize = bufferSize;
+        this.capacity = capacity;
+        this.direct = direct;
+    }
+
+    /**
+     * Gets the size of buffers in bytes.
+     */
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    /**
+     * Takes a cleared buffer from the pool, allocating a new one if the pool is empty.
+     *
+     * @return a buffer.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = this.buffers.poll();
+        if (buffer == null) {
+            return this.direct ? ByteBuffer.allocateDirect(this.bufferSize) : ByteBuffer.allocate(this.bufferSize);
+        }
+        this.size.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool.
+     *
+     * @param buffer taken from this pool.
+     */
+    public void release(ByteBuffer buffer) {
+        if (this.size.incrementAndGet() <= this.capacity) {
+            this.buffers.offer(buffer);
+        } else {
+            this.size.decrementAndGet();
+        }
+    }
+}
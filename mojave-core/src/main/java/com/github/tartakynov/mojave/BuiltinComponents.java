@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave;
+
+import com.github.tartakynov.mojave.file.FileSink;
+import com.github.tartakynov.mojave.file.FileSource;
+import com.github.tartakynov.mojave.net.NetSink;
+import com.github.tartakynov.mojave.net.NetSource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Short names of the sources and sinks shipped with mojave: file and net.
+ */
+public class BuiltinComponents implements ComponentProvider {
+    @Override
+    public Map<String, Class<? extends Source>> getSources() {
+        Map<String, Class<? extends Source>> sources = new HashMap<String, Class<? extends Source>>();
+        sources.put("file", FileSource.class);
+        sources.put("net", NetSource.class);
+        return sources;
+    }
+
+    @Override
+    public Map<String, Class<? extends Sink>> getSinks() {
+        Map<String, Class<? extends Sink>> sinks = new HashMap<String, Class<? extends Sink>>();
+        sinks.put("file", FileSink.class);
+        sinks.put("net", NetSink.class);
+        return sinks;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sink sending messages as bytes. The pipeline calls {@link #writeMessages(List)} instead of
+ * {@link #write(List)}, and releases messages after the write completes.
+ */
+public interface ByteSink extends Sink {
+    /**
+     * Starts sending a batch of messages to the destination.
+     *
+     * @param batch messages to send.
+     * @return a future completed when the messages have been sent, or failed if they can't be.
+     */
+    CompletableFuture<Void> writeMessages(List<Message> batch);
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave;
+
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Source reading messages as bytes into pooled buffers, so messages that are only forwarded are
+ * never decoded.
+ * <p/>
+ * Buffers are bufferSize bytes long and must fit a whole message. Up to bufferPoolSize idle buffers
+ * are kept, and directBuffers makes them direct.
+ */
+public abstract class ByteSource extends Source {
+    public static final int DEFAULT_BUFFER_SIZE = 4096;
+    public static final int DEFAULT_BUFFER_POOL_SIZE = 1024;
+    private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private BufferPool pool;
+
+    /**
+     * Tries to read the next message into the buffer.
+     *
+     * @param buffer cleared buffer to write the message to.
+     * @return true if a message has been read, false if no message is available.
+     */
+    public abstract boolean read(ByteBuffer buffer);
+
+    /**
+     * Takes up to max messages and adds them to the given list, waiting no longer than timeoutNanos
+     * for the first message.
+     *
+     * @param into         list to add messages to.
+     * @param max          maximum number of messages to take.
+     * @param timeoutNanos maximum time to wait in nanoseconds.
+     * @return the number of messages added to the list.
+     */
+    public int takeMessages(List<? super Message> into, int max, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        int count = 0;
+        while (count < max) {
+            Message message = this.next();
+            if (message != null) {
+                into.add(message);
+                count++;
+            } else if (count > 0 || deadline - System.nanoTime() <= 0) {
+                break;
+            } else {
+                LockSupport.parkNanos(Math.min(POLL_INTERVAL_NANOS, deadline - System.nanoTime()));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads the next message and decodes it.
+     */
+    @Override
+    public String take() {
+        Message message = this.next();
+        if (message == null) {
+            return null;
+        }
+        String text = message.toString();
+        message.release();
+        return text;
+    }
+
+    @Override
+    public void configure(Configuration config) throws ConfigurationException {
+        super.configure(config);
+        if (this.pool == null) {
+            int bufferSize = config.getInt32("bufferSize", DEFAULT_BUFFER_SIZE);
+            if (bufferSize <= 0) {
+                throw new ConfigurationException("The buffer size must be positive.");
+            }
+            this.pool = new BufferPool(bufferSize, config.getInt32("bufferPoolSize", DEFAULT_BUFFER_POOL_SIZE),
+                    config.getBoolean("directBuffers", false));
+        }
+    }
+
+    /**
+     * Gets the pool of buffers messages are read into, null until the source is configured.
+     */
+    protected BufferPool getBufferPool() {
+        return this.pool;
+    }
+
+    /**
+     * Reads the next message into a pooled buffer. Sources able to hand out their bytes without
+     * copying may override it.
+     *
+     * @return the next message, or null if no message is available.
+     */
+    protected Message next() {
+        ByteBuffer buffer = this.pool.acquire();
+        if (!this.read(buffer)) {
+            this.pool.release(buffer);
+            return null;
+        }
+        buffer.flip();
+        return new Message(buffer, this.pool);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave;
+
+import java.util.Map;
+
+/**
+ * Gives short names to components, so configurations may refer to them as e.g. <code>class: 'file'</code>
+ * instead of the full class name. Providers are found by {@see java.util.ServiceLoader}, list them in
+ * META-INF/services/com.github.tartakynov.mojave.ComponentProvider.
+ */
+public interface ComponentProvider {
+    /**
+     * Gets the sources by their short names.
+     */
+    Map<String, Class<? extends Source>> getSources();
+
+    /**
+     * Gets the sinks by their short names.
+     */
+    Map<String, Class<? extends Sink>> getSinks();
+}
@@ -18,49 +18,158 @@
  */
 package com.github.tartakynov.mojave;
 
+import com.github.tartakynov.mojave.aggregation.ValueExtractor;
 import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import com.github.tartakynov.mojave.pipeline.KeyExtractor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates components by their class names or the short names given by {@see ComponentProvider}s.
+ * <p/>
+ * Constructors are resolved once per class and shared by all factories, so creating many instances
+ * of a class costs little more than calling its constructor.
+ */
 public class ComponentsFactory {
     private static final Logger log = LoggerFactory.getLogger(ComponentsFactory.class);
+    private static final MethodType NO_ARGUMENTS = MethodType.methodType(void.class);
+    private static final ConcurrentMap<String, MethodHandle> constructors = new ConcurrentHashMap<String, MethodHandle>();
+
+    /**
+     * Short names registered by the providers on the class path, loaded on first use.
+     */
+    private static class Registry {
+        private static final Map<String, Class<? extends Source>> sources = new HashMap<String, Class<? extends Source>>();
+        private static final Map<String, Class<? extends Sink>> sinks = new HashMap<String, Class<? extends Sink>>();
+
+        static {
+            for (ComponentProvider provider : ServiceLoader.load(ComponentProvider.class, ComponentsFactory.class.getClassLoader())) {
+                register(sources, provider.getSources(), provider);
+                register(sinks, provider.getSinks(), provider);
+            }
+        }
+
+        private static <T> void register(Map<String, Class<? extends T>> registry, Map<String, Class<? extends T>> names,
+                                         ComponentProvider provider) {
+            for (Map.Entry<String, Class<? extends T>> entry : names.entrySet()) {
+                if (registry.containsKey(entry.getKey())) {
+                    log.warn("The name {} is already taken, ignoring it in {}", entry.getKey(), provider.getClass().getName());
+                } else {
+                    registry.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
 
     /**
      * Creates an instance of {@see Source} by it's name.
      *
-     * @param className of the component to create.
+     * @param className of the component to create, or its short name.
      * @return an instance of created {@see Source}.
      */
     public Source createSource(String className) throws ConfigurationException {
         log.debug("Creating the source: {}", className);
-        return this.create(className);
+        Class<? extends Source> registered = Registry.sources.get(className);
+        return this.create(Source.class, registered != null ? registered.getName() : className);
     }
 
     /**
      * Creates an instance of {@see Sink} by it's name.
      *
-     * @param className of the component to create.
+     * @param className of the component to create, or its short name.
      * @return an instance of created {@see Sink}.
      */
     public Sink createSink(String className) throws ConfigurationException {
         log.debug("Creating the sink: {}", className);
-        return this.create(className);
+        Class<? extends Sink> registered = Registry.sinks.get(className);
+        return this.create(Sink.class, registered != null ? registered.getName() : className);
+    }
+
+    /**
+     * Creates an instance of {@see KeyExtractor} by it's name.
+     *
+     * @param className of the extractor to create.
+     * @return an instance of created {@see KeyExtractor}.
+     */
+    public KeyExtractor createKeyExtractor(String className) throws ConfigurationException {
+        log.debug("Creating the key extractor: {}", className);
+        return this.instantiate(KeyExtractor.class, className);
+    }
+
+    /**
+     * Creates an instance of {@see ValueExtractor} by it's name.
+     *
+     * @param className of the extractor to create.
+     * @return an instance of created {@see ValueExtractor}.
+     */
+    public ValueExtractor createValueExtractor(String className) throws ConfigurationException {
+        log.debug("Creating the value extractor: {}", className);
+        return this.instantiate(ValueExtractor.class, className);
     }
 
     /**
      * Creates an instance by it's class name.
      */
+    @SuppressWarnings("unchecked")
     protected <T extends Component> T create(String className) throws ConfigurationException {
+        return (T) this.instantiate(Component.class, className);
+    }
+
+    private <T extends Component> T create(Class<T> type, String className) throws ConfigurationException {
+        Component component = this.<Component>create(className);
+        if (!type.isInstance(component)) {
+            throw new ConfigurationException(className + " is not a " + type.getSimpleName());
+        }
+        return type.cast(component);
+    }
+
+    private <T> T instantiate(Class<T> type, String className) throws ConfigurationException {
         if (className == null) {
             throw new IllegalArgumentException("className");
         }
 
-        Class<? extends T> component;
+        MethodHandle constructor = constructors.get(className);
+        if (constructor == null) {
+            constructor = resolve(className);
+            constructors.putIfAbsent(className, constructor);
+        }
+        Class<?> component = constructor.type().returnType();
+        if (!type.isAssignableFrom(component)) {
+            throw new ConfigurationException(className + " is not a " + type.getSimpleName());
+        }
+        try {
+            return type.cast(constructor.invoke());
+        } catch (Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new ConfigurationException("Unable to create " + className + ": " + ex, ex);
+        }
+    }
+
+    private static MethodHandle resolve(String className) throws ConfigurationException {
+        Class<?> component;
+        try {
+            component = Class.forName(className);
+        } catch (ClassNotFoundException ex) {
+            throw new ConfigurationException("Unable to load class: " + className, ex);
+        } catch (LinkageError ex) {
+            throw new ConfigurationException("Unable to load class: " + className, ex);
+        }
         try {
-            component = (Class<? extends T>) Class.forName(className);
-            return component.newInstance();
-        } catch (Exception ex) {
-            throw new ConfigurationException("Unable to load class: " + className);
+            return MethodHandles.publicLookup().findConstructor(component, NO_ARGUMENTS);
+        } catch (NoSuchMethodException ex) {
+            throw new ConfigurationException(className + " has no public constructor without arguments", ex);
+        } catch (IllegalAccessException ex) {
+            throw new ConfigurationException(className + " has no public constructor without arguments", ex);
         }
     }
 }
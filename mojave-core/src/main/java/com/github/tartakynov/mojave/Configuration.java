@@ -18,34 +18,69 @@
  */
 package com.github.tartakynov.mojave;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Represents an application's configuration.
+ * <p/>
+ * The configuration is immutable. Values are looked up in a {@see ConfigurationTree}, and sections
+ * are cached views over the same tree. A configuration created from a map indexes keys, nested
+ * sections and arrays once when it is created.
  */
 public final class Configuration {
-    private final Map<String, String> values;
+    private final ConfigurationTree tree;
+    private final ConcurrentMap<String, Configuration> sections;
+    private final String prefix;
     private final String name;
+    private volatile Map<String, String> properties;
 
     public Configuration(Map<String, String> values) {
-        this.name = null;
-        this.values = values;
+        this(null, values);
     }
 
     public Configuration(String name, Map<String, String> values) {
+        this(name, new MapTree(values));
+    }
+
+    public Configuration(ConfigurationTree tree) {
+        this(null, tree);
+    }
+
+    public Configuration(String name, ConfigurationTree tree) {
+        this(name, tree, new ConcurrentHashMap<String, Configuration>(), "");
+    }
+
+    private Configuration(String name, ConfigurationTree tree, ConcurrentMap<String, Configuration> sections, String prefix) {
         this.name = name;
-        this.values = values;
+        this.tree = tree;
+        this.sections = sections;
+        this.prefix = prefix;
     }
 
     /**
      * Gets properties stored in the map.
      *
-     * @return properties.
+     * @return read-only properties.
      */
     public Map<String, String> getProperties() {
-        return new HashMap<String, String>(this.values);
+        Map<String, String> result = this.properties;
+        if (result == null) {
+            if (this.prefix.length() == 0) {
+                result = this.tree.getProperties();
+            } else {
+                Map<String, String> section = new HashMap<String, String>();
+                for (Map.Entry<String, String> entry : this.tree.getProperties().entrySet()) {
+                    if (entry.getKey().startsWith(this.prefix)) {
+                        section.put(entry.getKey().substring(this.prefix.length()), entry.getValue());
+                    }
+                }
+                result = Collections.unmodifiableMap(section);
+            }
+            this.properties = result;
+        }
+        return result;
     }
 
     /**
@@ -55,13 +90,40 @@ public final class Configuration {
      * @return value associated with key
      */
     public Configuration getSection(String name) {
-        Map<String, String> section = new HashMap<String, String>();
-        for (String key : this.values.keySet()) {
-            if (key.startsWith(name + ".")) {
-                section.put(key.substring(name.length() + 1), this.values.get(key));
+        String path = this.prefix + name;
+        Configuration section = this.sections.get(path);
+        if (section == null) {
+            section = new Configuration(name, this.tree, this.sections, path + ".");
+            if (this.tree.getSectionNames(path) != null) {
+                Configuration existing = this.sections.putIfAbsent(path, section);
+                if (existing != null) {
+                    section = existing;
+                }
             }
         }
-        return new Configuration(name, section);
+        return section;
+    }
+
+    /**
+     * Gets a view of the current section under another name, e.g. for copies of a component
+     * sharing one section.
+     *
+     * @param name of the view.
+     * @return the view.
+     */
+    public Configuration rename(String name) {
+        return new Configuration(name, this.tree, this.sections, this.prefix);
+    }
+
+    /**
+     * Gets names of the sections nested directly in the current section.
+     *
+     * @return read-only names of nested sections.
+     */
+    public Set<String> getSectionNames() {
+        String path = this.prefix.length() == 0 ? "" : this.prefix.substring(0, this.prefix.length() - 1);
+        Set<String> names = this.tree.getSectionNames(path);
+        return names != null ? names : Collections.<String>emptySet();
     }
 
     /**
@@ -71,15 +133,8 @@ public final class Configuration {
      * @return true if the source sequence contains a key that has the specified value; otherwise, false.
      */
     public boolean contains(String key) {
-        boolean contains = this.values.containsKey(key);
-        if (!contains) {
-            for (String item : this.values.keySet()) {
-                if (item.startsWith(key + ".")) {
-                    return true;
-                }
-            }
-        }
-        return contains;
+        String path = this.prefix + key;
+        return this.tree.get(path) != null || this.tree.getSectionNames(path) != null;
     }
 
     /**
@@ -98,13 +153,8 @@ public final class Configuration {
      * @return value associated with key
      */
     public ArrayList<String> getArray(String key) {
-        ArrayList<String> result = new ArrayList<String>();
-        int i = 0;
-        String item;
-        while ((item = this.values.get(key + "." + i++)) != null) {
-            result.add(item);
-        }
-        return result;
+        List<String> array = this.tree.getArray(this.prefix + key);
+        return array != null ? new ArrayList<String>(array) : new ArrayList<String>();
     }
 
     /**
@@ -114,7 +164,7 @@ public final class Configuration {
      * @return value associated with key
      */
     public String get(String key) {
-        return this.values.get(key);
+        return this.tree.getString(this.prefix + key);
     }
 
     /**
@@ -125,9 +175,11 @@ public final class Configuration {
      * @return value associated with key
      */
     public int getInt32(String key, int defaultValue) {
-        String value = this.values.get(key);
-        if (value != null) {
-            return Integer.parseInt(value);
+        Object value = this.tree.get(this.prefix + key);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        } else if (value != null) {
+            return Integer.parseInt(this.get(key));
         }
         return defaultValue;
     }
@@ -140,9 +192,11 @@ public final class Configuration {
      * @return value associated with key
      */
     public long getInt64(String key, long defaultValue) {
-        String value = this.values.get(key);
-        if (value != null) {
-            return Long.parseLong(value);
+        Object value = this.tree.get(this.prefix + key);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value != null) {
+            return Long.parseLong(this.get(key));
         }
         return defaultValue;
     }
@@ -155,10 +209,190 @@ public final class Configuration {
      * @return value associated with key
      */
     public double getDouble(String key, double defaultValue) {
-        String value = this.values.get(key);
-        if (value != null) {
-            return Double.parseDouble(value);
+        Object value = this.tree.get(this.prefix + key);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value != null) {
+            return Double.parseDouble(this.get(key));
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Gets value mapped to key, returning defaultValue if unmapped.
+     *
+     * @param key          to be found
+     * @param defaultValue returned if key is unmapped
+     * @return value associated with key
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = this.tree.get(this.prefix + key);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value != null) {
+            return Boolean.parseBoolean(this.get(key));
         }
         return defaultValue;
     }
+
+    /**
+     * Tree of string values indexed once when created.
+     */
+    private static final class MapTree implements ConfigurationTree {
+        private final Map<String, String> properties;
+        private final Map<String, Value> values;
+        private final Map<String, Set<String>> children = new HashMap<String, Set<String>>();
+        private final Map<String, List<String>> arrays = new HashMap<String, List<String>>();
+
+        private MapTree(Map<String, String> source) {
+            this.properties = Collections.unmodifiableMap(new HashMap<String, String>(source));
+            this.values = new HashMap<String, Value>(source.size() * 2);
+            Map<String, SortedMap<Integer, String>> items = new HashMap<String, SortedMap<Integer, String>>();
+            for (Map.Entry<String, String> entry : source.entrySet()) {
+                String key = entry.getKey();
+                this.values.put(key, new Value(entry.getValue()));
+
+                // register the key in every enclosing section
+                int start = 0;
+                int dot;
+                while ((dot = key.indexOf('.', start)) > 0) {
+                    String parent = start == 0 ? "" : key.substring(0, start - 1);
+                    this.addChild(parent, key.substring(start, dot));
+                    start = dot + 1;
+                }
+                if (start > 0 && !this.children.containsKey(key.substring(0, start - 1))) {
+                    // the innermost section may hold values only
+                    this.children.put(key.substring(0, start - 1), new LinkedHashSet<String>());
+                }
+
+                // collect array items, e.g. "key.0"
+                String last = key.substring(start);
+                if (start > 0 && isIndex(last)) {
+                    String array = key.substring(0, start - 1);
+                    SortedMap<Integer, String> arrayItems = items.get(array);
+                    if (arrayItems == null) {
+                        arrayItems = new TreeMap<Integer, String>();
+                        items.put(array, arrayItems);
+                    }
+                    arrayItems.put(Integer.valueOf(last), entry.getValue());
+                }
+            }
+
+            for (Map.Entry<String, SortedMap<Integer, String>> entry : items.entrySet()) {
+                List<String> array = new ArrayList<String>(entry.getValue().size());
+                for (Map.Entry<Integer, String> item : entry.getValue().entrySet()) {
+                    if (item.getKey() != array.size()) {
+                        break;
+                    }
+                    array.add(item.getValue());
+                }
+                this.arrays.put(entry.getKey(), Collections.unmodifiableList(array));
+            }
+            for (Map.Entry<String, Set<String>> entry : this.children.entrySet()) {
+                entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+            }
+        }
+
+        @Override
+        public Object get(String path) {
+            return this.values.get(path);
+        }
+
+        @Override
+        public String getString(String path) {
+            Value value = this.values.get(path);
+            return value != null ? value.raw : null;
+        }
+
+        @Override
+        public Set<String> getSectionNames(String path) {
+            return this.children.get(path);
+        }
+
+        @Override
+        public List<String> getArray(String path) {
+            return this.arrays.get(path);
+        }
+
+        @Override
+        public Map<String, String> getProperties() {
+            return this.properties;
+        }
+
+        private static boolean isIndex(String value) {
+            if (value.length() == 0 || value.length() > 9) {
+                return false;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                if (!Character.isDigit(value.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void addChild(String parent, String child) {
+            Set<String> names = this.children.get(parent);
+            if (names == null) {
+                names = new LinkedHashSet<String>();
+                this.children.put(parent, names);
+            }
+            names.add(child);
+        }
+    }
+
+    /**
+     * Raw value parsing itself on first use of each numeric form.
+     */
+    @SuppressWarnings("serial")
+    private static final class Value extends Number {
+        private final String raw;
+        private volatile Integer int32;
+        private volatile Long int64;
+        private volatile Double number;
+
+        private Value(String raw) {
+            this.raw = raw;
+        }
+
+        @Override
+        public int intValue() {
+            Integer result = this.int32;
+            if (result == null) {
+                result = Integer.valueOf(this.raw);
+                this.int32 = result;
+            }
+            return result;
+        }
+
+        @Override
+        public long longValue() {
+            Long result = this.int64;
+            if (result == null) {
+                result = Long.valueOf(this.raw);
+                this.int64 = result;
+            }
+            return result;
+        }
+
+        @Override
+        public double doubleValue() {
+            Double result = this.number;
+            if (result == null) {
+                result = Double.valueOf(this.raw);
+                this.number = result;
+            }
+            return result;
+        }
+
+        @Override
+        public float floatValue() {
+            return (float) this.doubleValue();
+        }
+
+        @Override
+        public String toString() {
+            return this.raw;
+        }
+    }
 }
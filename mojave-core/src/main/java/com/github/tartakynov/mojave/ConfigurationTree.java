@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hierarchical storage behind a {@see Configuration}. Paths are dotted keys relative to the root,
+ * the root itself has an empty path.
+ */
+public interface ConfigurationTree {
+    /**
+     * Gets the value at the path.
+     *
+     * @param path dotted key.
+     * @return a {@see Number}, {@see Boolean} or another object whose string form is the value;
+     * null if the path isn't mapped to a value.
+     */
+    Object get(String path);
+
+    /**
+     * Gets the string form of the value at the path.
+     *
+     * @param path dotted key.
+     * @return the value, or null if the path isn't mapped to a value.
+     */
+    String getString(String path);
+
+    /**
+     * Gets names of sections nested directly in the section at the path.
+     *
+     * @param path dotted key of a section.
+     * @return read-only names, or null if there is no section at the path.
+     */
+    Set<String> getSectionNames(String path);
+
+    /**
+     * Gets the array at the path.
+     *
+     * @param path dotted key.
+     * @return read-only items, or null if there is no array at the path.
+     */
+    List<String> getArray(String path);
+
+    /**
+     * Gets all values as strings keyed by their paths.
+     *
+     * @return read-only map of values.
+     */
+    Map<String, String> getProperties();
+}
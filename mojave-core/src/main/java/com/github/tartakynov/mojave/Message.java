@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Message held as UTF-8 bytes, possibly in a pooled buffer.
+ * <p/>
+ * The bytes are decoded only when the message is read as text. A message sent to several sinks is
+ * retained once per extra sink and released after every write; the last release returns its
+ * buffer to the pool, after which the message must not be used.
+ */
+public final class Message implements CharSequence {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private final ByteBuffer buffer;
+    private final BufferPool pool;
+    private final AtomicInteger references = new AtomicInteger(1);
+    private volatile String text;
+
+    /**
+     * Creates a message of the bytes between position and limit of the buffer.
+     *
+     * @param buffer containing the message.
+     * @param pool   the buffer is returned to on release, or null.
+     */
+    public Message(ByteBuffer buffer, BufferPool pool) {
+        this.buffer = buffer;
+        this.pool = pool;
+    }
+
+    /**
+     * Encodes text as a message.
+     *
+     * @param text to encode.
+     * @return a message not backed by a pool.
+     */
+    public static Message wrap(CharSequence text) {
+        if (text instanceof Message) {
+            return (Message) text;
+        }
+        String value = text.toString();
+        Message message = new Message(ByteBuffer.wrap(value.getBytes(UTF8)), null);
+        message.text = value;
+        return message;
+    }
+
+    /**
+     * Gets the size of a message in bytes once encoded, without encoding it.
+     *
+     * @param text message.
+     * @return the number of UTF-8 bytes.
+     */
+    public static int sizeOf(CharSequence text) {
+        if (text instanceof Message) {
+            return ((Message) text).size();
+        }
+        int length = text.length();
+        int size = length;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x800) {
+                size += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Gets the bytes of the message. The returned buffer has its own position and limit.
+     *
+     * @return a view of the message bytes.
+     */
+    public ByteBuffer getBuffer() {
+        return this.buffer.duplicate();
+    }
+
+    /**
+     * Gets the size of the message in bytes.
+     */
+    public int size() {
+        return this.buffer.remaining();
+    }
+
+    /**
+     * Adds references to the message.
+     *
+     * @param count number of references to add.
+     */
+    public void retain(int count) {
+        this.references.addAndGet(count);
+    }
+
+    /**
+     * Drops a reference to the message, returning its buffer to the pool when none are left.
+     *
+     * @throws IllegalStateException if the message is already released, so the buffer that may
+     *                               already be reused is never returned to the pool twice.
+     */
+    public void release() {
+        int count;
+        do {
+            count = this.references.get();
+            if (count <= 0) {
+                throw new IllegalStateException("The message is already released.");
+            }
+        } while (!this.references.compareAndSet(count, count - 1));
+        if (count == 1 && this.pool != null) {
+            this.pool.release(this.buffer);
+        }
+    }
+
+    @Override
+    public int length() {
+        return this.toString().length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return this.toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return this.toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        String result = this.text;
+        if (result == null) {
+            result = UTF8.decode(this.buffer.duplicate()).toString();
+            this.text = result;
+        }
+        return result;
+    }
+}
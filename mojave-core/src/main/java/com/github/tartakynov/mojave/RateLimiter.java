@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave;
+
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Token buckets limiting the rate of messages and bytes passing a source or sink.
+ * <p/>
+ * Each bucket refills at its rate per second and holds up to its burst, by default a second's worth.
+ * A bucket is a single atomic time at which it will be full again, so callers reserve tokens with
+ * a compare-and-set and never lock. Callers taking more than the bucket holds go into debt and
+ * park until it's paid, so later callers wait behind them.
+ * <p/>
+ * Limits are set by messageRate, messageBurst, byteRate and byteBurst; a rate of 0 means no limit.
+ * They may be changed at any time, which forgives debts and wakes parked callers.
+ */
+public class RateLimiter {
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private final Bucket messages = new Bucket();
+    private final Bucket bytes = new Bucket();
+    private volatile int generation;
+
+    /**
+     * Creates a limiter with the limits given by the section.
+     *
+     * @param config section of a source or sink.
+     */
+    public static RateLimiter create(Configuration config) throws ConfigurationException {
+        RateLimiter limiter = new RateLimiter();
+        limiter.update(config);
+        return limiter;
+    }
+
+    /**
+     * Changes the limits given by the section, keeping the others.
+     *
+     * @param config providing any of messageRate, messageBurst, byteRate and byteBurst.
+     */
+    public void update(Configuration config) throws ConfigurationException {
+        double messageRate = config.contains("messageRate") ? parseRate(config, "messageRate") : this.messages.getRate();
+        double byteRate = config.contains("byteRate") ? parseRate(config, "byteRate") : this.bytes.getRate();
+        long messageBurst = parseBurst(config, "messageBurst", messageRate, this.messages);
+        long byteBurst = parseBurst(config, "byteBurst", byteRate, this.bytes);
+        if (messageRate != this.messages.getRate() || messageBurst != this.messages.getBurst()) {
+            this.setMessageRate(messageRate, messageBurst);
+        }
+        if (byteRate != this.bytes.getRate() || byteBurst != this.bytes.getBurst()) {
+            this.setByteRate(byteRate, byteBurst);
+        }
+    }
+
+    /**
+     * Sets the limit of messages.
+     *
+     * @param rate  messages per second, or 0 for no limit.
+     * @param burst messages that may pass at once after a pause.
+     */
+    public void setMessageRate(double rate, long burst) {
+        this.messages.set(rate, burst);
+        this.generation++;
+    }
+
+    /**
+     * Sets the limit of bytes.
+     *
+     * @param rate  bytes per second, or 0 for no limit.
+     * @param burst bytes that may pass at once after a pause.
+     */
+    public void setByteRate(double rate, long burst) {
+        this.bytes.set(rate, burst);
+        this.generation++;
+    }
+
+    public double getMessageRate() {
+        return this.messages.getRate();
+    }
+
+    public long getMessageBurst() {
+        return this.messages.getBurst();
+    }
+
+    public double getByteRate() {
+        return this.bytes.getRate();
+    }
+
+    public long getByteBurst() {
+        return this.bytes.getBurst();
+    }
+
+    /**
+     * Tells whether bytes are limited, so callers only count them when needed.
+     */
+    public boolean limitsBytes() {
+        return this.bytes.getRate() > 0;
+    }
+
+    /**
+     * Takes tokens for messages and bytes without waiting.
+     *
+     * @return nanoseconds the caller should wait before passing them on, 0 if it may go on at once.
+     */
+    public long reserve(int messages, long bytes) {
+        long now = System.nanoTime();
+        return Math.max(this.messages.reserve(messages, now), this.bytes.reserve(bytes, now));
+    }
+
+    /**
+     * Takes tokens for messages and bytes, parking the caller until they're paid for or the
+     * limits change.
+     */
+    public void acquire(int messages, long bytes) throws InterruptedException {
+        int generation = this.generation;
+        long wait = this.reserve(messages, bytes);
+        if (wait <= 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + wait;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0 && generation == this.generation) {
+            LockSupport.parkNanos(this, Math.min(remaining, MAX_PARK_NANOS));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    private static double parseRate(Configuration config, String key) throws ConfigurationException {
+        double rate = config.getDouble(key, 0);
+        if (rate < 0 || Double.isNaN(rate) || Double.isInfinite(rate)) {
+            throw new ConfigurationException("The " + key + " must not be negative.");
+        }
+        return rate;
+    }
+
+    private static long parseBurst(Configuration config, String key, double rate, Bucket bucket)
+            throws ConfigurationException {
+        long burst;
+        if (config.contains(key)) {
+            burst = config.getInt64(key, 0);
+        } else if (rate == bucket.getRate() && bucket.getBurst() > 0) {
+            burst = bucket.getBurst();
+        } else {
+            burst = (long) Math.ceil(rate);
+        }
+        if (burst < 0 || (rate > 0 && burst == 0)) {
+            throw new ConfigurationException("The " + key + " must be positive.");
+        }
+        return burst;
+    }
+
+    /**
+     * Bucket of tokens kept as the time it's full again.
+     */
+    private static final class Bucket {
+        private final AtomicLong full = new AtomicLong(System.nanoTime());
+        private volatile Limit limit;
+
+        void set(double rate, long burst) {
+            this.limit = rate > 0 ? new Limit(rate, burst) : null;
+            this.full.set(System.nanoTime());
+        }
+
+        double getRate() {
+            Limit limit = this.limit;
+            return limit != null ? limit.rate : 0;
+        }
+
+        long getBurst() {
+            Limit limit = this.limit;
+            return limit != null ? limit.burst : 0;
+        }
+
+        long reserve(long tokens, long now) {
+            Limit limit = this.limit;
+            if (limit == null || tokens <= 0) {
+                return 0;
+            }
+            long cost = (long) (tokens * limit.nanosPerToken);
+            while (true) {
+                long full = this.full.get();
+                long next = Math.max(full, now) + cost;
+                if (this.full.compareAndSet(full, next)) {
+                    return next - now - limit.capacity;
+                }
+            }
+        }
+    }
+
+    private static final class Limit {
+        private final double rate;
+        private final long burst;
+        private final double nanosPerToken;
+        private final long capacity;
+
+        private Limit(double rate, long burst) {
+            this.rate = rate;
+            this.burst = burst;
+            this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / rate;
+            this.capacity = (long) (burst * this.nanosPerToken);
+        }
+    }
+}
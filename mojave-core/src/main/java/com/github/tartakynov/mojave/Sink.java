@@ -18,9 +18,26 @@
  */
 package com.github.tartakynov.mojave;
 
+import java.io.Closeable;
+import java.io.Flushable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Sink sends processed messages to its destination.
+ * <p/>
+ * Writes may complete asynchronously. The pipeline groups messages into batches, calls
+ * {@link #flush()} when it runs out of messages to write and {@link #close()} when it stops.
+ * <p/>
+ * A batch whose write fails is dropped unless the sink has a spillDirectory, in which case it's
+ * retried until it succeeds, so delivery is at most once without one and at least once with it.
  */
-public interface Sink extends Component {
-
+public interface Sink extends Component, Flushable, Closeable {
+    /**
+     * Starts sending a batch of messages to the destination.
+     *
+     * @param batch messages to send, not modified by the caller until the write completes.
+     * @return a future completed when the messages have been sent, or failed if they can't be.
+     */
+    CompletableFuture<Void> write(List<String> batch);
 }
@@ -20,13 +20,32 @@ package com.github.tartakynov.mojave;
 
 import com.github.tartakynov.mojave.exceptions.ConfigurationException;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * Source connects to an external source and reads messages.
  */
 public abstract class Source implements Component {
+    /**
+     * The number of messages taken at once unless configured otherwise.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /**
+     * The time in milliseconds to wait for a batch to fill up unless configured otherwise.
+     */
+    public static final long DEFAULT_BATCH_TIMEOUT = 100;
+
+    private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
     private boolean configured;
     private String name;
     private int concurrencyLevel;
+    private int batchSize;
+    private long batchTimeout;
+    private RateLimiter rateLimiter;
 
     /**
      * Gets the number of threads consuming current {@see Source}.
@@ -37,19 +56,80 @@ public abstract class Source implements Component {
         return this.concurrencyLevel;
     }
 
+    /**
+     * Gets the maximum number of messages taken from current {@see Source} at once.
+     *
+     * @return Current batch size.
+     */
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    /**
+     * Gets the time in milliseconds to wait for a batch to fill up.
+     *
+     * @return Current batch timeout.
+     */
+    public long getBatchTimeout() {
+        return this.batchTimeout;
+    }
+
+    /**
+     * Gets the limiter of the rate messages are taken from current {@see Source} at, see
+     * {@see RateLimiter}.
+     *
+     * @return the limiter, null until the source is configured.
+     */
+    public RateLimiter getRateLimiter() {
+        return this.rateLimiter;
+    }
+
     /**
      * Tries to return the next message from an external source.
      *
-     * @return Message as a string.
+     * @return Message as a string, or null if no message is available.
      */
     public abstract String take();
 
+    /**
+     * Takes up to max messages from an external source and adds them to the given list.
+     * Waits no longer than timeoutNanos for the first message and returns as soon as
+     * the batch is full, the source has no more messages or the timeout elapses.
+     * <p/>
+     * The default implementation calls {@link #take()} repeatedly, sources able to read
+     * several messages at once should override it.
+     *
+     * @param into         list to add messages to.
+     * @param max          maximum number of messages to take.
+     * @param timeoutNanos maximum time to wait in nanoseconds.
+     * @return the number of messages added to the list.
+     */
+    public int takeBatch(List<? super String> into, int max, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        int count = 0;
+        while (count < max) {
+            String message = this.take();
+            if (message != null) {
+                into.add(message);
+                count++;
+            } else if (count > 0 || deadline - System.nanoTime() <= 0) {
+                break;
+            } else {
+                LockSupport.parkNanos(Math.min(POLL_INTERVAL_NANOS, deadline - System.nanoTime()));
+            }
+        }
+        return count;
+    }
+
     @Override
     public void configure(Configuration config) throws ConfigurationException {
         if (!this.configured) {
             this.validateConfiguration(config);
             this.name = config.getSectionName();
-            this.concurrencyLevel = config.getInt32("concurrencyLevel", 0);
+            this.concurrencyLevel = config.getInt32("concurrencyLevel", 1);
+            this.batchSize = config.getInt32("batchSize", DEFAULT_BATCH_SIZE);
+            this.batchTimeout = config.getInt64("batchTimeout", DEFAULT_BATCH_TIMEOUT);
+            this.rateLimiter = RateLimiter.create(config);
             this.configured = true;
         }
     }
@@ -72,5 +152,11 @@ public abstract class Source implements Component {
         if (name == null || name.length() == 0) {
             throw new ConfigurationException("The name is not provided.");
         }
+        if (config.getInt32("concurrencyLevel", 1) <= 0) {
+            throw new ConfigurationException("The concurrency level must be positive.");
+        }
+        if (config.getInt32("batchSize", DEFAULT_BATCH_SIZE) <= 0) {
+            throw new ConfigurationException("The batch size must be positive.");
+        }
     }
 }
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.aggregation;
+
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+
+/**
+ * Aggregates computed by a {@see WindowAggregator} for every key of a window.
+ */
+public enum Aggregate {
+    /**
+     * The number of messages.
+     */
+    COUNT,
+
+    /**
+     * The sum of values.
+     */
+    SUM,
+
+    /**
+     * The smallest value.
+     */
+    MIN,
+
+    /**
+     * The largest value.
+     */
+    MAX,
+
+    /**
+     * The mean of values.
+     */
+    AVG,
+
+    /**
+     * The approximate number of distinct values of the distinct field.
+     */
+    DISTINCT;
+
+    /**
+     * Gets the name of the aggregate used in configurations and emitted messages.
+     *
+     * @return lower case name.
+     */
+    public String getName() {
+        return this.name().toLowerCase();
+    }
+
+    /**
+     * Parses an aggregate by name, ignoring case.
+     *
+     * @param name of the aggregate.
+     * @return the aggregate.
+     */
+    public static Aggregate parse(String name) throws ConfigurationException {
+        for (Aggregate aggregate : values()) {
+            if (aggregate.name().equalsIgnoreCase(name)) {
+                return aggregate;
+            }
+        }
+        throw new ConfigurationException("Unknown aggregate: " + name);
+    }
+}
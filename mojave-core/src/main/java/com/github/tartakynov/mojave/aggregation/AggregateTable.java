@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.aggregation;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table from keys to running aggregates, with every aggregate kept in its own
+ * primitive array, so adding a message allocates nothing once the key is in the table.
+ * <p/>
+ * With a precision, every key also gets a HyperLogLog sketch of 2^precision one-byte registers
+ * estimating the number of distinct values with a standard error of 1.04 / sqrt(2^precision).
+ * <p/>
+ * The table is not thread-safe.
+ */
+final class AggregateTable {
+    private static final int MIN_CAPACITY = 16;
+    private final int precision;
+    private final int registers;
+    private String[] keys;
+    private int[] hashes;
+    private long[] counts;
+    private long[] valueCounts;
+    private double[] sums;
+    private double[] mins;
+    private double[] maxs;
+    private byte[] sketches;
+    private int size;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param precision of distinct value sketches, or 0 to keep none.
+     */
+    AggregateTable(int precision) {
+        this.precision = precision;
+        this.registers = precision > 0 ? 1 << precision : 0;
+        this.allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Hashes a value into 64 bits for distinct value sketches.
+     */
+    static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    int capacity() {
+        return this.keys.length;
+    }
+
+    /**
+     * Gets the key in a slot.
+     *
+     * @return the key, or null if the slot is empty.
+     */
+    String keyAt(int slot) {
+        return this.keys[slot];
+    }
+
+    long count(int slot) {
+        return this.counts[slot];
+    }
+
+    double sum(int slot) {
+        return this.sums[slot];
+    }
+
+    double min(int slot) {
+        return this.valueCounts[slot] > 0 ? this.mins[slot] : Double.NaN;
+    }
+
+    double max(int slot) {
+        return this.valueCounts[slot] > 0 ? this.maxs[slot] : Double.NaN;
+    }
+
+    double avg(int slot) {
+        return this.valueCounts[slot] > 0 ? this.sums[slot] / this.valueCounts[slot] : Double.NaN;
+    }
+
+    /**
+     * Estimates the number of distinct values offered for the key in a slot.
+     */
+    long distinct(int slot) {
+        if (this.registers == 0) {
+            return 0;
+        }
+        int offset = slot * this.registers;
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < this.registers; i++) {
+            byte register = this.sketches[offset + i];
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(this.registers) * this.registers * this.registers / sum;
+        if (estimate <= 2.5 * this.registers && zeros > 0) {
+            estimate = this.registers * Math.log((double) this.registers / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Adds a message to the aggregates of its key.
+     *
+     * @param key   of the message.
+     * @param value of the message, NaN values are only counted.
+     * @return the slot of the key.
+     */
+    int add(String key, double value) {
+        int slot = this.slotOf(key);
+        this.counts[slot]++;
+        if (!Double.isNaN(value)) {
+            this.addValue(slot, 1, value, value, value);
+        }
+        return slot;
+    }
+
+    /**
+     * Adds a value hashed with {@link #hash(CharSequence)} to the distinct value sketch of a slot.
+     */
+    void offer(int slot, long hash) {
+        if (this.registers == 0) {
+            return;
+        }
+        int index = (int) (hash >>> (64 - this.precision));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << this.precision) | (1L << (this.precision - 1))) + 1);
+        int offset = slot * this.registers + index;
+        if (this.sketches[offset] < rank) {
+            this.sketches[offset] = rank;
+        }
+    }
+
+    /**
+     * Adds aggregates of another table of the same precision to this one.
+     *
+     * @param other table to merge.
+     */
+    void merge(AggregateTable other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            String key = other.keys[i];
+            if (key == null) {
+                continue;
+            }
+            int slot = this.slotOf(key);
+            this.counts[slot] += other.counts[i];
+            if (other.valueCounts[i] > 0) {
+                this.addValue(slot, other.valueCounts[i], other.sums[i], other.mins[i], other.maxs[i]);
+            }
+            for (int j = 0; j < this.registers; j++) {
+                int offset = slot * this.registers + j;
+                byte register = other.sketches[i * this.registers + j];
+                if (this.sketches[offset] < register) {
+                    this.sketches[offset] = register;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all keys, keeping the allocated capacity.
+     */
+    void clear() {
+        if (this.size > 0) {
+            Arrays.fill(this.keys, null);
+            if (this.registers > 0) {
+                Arrays.fill(this.sketches, (byte) 0);
+            }
+            this.size = 0;
+        }
+    }
+
+    private void addValue(int slot, long count, double sum, double min, double max) {
+        if (this.valueCounts[slot] == 0) {
+            this.mins[slot] = min;
+            this.maxs[slot] = max;
+        } else {
+            this.mins[slot] = Math.min(this.mins[slot], min);
+            this.maxs[slot] = Math.max(this.maxs[slot], max);
+        }
+        this.valueCounts[slot] += count;
+        this.sums[slot] += sum;
+    }
+
+    /**
+     * Finds the slot of a key, inserting the key with empty aggregates if it isn't in the table.
+     */
+    private int slotOf(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        int mask = this.keys.length - 1;
+        int slot = hash & mask;
+        while (this.keys[slot] != null) {
+            if (this.hashes[slot] == hash && this.keys[slot].equals(key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (this.size + 1 > this.keys.length >> 1) {
+            this.resize();
+            return this.slotOf(key);
+        }
+        this.keys[slot] = key;
+        this.hashes[slot] = hash;
+        this.counts[slot] = 0;
+        this.valueCounts[slot] = 0;
+        this.sums[slot] = 0;
+        this.size++;
+        return slot;
+    }
+
+    private void resize() {
+        String[] keys = this.keys;
+        int[] hashes = this.hashes;
+        long[] counts = this.counts;
+        long[] valueCounts = this.valueCounts;
+        double[] sums = this.sums;
+        double[] mins = this.mins;
+        double[] maxs = this.maxs;
+        byte[] sketches = this.sketches;
+        this.allocate(keys.length << 1);
+
+        int mask = this.keys.length - 1;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) {
+                continue;
+            }
+            int slot = hashes[i] & mask;
+            while (this.keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            this.keys[slot] = keys[i];
+            this.hashes[slot] = hashes[i];
+            this.counts[slot] = counts[i];
+            this.valueCounts[slot] = valueCounts[i];
+            this.sums[slot] = sums[i];
+            this.mins[slot] = mins[i];
+            this.maxs[slot] = maxs[i];
+            if (this.registers > 0) {
+                System.arraycopy(sketches, i * this.registers, this.sketches, slot * this.registers, this.registers);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new String[capacity];
+        this.hashes = new int[capacity];
+        this.counts = new long[capacity];
+        this.valueCounts = new long[capacity];
+        this.sums = new double[capacity];
+        this.mins = new double[capacity];
+        this.maxs = new double[capacity];
+        this.sketches = new byte[capacity * this.registers];
+    }
+
+    private static double alpha(int registers) {
+        switch (registers) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / registers);
+        }
+    }
+}
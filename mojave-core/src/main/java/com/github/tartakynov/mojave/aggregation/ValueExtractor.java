@@ -0,0 +1,34 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.aggregation;
+
+import com.github.tartakynov.mojave.Message;
+
+/**
+ * Extracts the value a {@see WindowAggregator} sums, averages and compares.
+ */
+public interface ValueExtractor {
+    /**
+     * Gets the value of a message.
+     *
+     * @param message either a string or a {@see Message}.
+     * @return the value, or NaN if the message has none.
+     */
+    double getValue(CharSequence message);
+}
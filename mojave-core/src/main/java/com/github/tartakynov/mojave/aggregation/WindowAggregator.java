@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.aggregation;
+
+import com.github.tartakynov.mojave.codec.Json;
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import com.github.tartakynov.mojave.pipeline.KeyExtractor;
+import com.github.tartakynov.mojave.pipeline.StatefulTransform;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Aggregates messages by key over tumbling or sliding windows of processing time and emits a JSON
+ * message per key when a window closes, e.g.
+ * <code>{"window":"clicks","key":"home","start":60000,"end":120000,"count":12,"avg":3.5}</code>.
+ * <p/>
+ * A window of size milliseconds closes every slide milliseconds, windows are tumbling when both
+ * are the same. Messages only update running aggregates in an {@see AggregateTable} per slide, or
+ * pane, and windows are merged from their panes when they close, so memory grows with the number
+ * of keys and panes, not messages. Aggregates without a value, e.g. the min of a key without
+ * numeric values, are emitted as null.
+ * <p/>
+ * Windows close when a batch or a tick comes after their end, so they are emitted within a batch
+ * timeout of closing. Detaching the source emits all windows still holding messages.
+ */
+public class WindowAggregator implements StatefulTransform {
+    /**
+     * The precision of distinct value sketches unless configured otherwise, about 3% error.
+     */
+    public static final int DEFAULT_PRECISION = 10;
+
+    private static final long NO_PANE = Long.MIN_VALUE;
+    private final String name;
+    private final long size;
+    private final long slide;
+    private final Aggregate[] aggregates;
+    private final KeyExtractor keyExtractor;
+    private final ValueExtractor valueExtractor;
+    private final KeyExtractor distinctExtractor;
+    private final AggregateTable[] panes;
+    private final AggregateTable window;
+    private long pane = NO_PANE;
+
+    /**
+     * Creates an aggregator.
+     *
+     * @param name              emitted with every window.
+     * @param size              of windows in milliseconds, a multiple of slide.
+     * @param slide             interval in milliseconds windows close at.
+     * @param aggregates        to compute.
+     * @param keyExtractor      of keys to group messages by, or null to aggregate all messages together.
+     * @param valueExtractor    of values, required by sum, min, max and avg.
+     * @param distinctExtractor of values to count distinct, required by distinct.
+     * @param precision         of distinct value sketches, from 4 to 16.
+     */
+    public WindowAggregator(String name, long size, long slide, Collection<Aggregate> aggregates,
+                            KeyExtractor keyExtractor, ValueExtractor valueExtractor,
+                            KeyExtractor distinctExtractor, int precision) throws ConfigurationException {
+        if (size <= 0 || slide <= 0 || size % slide != 0) {
+            throw new ConfigurationException("The window size must be a positive multiple of the slide: " + name);
+        }
+        if (aggregates.isEmpty()) {
+            throw new ConfigurationException("No aggregates given for the window: " + name);
+        }
+        EnumSet<Aggregate> set = EnumSet.copyOf(aggregates);
+        if (valueExtractor == null && (set.contains(Aggregate.SUM) || set.contains(Aggregate.MIN)
+                || set.contains(Aggregate.MAX) || set.contains(Aggregate.AVG))) {
+            throw new ConfigurationException("The window aggregates values, but no value is given: " + name);
+        }
+        boolean distinct = set.contains(Aggregate.DISTINCT);
+        if (distinct && distinctExtractor == null) {
+            throw new ConfigurationException("The window counts distinct values, but no distinct field is given: " + name);
+        }
+        if (distinct && (precision < 4 || precision > 16)) {
+            throw new ConfigurationException("The precision of distinct values must be from 4 to 16: " + name);
+        }
+
+        this.name = name;
+        this.size = size;
+        this.slide = slide;
+        this.aggregates = set.toArray(new Aggregate[set.size()]);
+        this.keyExtractor = keyExtractor;
+        this.valueExtractor = valueExtractor;
+        this.distinctExtractor = distinct ? distinctExtractor : null;
+        this.panes = new AggregateTable[(int) (size / slide)];
+        for (int i = 0; i < this.panes.length; i++) {
+            this.panes[i] = new AggregateTable(distinct ? precision : 0);
+        }
+        this.window = this.panes.length > 1 ? new AggregateTable(distinct ? precision : 0) : null;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public List<CharSequence> apply(List<CharSequence> batch) {
+        return this.apply(batch, System.currentTimeMillis());
+    }
+
+    @Override
+    public List<CharSequence> tick() {
+        return this.tick(System.currentTimeMillis());
+    }
+
+    @Override
+    public synchronized List<CharSequence> flush() {
+        if (this.pane == NO_PANE) {
+            return null;
+        }
+        return this.advance(this.pane + this.panes.length, null);
+    }
+
+    /**
+     * Adds a batch received at a time to the current pane, closing windows that ended before.
+     *
+     * @param batch to aggregate.
+     * @param now   time in milliseconds.
+     * @return aggregates of closed windows, or null if none closed.
+     */
+    synchronized List<CharSequence> apply(List<CharSequence> batch, long now) {
+        List<CharSequence> output = this.advance(now / this.slide, null);
+        AggregateTable current = this.panes[(int) (this.pane % this.panes.length)];
+        for (CharSequence message : batch) {
+            String key = "";
+            if (this.keyExtractor != null) {
+                key = String.valueOf(this.keyExtractor.getKey(message));
+            }
+            double value = this.valueExtractor != null ? this.valueExtractor.getValue(message) : Double.NaN;
+            int slot = current.add(key, value);
+            if (this.distinctExtractor != null) {
+                Object distinct = this.distinctExtractor.getKey(message);
+                if (distinct != null) {
+                    current.offer(slot, AggregateTable.hash(distinct.toString()));
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Closes windows that ended before a time.
+     *
+     * @param now time in milliseconds.
+     * @return aggregates of closed windows, or null if none closed.
+     */
+    synchronized List<CharSequence> tick(long now) {
+        if (this.pane == NO_PANE) {
+            return null;
+        }
+        return this.advance(now / this.slide, null);
+    }
+
+    /**
+     * Moves the current pane forward, emitting a window for every pane passed while any pane
+     * holds messages.
+     */
+    private List<CharSequence> advance(long target, List<CharSequence> output) {
+        if (this.pane == NO_PANE) {
+            this.pane = target;
+            return output;
+        }
+        while (this.pane < target) {
+            if (this.isEmpty()) {
+                this.pane = target;
+                break;
+            }
+            output = this.emit(output);
+            this.pane++;
+            this.panes[(int) (this.pane % this.panes.length)].clear();
+        }
+        return output;
+    }
+
+    private boolean isEmpty() {
+        for (AggregateTable table : this.panes) {
+            if (table.size() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Emits the window ending with the current pane.
+     */
+    private List<CharSequence> emit(List<CharSequence> output) {
+        AggregateTable table = this.window;
+        if (table == null) {
+            table = this.panes[0];
+        } else {
+            table.clear();
+            for (AggregateTable pane : this.panes) {
+                table.merge(pane);
+            }
+        }
+        if (table.size() == 0) {
+            return output;
+        }
+
+        if (output == null) {
+            output = new ArrayList<CharSequence>(table.size());
+        }
+        long end = (this.pane + 1) * this.slide;
+        StringBuilder prefix = new StringBuilder("{\"window\":");
+        Json.quote(this.name, prefix);
+        for (int slot = 0; slot < table.capacity(); slot++) {
+            String key = table.keyAt(slot);
+            if (key == null) {
+                continue;
+            }
+            StringBuilder message = new StringBuilder(prefix);
+            if (this.keyExtractor != null) {
+                message.append(",\"key\":");
+                Json.quote(key, message);
+            }
+            message.append(",\"start\":").append(end - this.size).append(",\"end\":").append(end);
+            for (Aggregate aggregate : this.aggregates) {
+                message.append(",\"").append(aggregate.getName()).append("\":");
+                switch (aggregate) {
+                    case COUNT:
+                        message.append(table.count(slot));
+                        break;
+                    case SUM:
+                        appendNumber(message, table.sum(slot));
+                        break;
+                    case MIN:
+                        appendNumber(message, table.min(slot));
+                        break;
+                    case MAX:
+                        appendNumber(message, table.max(slot));
+                        break;
+                    case AVG:
+                        appendNumber(message, table.avg(slot));
+                        break;
+                    case DISTINCT:
+                        message.append(table.distinct(slot));
+                        break;
+                }
+            }
+            output.add(message.append('}').toString());
+        }
+        return output;
+    }
+
+    private static void appendNumber(StringBuilder out, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.append("null");
+        } else {
+            out.append(value);
+        }
+    }
+}
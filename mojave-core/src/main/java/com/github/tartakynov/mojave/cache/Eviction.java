@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.cache;
+
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+
+/**
+ * Order a full {@see LookupCache} evicts entries in.
+ */
+public enum Eviction {
+    /**
+     * Evicts the least recently used entry first.
+     */
+    LRU,
+
+    /**
+     * Evicts the least recently written entry first, entries also expire once their time to live
+     * has passed.
+     */
+    TTL;
+
+    /**
+     * Parses an eviction policy by name, ignoring case.
+     *
+     * @param name of the policy.
+     * @return the policy.
+     */
+    public static Eviction parse(String name) throws ConfigurationException {
+        for (Eviction eviction : values()) {
+            if (eviction.name().equalsIgnoreCase(name)) {
+                return eviction;
+            }
+        }
+        throw new ConfigurationException("Unknown eviction policy: " + name);
+    }
+}
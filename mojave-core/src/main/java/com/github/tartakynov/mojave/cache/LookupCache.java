@@ -0,0 +1,489 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.cache;
+
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent cache of values by string keys, bounded by the number of entries, their total weight
+ * in bytes, or both.
+ * <p/>
+ * Keys are spread over segments, each a linked hash map guarded by its own lock and bounded by its
+ * share of the limits. With {@see Eviction#LRU} a full segment evicts its least recently used
+ * entry, with {@see Eviction#TTL} the least recently written one. Entries expire after the time to
+ * live, if any, under both policies.
+ * <p/>
+ * Misses are loaded by the {@see Loader} once per key however many threads ask for it at once,
+ * hits never call it. A load the key is put or invalidated during isn't cached, so it can't bring
+ * back a value older than the change.
+ * <p/>
+ * Entries are only weighed when the cache is bounded by weight.
+ *
+ * @param <V> type of values.
+ */
+public class LookupCache<V> {
+    /**
+     * The number of entries kept unless configured otherwise.
+     */
+    public static final long DEFAULT_MAX_ENTRIES = 10000;
+
+    private static final int MAX_SEGMENTS = 16;
+    private final String name;
+    private final Segment[] segments;
+    private final long maxSegmentEntries;
+    private final long maxSegmentWeight;
+    private final long ttlNanos;
+    private final Weigher<? super V> weigher;
+    private final ConcurrentMap<String, LoadTask> loading = new ConcurrentHashMap<String, LoadTask>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadTime = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile Loader<? extends V> loader;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param name       of the cache.
+     * @param maxEntries the number of entries to keep, or 0 for no limit.
+     * @param maxWeight  the total weight of entries to keep in bytes, or 0 for no limit.
+     * @param eviction   order to evict entries in.
+     * @param ttl        time to live of entries in milliseconds, or 0 to keep them until evicted.
+     * @param loader     of missing values, or null to only keep values put into the cache.
+     * @param weigher    of entries, required with a maximum weight and unused without one.
+     */
+    public LookupCache(String name, long maxEntries, long maxWeight, Eviction eviction, long ttl,
+                       Loader<? extends V> loader, Weigher<? super V> weigher) throws ConfigurationException {
+        if (maxEntries < 0 || maxWeight < 0 || ttl < 0) {
+            throw new ConfigurationException("Invalid limits of the cache: " + name);
+        }
+        if (maxEntries == 0 && maxWeight == 0) {
+            throw new ConfigurationException("The cache must be bounded by entries or weight: " + name);
+        }
+        if (maxWeight > 0 && weigher == null) {
+            throw new ConfigurationException("The cache is bounded by weight, but no weigher is given: " + name);
+        }
+        if (eviction == Eviction.TTL && ttl == 0) {
+            throw new ConfigurationException("The cache evicts by time to live, but no ttl is given: " + name);
+        }
+
+        // small caches get a single segment, so their limits are exact
+        long bound = maxEntries > 0 ? maxEntries / 64 : maxWeight / (64 * 1024);
+        int count = Integer.highestOneBit((int) Math.max(1, Math.min(MAX_SEGMENTS, bound)));
+        this.name = name;
+        @SuppressWarnings("unchecked")
+        Segment[] segments = (Segment[]) new LookupCache<?>.Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(eviction == Eviction.LRU);
+        }
+        this.segments = segments;
+        this.maxSegmentEntries = maxEntries > 0 ? (maxEntries + count - 1) / count : Long.MAX_VALUE;
+        this.maxSegmentWeight = maxWeight > 0 ? (maxWeight + count - 1) / count : Long.MAX_VALUE;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+        this.loader = loader;
+        this.weigher = maxWeight > 0 ? weigher : null;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Replaces the loader, loads in progress finish with the previous one.
+     *
+     * @param loader of missing values, or null to only keep values put into the cache.
+     */
+    public void setLoader(Loader<? extends V> loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Gets the cached value of a key, loading it on a miss.
+     *
+     * @param key to look up.
+     * @return the value, or null if it isn't cached and can't be loaded.
+     */
+    public V get(String key) throws Exception {
+        V value = this.getIfPresent(key);
+        if (value != null) {
+            this.hits.increment();
+            return value;
+        }
+
+        this.misses.increment();
+        final Loader<? extends V> loader = this.loader;
+        if (loader == null) {
+            return null;
+        }
+        LoadTask task = this.loading.get(key);
+        if (task == null) {
+            LoadTask created = new LoadTask(loader, key);
+            task = this.loading.putIfAbsent(key, created);
+            if (task == null) {
+                task = created;
+                try {
+                    task.future.run();
+                } finally {
+                    this.loading.remove(key, task);
+                }
+            }
+        }
+        try {
+            return task.future.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof Exception ? (Exception) cause : ex;
+        }
+    }
+
+    /**
+     * Gets the cached value of a key without loading it or recording statistics.
+     *
+     * @param key to look up.
+     * @return the value, or null if it isn't cached.
+     */
+    public V getIfPresent(String key) {
+        Segment segment = this.segmentOf(key);
+        segment.lock();
+        try {
+            Entry<V> entry = segment.entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (this.isExpired(entry, System.nanoTime())) {
+                segment.remove(key);
+                return null;
+            }
+            return entry.value;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * Caches a value, replacing the current one. Values heavier than a segment's share of the
+     * maximum weight aren't cached.
+     *
+     * @param key   of the value.
+     * @param value to cache, or null to remove the key.
+     */
+    public void put(String key, V value) {
+        this.store(key, value, null);
+    }
+
+    /**
+     * Caches a value unless it was loaded by a task that became stale.
+     *
+     * @param key   of the value.
+     * @param value to cache, or null to remove the key.
+     * @param task  that loaded the value, or null if it was put.
+     */
+    private void store(String key, V value, LoadTask task) {
+        if (value == null) {
+            if (task == null) {
+                this.invalidate(key);
+            }
+            return;
+        }
+
+        long weight = this.weigher != null ? this.weigher.weigh(key, value) : 0;
+        Segment segment = this.segmentOf(key);
+        segment.lock();
+        try {
+            if (task == null) {
+                this.abandonLoad(key);
+            } else if (task.stale) {
+                return;
+            }
+            // removing first moves the key to the end of the eviction order under both policies
+            segment.remove(key);
+            if (weight > this.maxSegmentWeight) {
+                return;
+            }
+            segment.entries.put(key, new Entry<V>(value, weight, System.nanoTime()));
+            segment.weight += weight;
+            Iterator<Entry<V>> eldest = segment.entries.values().iterator();
+            while (segment.entries.size() > this.maxSegmentEntries || segment.weight > this.maxSegmentWeight) {
+                segment.weight -= eldest.next().weight;
+                eldest.remove();
+                this.evictions.increment();
+            }
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * Caches all values of a map.
+     *
+     * @param values to cache.
+     */
+    public void putAll(Map<String, ? extends V> values) {
+        for (Map.Entry<String, ? extends V> entry : values.entrySet()) {
+            this.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Removes a key from the cache.
+     *
+     * @param key to remove.
+     */
+    public void invalidate(String key) {
+        Segment segment = this.segmentOf(key);
+        segment.lock();
+        try {
+            this.abandonLoad(key);
+            segment.remove(key);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * Removes all keys from the cache.
+     */
+    public void invalidateAll() {
+        for (LoadTask task : this.loading.values()) {
+            task.stale = true;
+        }
+        for (Segment segment : this.segments) {
+            segment.lock();
+            try {
+                segment.entries.clear();
+                segment.weight = 0;
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    /**
+     * Loads the values of all cached keys again. Keys the loader has no value for any more are
+     * removed, and keys it fails to load keep their values.
+     *
+     * @return the number of keys loaded.
+     */
+    public int refresh() {
+        Loader<? extends V> loader = this.loader;
+        if (loader == null) {
+            return 0;
+        }
+        int count = 0;
+        for (String key : this.keys()) {
+            try {
+                this.put(key, this.load(loader, key));
+                count++;
+            } catch (Exception ex) {
+                // counted as a load failure, the current value stays until it's evicted
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets a snapshot of the cached keys.
+     */
+    public List<String> keys() {
+        List<String> keys = new ArrayList<String>();
+        for (Segment segment : this.segments) {
+            segment.lock();
+            try {
+                keys.addAll(segment.entries.keySet());
+            } finally {
+                segment.unlock();
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Gets the number of cached entries, including expired ones not removed yet.
+     */
+    public long getSize() {
+        long size = 0;
+        for (Segment segment : this.segments) {
+            segment.lock();
+            try {
+                size += segment.entries.size();
+            } finally {
+                segment.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Gets the total weight of cached entries in bytes, or 0 unless the cache is bounded by weight.
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment segment : this.segments) {
+            segment.lock();
+            try {
+                weight += segment.weight;
+            } finally {
+                segment.unlock();
+            }
+        }
+        return weight;
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Gets the share of lookups that were hits, or 0 if there were none.
+     */
+    public double getHitRate() {
+        long hits = this.hits.sum();
+        long total = hits + this.misses.sum();
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+    public long getLoads() {
+        return this.loads.sum();
+    }
+
+    public long getLoadFailures() {
+        return this.loadFailures.sum();
+    }
+
+    /**
+     * Gets the mean time taken by loads in milliseconds.
+     */
+    public double getMeanLoadTime() {
+        long loads = this.loads.sum() + this.loadFailures.sum();
+        return loads > 0 ? this.loadTime.sum() / 1e6 / loads : 0;
+    }
+
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    private V load(Loader<? extends V> loader, String key) throws Exception {
+        long started = System.nanoTime();
+        try {
+            V value = loader.load(key);
+            this.loads.increment();
+            return value;
+        } catch (Exception ex) {
+            this.loadFailures.increment();
+            throw ex;
+        } finally {
+            this.loadTime.add(System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Keeps a load of a key in progress from caching its value, called holding the key's segment lock.
+     */
+    private void abandonLoad(String key) {
+        LoadTask task = this.loading.get(key);
+        if (task != null) {
+            task.stale = true;
+        }
+    }
+
+    private boolean isExpired(Entry<V> entry, long now) {
+        return this.ttlNanos > 0 && now - entry.written >= this.ttlNanos;
+    }
+
+    private Segment segmentOf(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return this.segments[hash & (this.segments.length - 1)];
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long weight;
+        private final long written;
+
+        private Entry(V value, long weight, long written) {
+            this.value = value;
+            this.weight = weight;
+            this.written = written;
+        }
+    }
+
+    /**
+     * Entries in eviction order guarded by the segment's lock.
+     */
+    @SuppressWarnings("serial")
+    private final class Segment extends ReentrantLock {
+        private final LinkedHashMap<String, Entry<V>> entries;
+        private long weight;
+
+        private Segment(boolean accessOrder) {
+            this.entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, accessOrder);
+        }
+
+        private void remove(String key) {
+            Entry<V> entry = this.entries.remove(key);
+            if (entry != null) {
+                this.weight -= entry.weight;
+            }
+        }
+    }
+
+    /**
+     * Loads a missing value and caches it before other threads waiting for it are released, unless
+     * the key was put or invalidated in the meantime.
+     */
+    private final class LoadTask implements Callable<V> {
+        private final Loader<? extends V> loader;
+        private final String key;
+        private final FutureTask<V> future = new FutureTask<V>(this);
+        private volatile boolean stale;
+
+        private LoadTask(Loader<? extends V> loader, String key) {
+            this.loader = loader;
+            this.key = key;
+        }
+
+        @Override
+        public V call() throws Exception {
+            V value = LookupCache.this.load(this.loader, this.key);
+            LookupCache.this.store(this.key, value, this);
+            return value;
+        }
+    }
+}
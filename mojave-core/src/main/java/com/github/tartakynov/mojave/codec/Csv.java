@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codec of delimited lines as in RFC 4180: fields containing the delimiter, quotes or line breaks
+ * are quoted, and quotes inside them are doubled. Any delimiter can be used, e.g. tabs or pipes.
+ * <p/>
+ * {@link #field} reads one field without splitting the rest of the line.
+ */
+public final class Csv {
+    private static final char QUOTE = '"';
+
+    private Csv() {
+    }
+
+    /**
+     * Splits a line into fields.
+     *
+     * @param line      to split.
+     * @param delimiter of fields.
+     * @return unquoted fields.
+     */
+    public static List<String> parse(CharSequence line, char delimiter) {
+        List<String> fields = new ArrayList<String>();
+        int[] end = new int[1];
+        int pos = 0;
+        do {
+            fields.add(read(line, pos, delimiter, end));
+            pos = end[0] + 1;
+        } while (end[0] < line.length());
+        return fields;
+    }
+
+    /**
+     * Reads a single field of a line.
+     *
+     * @param line      containing the field.
+     * @param index     of the field, starting from 0.
+     * @param delimiter of fields.
+     * @return the unquoted field, or null if the index is negative or the line has fewer fields.
+     */
+    public static String field(CharSequence line, int index, char delimiter) {
+        if (index < 0) {
+            return null;
+        }
+        int pos = 0;
+        for (int i = 0; i < index; i++) {
+            pos = skip(line, pos, delimiter);
+            if (pos >= line.length()) {
+                return null;
+            }
+            pos++;
+        }
+        return read(line, pos, delimiter, new int[1]);
+    }
+
+    /**
+     * Joins fields into a line, quoting them when needed. Nulls are written as empty fields.
+     *
+     * @param fields    to join.
+     * @param delimiter of fields.
+     * @param out       to append to.
+     */
+    public static void write(List<?> fields, char delimiter, StringBuilder out) {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                out.append(delimiter);
+            }
+            Object field = fields.get(i);
+            if (field != null) {
+                quote(field.toString(), delimiter, out);
+            }
+        }
+    }
+
+    /**
+     * Writes a field, quoting it if it contains the delimiter, quotes or line breaks.
+     */
+    public static void quote(CharSequence field, char delimiter, StringBuilder out) {
+        boolean quoted = false;
+        for (int i = 0; i < field.length() && !quoted; i++) {
+            char c = field.charAt(i);
+            quoted = c == delimiter || c == QUOTE || c == '\n' || c == '\r';
+        }
+        if (!quoted) {
+            out.append(field);
+            return;
+        }
+        out.append(QUOTE);
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == QUOTE) {
+                out.append(QUOTE);
+            }
+            out.append(c);
+        }
+        out.append(QUOTE);
+    }
+
+    /**
+     * Reads the field starting at a position.
+     *
+     * @param end receives the position of the delimiter after the field, or the line's length.
+     */
+    private static String read(CharSequence line, int start, char delimiter, int[] end) {
+        if (start < line.length() && line.charAt(start) == QUOTE) {
+            StringBuilder field = new StringBuilder();
+            int pos = start + 1;
+            while (pos < line.length()) {
+                char c = line.charAt(pos);
+                if (c == QUOTE) {
+                    if (pos + 1 < line.length() && line.charAt(pos + 1) == QUOTE) {
+                        field.append(QUOTE);
+                        pos += 2;
+                        continue;
+                    }
+                    pos++;
+                    break;
+                }
+                field.append(c);
+                pos++;
+            }
+            // text after the closing quote is kept as is
+            int next = indexOf(line, pos, delimiter);
+            field.append(line, pos, next);
+            end[0] = next;
+            return field.toString();
+        }
+        int next = indexOf(line, start, delimiter);
+        end[0] = next;
+        return line.subSequence(Math.min(start, next), next).toString();
+    }
+
+    private static int skip(CharSequence line, int start, char delimiter) {
+        int pos = start;
+        if (pos < line.length() && line.charAt(pos) == QUOTE) {
+            for (pos++; pos < line.length(); pos++) {
+                if (line.charAt(pos) == QUOTE) {
+                    if (pos + 1 < line.length() && line.charAt(pos + 1) == QUOTE) {
+                        pos++;
+                    } else {
+                        pos++;
+                        break;
+                    }
+                }
+            }
+        }
+        return indexOf(line, pos, delimiter);
+    }
+
+    private static int indexOf(CharSequence line, int start, char delimiter) {
+        for (int pos = start; pos < line.length(); pos++) {
+            if (line.charAt(pos) == delimiter) {
+                return pos;
+            }
+        }
+        return line.length();
+    }
+}
@@ -0,0 +1,584 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.codec;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON codec working in place on the text of messages.
+ * <p/>
+ * Besides parsing whole documents, values can be located by position: {@link #find} walks the
+ * members of an object comparing names in place and {@link #skip} steps over values without
+ * decoding them, so reading a field or two of a large message only decodes those fields.
+ * <p/>
+ * Malformed text raises an {@see IllegalArgumentException} with the position of the error.
+ */
+public final class Json {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Json() {
+    }
+
+    /**
+     * Creates the objects and arrays of a parsed document.
+     */
+    public interface Handler {
+        /**
+         * Creates an empty object.
+         */
+        Object createObject();
+
+        /**
+         * Sets a member of an object created by {@link #createObject()}, in document order.
+         */
+        void setMember(Object object, String name, Object value);
+
+        /**
+         * Creates an array from its items.
+         */
+        Object createArray(List<Object> items);
+    }
+
+    /**
+     * Parses documents into {@see LinkedHashMap}s and {@see ArrayList}s.
+     */
+    public static final Handler COLLECTIONS = new Handler() {
+        @Override
+        public Object createObject() {
+            return new LinkedHashMap<String, Object>();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void setMember(Object object, String name, Object value) {
+            ((Map<String, Object>) object).put(name, value);
+        }
+
+        @Override
+        public Object createArray(List<Object> items) {
+            return items;
+        }
+    };
+
+    /**
+     * Parses a document into collections, strings, doubles, booleans and nulls.
+     *
+     * @param text to parse.
+     * @return the value of the document.
+     */
+    public static Object parse(CharSequence text) {
+        return parse(text, COLLECTIONS);
+    }
+
+    /**
+     * Parses a document.
+     *
+     * @param text    to parse.
+     * @param handler creating objects and arrays.
+     * @return the value of the document.
+     */
+    public static Object parse(CharSequence text, Handler handler) {
+        int[] end = new int[1];
+        Object value = read(text, skipWhitespace(text, 0), handler, end);
+        if (skipWhitespace(text, end[0]) != text.length()) {
+            throw error(end[0]);
+        }
+        return value;
+    }
+
+    /**
+     * Reads the value starting at a position.
+     *
+     * @param text    containing the value.
+     * @param start   position of the value.
+     * @param handler creating objects and arrays.
+     * @return the value.
+     */
+    public static Object read(CharSequence text, int start, Handler handler) {
+        return read(text, start, handler, new int[1]);
+    }
+
+    /**
+     * Finds a member of the object starting at a position.
+     *
+     * @param text  containing the object.
+     * @param start position of the opening brace.
+     * @param name  of the member.
+     * @return the position of the member's value, or -1 if the object has no such member.
+     */
+    public static int find(CharSequence text, int start, String name) {
+        int pos = expect(text, start, '{');
+        pos = skipWhitespace(text, pos);
+        if (pos < text.length() && text.charAt(pos) == '}') {
+            return -1;
+        }
+        while (true) {
+            boolean matches = nameEquals(text, pos, name);
+            pos = expect(text, skipWhitespace(text, skipString(text, pos)), ':');
+            pos = skipWhitespace(text, pos);
+            if (matches) {
+                return pos;
+            }
+            pos = skipWhitespace(text, skip(text, pos));
+            if (pos < text.length() && text.charAt(pos) == '}') {
+                return -1;
+            }
+            pos = skipWhitespace(text, expect(text, pos, ','));
+        }
+    }
+
+    /**
+     * Gets the names of the members of the object starting at a position.
+     *
+     * @param text  containing the object.
+     * @param start position of the opening brace.
+     * @return names in document order.
+     */
+    public static List<String> names(CharSequence text, int start) {
+        List<String> names = new ArrayList<String>();
+        int pos = skipWhitespace(text, expect(text, start, '{'));
+        if (pos < text.length() && text.charAt(pos) == '}') {
+            return names;
+        }
+        while (true) {
+            int[] end = new int[1];
+            names.add(readString(text, pos, end));
+            pos = skipWhitespace(text, expect(text, skipWhitespace(text, end[0]), ':'));
+            pos = skipWhitespace(text, skip(text, pos));
+            if (pos < text.length() && text.charAt(pos) == '}') {
+                return names;
+            }
+            pos = skipWhitespace(text, expect(text, pos, ','));
+        }
+    }
+
+    /**
+     * Gets the positions of the items of the array starting at a position.
+     *
+     * @param text  containing the array.
+     * @param start position of the opening bracket.
+     * @return positions of items.
+     */
+    public static int[] items(CharSequence text, int start) {
+        int[] items = new int[8];
+        int count = 0;
+        int pos = skipWhitespace(text, expect(text, start, '['));
+        if (pos < text.length() && text.charAt(pos) == ']') {
+            return new int[0];
+        }
+        while (true) {
+            if (count == items.length) {
+                int[] grown = new int[count * 2];
+                System.arraycopy(items, 0, grown, 0, count);
+                items = grown;
+            }
+            items[count++] = pos;
+            pos = skipWhitespace(text, skip(text, pos));
+            if (pos < text.length() && text.charAt(pos) == ']') {
+                int[] result = new int[count];
+                System.arraycopy(items, 0, result, 0, count);
+                return result;
+            }
+            pos = skipWhitespace(text, expect(text, pos, ','));
+        }
+    }
+
+    /**
+     * Steps over the value starting at a position without decoding it.
+     *
+     * @param text  containing the value.
+     * @param start position of the value.
+     * @return the position right after the value.
+     */
+    public static int skip(CharSequence text, int start) {
+        if (start >= text.length()) {
+            throw error(start);
+        }
+        char c = text.charAt(start);
+        if (c == '"') {
+            return skipString(text, start);
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            for (int pos = start; pos < text.length(); pos++) {
+                c = text.charAt(pos);
+                if (c == '"') {
+                    pos = skipString(text, pos) - 1;
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if ((c == '}' || c == ']') && --depth == 0) {
+                    return pos + 1;
+                }
+            }
+            throw error(text.length());
+        }
+        int pos = start;
+        while (pos < text.length() && isLiteralChar(text.charAt(pos))) {
+            pos++;
+        }
+        if (pos == start) {
+            throw error(start);
+        }
+        return pos;
+    }
+
+    /**
+     * Skips whitespace.
+     *
+     * @return the position of the first character that isn't whitespace.
+     */
+    public static int skipWhitespace(CharSequence text, int pos) {
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Writes collections, character sequences, numbers, booleans and nulls as JSON. Other
+     * values are written as strings.
+     *
+     * @param value to write.
+     * @param out   to append to.
+     */
+    public static void write(Object value, StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof CharSequence) {
+            quote((CharSequence) value, out);
+        } else if (value instanceof Number) {
+            writeNumber(((Number) value).doubleValue(), out);
+        } else if (value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof Map) {
+            out.append('{');
+            Iterator<? extends Map.Entry<?, ?>> members = ((Map<?, ?>) value).entrySet().iterator();
+            while (members.hasNext()) {
+                Map.Entry<?, ?> member = members.next();
+                quote(String.valueOf(member.getKey()), out);
+                out.append(':');
+                write(member.getValue(), out);
+                if (members.hasNext()) {
+                    out.append(',');
+                }
+            }
+            out.append('}');
+        } else if (value instanceof Iterable) {
+            out.append('[');
+            Iterator<?> items = ((Iterable<?>) value).iterator();
+            while (items.hasNext()) {
+                write(items.next(), out);
+                if (items.hasNext()) {
+                    out.append(',');
+                }
+            }
+            out.append(']');
+        } else {
+            quote(value.toString(), out);
+        }
+    }
+
+    /**
+     * Writes a number the way JavaScript prints it: integers without a fraction, and NaN or
+     * infinities as null.
+     */
+    public static void writeNumber(double value, StringBuilder out) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.append("null");
+        } else if (value == (long) value && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+    }
+
+    /**
+     * Writes a quoted and escaped string.
+     */
+    public static void quote(CharSequence value, StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    out.append('\\').append(c);
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    private static Object read(CharSequence text, int start, Handler handler, int[] end) {
+        if (start >= text.length()) {
+            throw error(start);
+        }
+        char c = text.charAt(start);
+        if (c == '"') {
+            return readString(text, start, end);
+        }
+        if (c == '{') {
+            Object object = handler.createObject();
+            int pos = skipWhitespace(text, start + 1);
+            if (pos < text.length() && text.charAt(pos) == '}') {
+                end[0] = pos + 1;
+                return object;
+            }
+            while (true) {
+                String name = readString(text, pos, end);
+                pos = skipWhitespace(text, expect(text, skipWhitespace(text, end[0]), ':'));
+                handler.setMember(object, name, read(text, pos, handler, end));
+                pos = skipWhitespace(text, end[0]);
+                if (pos < text.length() && text.charAt(pos) == '}') {
+                    end[0] = pos + 1;
+                    return object;
+                }
+                pos = skipWhitespace(text, expect(text, pos, ','));
+            }
+        }
+        if (c == '[') {
+            List<Object> items = new ArrayList<Object>();
+            int pos = skipWhitespace(text, start + 1);
+            if (pos < text.length() && text.charAt(pos) == ']') {
+                end[0] = pos + 1;
+                return handler.createArray(items);
+            }
+            while (true) {
+                items.add(read(text, pos, handler, end));
+                pos = skipWhitespace(text, end[0]);
+                if (pos < text.length() && text.charAt(pos) == ']') {
+                    end[0] = pos + 1;
+                    return handler.createArray(items);
+                }
+                pos = skipWhitespace(text, expect(text, pos, ','));
+            }
+        }
+        end[0] = skip(text, start);
+        return readLiteral(text, start, end[0]);
+    }
+
+    private static Object readLiteral(CharSequence text, int start, int end) {
+        if (matches(text, start, end, "true")) {
+            return Boolean.TRUE;
+        }
+        if (matches(text, start, end, "false")) {
+            return Boolean.FALSE;
+        }
+        if (matches(text, start, end, "null")) {
+            return null;
+        }
+        if (!isNumber(text, start, end)) {
+            throw error(start);
+        }
+        return Double.valueOf(text.subSequence(start, end).toString());
+    }
+
+    /**
+     * Checks a literal against the JSON number grammar, which is stricter than {@link Double#valueOf}.
+     */
+    private static boolean isNumber(CharSequence text, int start, int end) {
+        int pos = start;
+        if (pos < end && text.charAt(pos) == '-') {
+            pos++;
+        }
+        if (pos < end && text.charAt(pos) == '0') {
+            pos++;
+        } else {
+            int digits = skipDigits(text, pos, end);
+            if (digits == pos) {
+                return false;
+            }
+            pos = digits;
+        }
+        if (pos < end && text.charAt(pos) == '.') {
+            int digits = skipDigits(text, pos + 1, end);
+            if (digits == pos + 1) {
+                return false;
+            }
+            pos = digits;
+        }
+        if (pos < end && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+            pos++;
+            if (pos < end && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) {
+                pos++;
+            }
+            int digits = skipDigits(text, pos, end);
+            if (digits == pos) {
+                return false;
+            }
+            pos = digits;
+        }
+        return pos == end;
+    }
+
+    private static int skipDigits(CharSequence text, int pos, int end) {
+        while (pos < end && text.charAt(pos) >= '0' && text.charAt(pos) <= '9') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static String readString(CharSequence text, int start, int[] end) {
+        expect(text, start, '"');
+        StringBuilder value = null;
+        int from = start + 1;
+        for (int pos = from; pos < text.length(); pos++) {
+            char c = text.charAt(pos);
+            if (c == '"') {
+                end[0] = pos + 1;
+                if (value == null) {
+                    return text.subSequence(from, pos).toString();
+                }
+                return value.append(text, from, pos).toString();
+            }
+            if (c == '\\') {
+                if (value == null) {
+                    value = new StringBuilder();
+                }
+                value.append(text, from, pos);
+                if (++pos >= text.length()) {
+                    break;
+                }
+                c = text.charAt(pos);
+                switch (c) {
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (pos + 4 >= text.length()) {
+                            throw error(pos);
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.subSequence(pos + 1, pos + 5).toString(), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error(pos);
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        value.append(c);
+                }
+                from = pos + 1;
+            }
+        }
+        throw error(text.length());
+    }
+
+    private static int skipString(CharSequence text, int start) {
+        expect(text, start, '"');
+        for (int pos = start + 1; pos < text.length(); pos++) {
+            char c = text.charAt(pos);
+            if (c == '"') {
+                return pos + 1;
+            }
+            if (c == '\\') {
+                pos++;
+            }
+        }
+        throw error(text.length());
+    }
+
+    /**
+     * Compares the string starting at a position with a name, decoding it only if it's escaped.
+     */
+    private static boolean nameEquals(CharSequence text, int start, String name) {
+        expect(text, start, '"');
+        int length = name.length();
+        if (start + length + 1 < text.length() && text.charAt(start + length + 1) == '"') {
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(start + 1 + i);
+                if (c == '\\') {
+                    return readString(text, start, new int[1]).equals(name);
+                }
+                if (c != name.charAt(i) || c == '"') {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (int pos = start + 1; pos < text.length() && text.charAt(pos) != '"'; pos++) {
+            if (text.charAt(pos) == '\\') {
+                return readString(text, start, new int[1]).equals(name);
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(CharSequence text, int start, int end, String literal) {
+        if (end - start != literal.length()) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (text.charAt(start + i) != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLiteralChar(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || c == '-' || c == '+' || c == '.' || c == 'E';
+    }
+
+    private static int expect(CharSequence text, int pos, char c) {
+        if (pos >= text.length() || text.charAt(pos) != c) {
+            throw error(pos);
+        }
+        return pos + 1;
+    }
+
+    private static IllegalArgumentException error(int pos) {
+        return new IllegalArgumentException("Invalid JSON at position " + pos);
+    }
+}
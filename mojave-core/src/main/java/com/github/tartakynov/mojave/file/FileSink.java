@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.file;
+
+import com.github.tartakynov.mojave.ByteSink;
+import com.github.tartakynov.mojave.Configuration;
+import com.github.tartakynov.mojave.Message;
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sink appending messages to memory-mapped segment files in a directory.
+ * <p/>
+ * Segments are segmentSize bytes long and a new one is started when a message doesn't fit the
+ * current one. Each run of the sink starts a new segment, and when maxSegments is positive only that
+ * many latest segments are kept. Messages are framed as configured by framing, see {@see Framing}.
+ * Appends go straight to the page cache, flush forces them to the disk.
+ */
+public class FileSink implements ByteSink {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final Logger log = LoggerFactory.getLogger(FileSink.class);
+    private String name;
+    private File directory;
+    private String prefix;
+    private Framing framing;
+    private int segmentSize;
+    private int maxSegments;
+    private long index = -1;
+    private MappedByteBuffer segment;
+    private boolean closed;
+
+    @Override
+    public CompletableFuture<Void> write(List<String> batch) {
+        List<Message> messages = new ArrayList<Message>(batch.size());
+        for (String message : batch) {
+            messages.add(Message.wrap(message));
+        }
+        return this.writeMessages(messages);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> writeMessages(List<Message> batch) {
+        CompletableFuture<Void> result = new CompletableFuture<Void>();
+        try {
+            // check the whole batch first, so a rejected batch leaves nothing behind to duplicate
+            for (Message message : batch) {
+                this.validate(message.getBuffer());
+            }
+            for (Message message : batch) {
+                this.append(message.getBuffer());
+            }
+            result.complete(null);
+        } catch (IOException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (this.segment != null) {
+            this.segment.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        this.flush();
+        this.segment = null;
+        this.closed = true;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public void configure(Configuration config) throws ConfigurationException {
+        this.name = config.getSectionName();
+        String directory = config.get("directory");
+        if (directory == null) {
+            throw new ConfigurationException("The directory is not provided.");
+        }
+        this.directory = new File(directory);
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new ConfigurationException("Unable to create the directory: " + directory);
+        }
+        this.prefix = config.get("prefix") != null ? config.get("prefix") : this.name;
+        this.framing = Framing.parse(config.get("framing"));
+        this.segmentSize = config.getInt32("segmentSize", DEFAULT_SEGMENT_SIZE);
+        if (this.segmentSize <= 0) {
+            throw new ConfigurationException("The segment size must be positive.");
+        }
+        this.maxSegments = config.getInt32("maxSegments", 0);
+    }
+
+    private void validate(ByteBuffer message) throws IOException {
+        if (this.closed) {
+            throw new IOException("The sink is closed: " + this.name);
+        }
+        this.framing.validate(message);
+        if (this.framing.size(message.remaining()) > this.segmentSize) {
+            throw new IOException("The message of " + message.remaining() + " bytes doesn't fit a segment.");
+        }
+    }
+
+    private void append(ByteBuffer message) throws IOException {
+        int size = this.framing.size(message.remaining());
+        if (this.segment == null || this.segment.remaining() < size) {
+            this.roll();
+        }
+        this.framing.write(this.segment, message);
+    }
+
+    private void roll() throws IOException {
+        if (this.segment != null) {
+            this.segment.force();
+        }
+        if (this.index < 0) {
+            long[] existing = Segments.list(this.directory, this.prefix);
+            this.index = existing.length == 0 ? -1 : existing[existing.length - 1];
+        }
+        this.index++;
+        File file = Segments.file(this.directory, this.prefix, this.index);
+        log.debug("Starting the segment: {}", file);
+        this.segment = Segments.map(file, true, this.segmentSize);
+        if (this.maxSegments > 0) {
+            for (long old : Segments.list(this.directory, this.prefix)) {
+                if (old <= this.index - this.maxSegments && !Segments.file(this.directory, this.prefix, old).delete()) {
+                    log.warn("Unable to delete the segment: {}", old);
+                }
+            }
+        }
+    }
+}
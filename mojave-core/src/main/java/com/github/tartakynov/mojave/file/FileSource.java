@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.file;
+
+import com.github.tartakynov.mojave.ByteSource;
+import com.github.tartakynov.mojave.Configuration;
+import com.github.tartakynov.mojave.Message;
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Source reading messages from the memory-mapped segment files written by {@see FileSink}.
+ * <p/>
+ * Messages are handed out as views of the mapped segments, without copying. The position of the
+ * source is kept in a mapped name.offset file in the directory and advanced as messages are taken,
+ * so a restarted source resumes after the last message it took. Directory, prefix and framing
+ * must match the sink's.
+ */
+public class FileSource extends ByteSource {
+    private static final Logger log = LoggerFactory.getLogger(FileSource.class);
+    private static final long CHECK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SCAN_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    private final ReentrantLock lock = new ReentrantLock();
+    private File directory;
+    private String prefix;
+    private Framing framing;
+    private MappedByteBuffer offset;
+    private long index;
+    private ByteBuffer segment;
+    private long skipped;
+    private long nextCheck;
+    private long nextScan;
+
+    @Override
+    public boolean read(ByteBuffer buffer) {
+        ByteBuffer record = this.nextRecord(buffer.remaining());
+        if (record == null) {
+            return false;
+        }
+        buffer.put(record);
+        return true;
+    }
+
+    @Override
+    protected Message next() {
+        ByteBuffer record = this.nextRecord(Integer.MAX_VALUE);
+        return record == null ? null : new Message(record, null);
+    }
+
+    @Override
+    public void configure(Configuration config) throws ConfigurationException {
+        super.configure(config);
+        if (this.offset != null) {
+            return;
+        }
+        String directory = config.get("directory");
+        if (directory == null) {
+            throw new ConfigurationException("The directory is not provided.");
+        }
+        this.directory = new File(directory);
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new ConfigurationException("Unable to create the directory: " + directory);
+        }
+        this.prefix = config.get("prefix") != null ? config.get("prefix") : config.getSectionName();
+        this.framing = Framing.parse(config.get("framing"));
+        File file = new File(this.directory, config.getSectionName() + ".offset");
+        try {
+            this.offset = Segments.map(file, true, 16);
+        } catch (IOException ex) {
+            throw new ConfigurationException("Unable to open the offset file: " + file);
+        }
+        this.index = this.offset.getLong(0);
+    }
+
+    /**
+     * Reads the next record, moving on to the next segment when the current one has been read up
+     * and a newer one exists. Records larger than max are skipped. While there is nothing to read,
+     * the segment files are checked at most once per {@link #CHECK_INTERVAL}.
+     *
+     * @param max maximum size of the record.
+     * @return the record, or null if none is available.
+     */
+    private ByteBuffer nextRecord(int max) {
+        this.lock.lock();
+        try {
+            if (this.segment == null && !this.open(this.index, this.offset.getLong(8))) {
+                return null;
+            }
+            long reread = -1;
+            boolean checked = false;
+            while (true) {
+                int position = this.segment.position();
+                ByteBuffer record = this.framing.read(this.segment);
+                if (record != null) {
+                    this.offset.putLong(8, this.segment.position());
+                    if (record.remaining() > max) {
+                        this.skipped++;
+                        log.warn("Skipped the message of {} bytes at {} in the segment {} of {} as it doesn't "
+                                + "fit the buffer, {} skipped so far", record.remaining(), position, this.index,
+                                this.prefix, this.skipped);
+                        continue;
+                    }
+                    return record;
+                }
+                if (!checked) {
+                    long now = System.nanoTime();
+                    if (now - this.nextCheck < 0) {
+                        return null;
+                    }
+                    this.nextCheck = now + CHECK_INTERVAL;
+                    checked = true;
+                }
+                if (this.segment.capacity() < Segments.file(this.directory, this.prefix, this.index).length()) {
+                    this.open(this.index, position);
+                    continue;
+                }
+                long next = this.successor();
+                if (next < 0) {
+                    return null;
+                }
+                if (reread != this.index) {
+                    // the sink may have appended to this segment right before rolling over, so read
+                    // it once more now that the next one is known to exist
+                    reread = this.index;
+                    this.open(this.index, position);
+                    continue;
+                }
+                if (!this.open(next, 0)) {
+                    return null;
+                }
+            }
+        } catch (IOException ex) {
+            log.error("Unable to read the segment " + this.index + " of " + this.prefix, ex);
+            return null;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of messages skipped because they didn't fit the buffer they were read into.
+     */
+    public long getSkipped() {
+        this.lock.lock();
+        try {
+            return this.skipped;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the segment after the current one. Segments are written in sequence, so the next index
+     * is looked up first, and the directory is only listed once per {@link #SCAN_INTERVAL} to find
+     * later segments after a gap.
+     *
+     * @return the index of the segment, or -1 if there's none yet.
+     */
+    private long successor() {
+        if (Segments.file(this.directory, this.prefix, this.index + 1).exists()) {
+            return this.index + 1;
+        }
+        long now = System.nanoTime();
+        if (now - this.nextScan < 0) {
+            return -1;
+        }
+        this.nextScan = now + SCAN_INTERVAL;
+        return Segments.first(this.directory, this.prefix, this.index + 1);
+    }
+
+    /**
+     * Maps the segment with the given index, or the first one after it if it's gone.
+     */
+    private boolean open(long index, long position) throws IOException {
+        long existing = Segments.first(this.directory, this.prefix, index);
+        if (existing < 0) {
+            return false;
+        }
+        if (existing != index) {
+            log.warn("The segment {} of {} is missing, skipping to {}", index, this.prefix, existing);
+            position = 0;
+        }
+        ByteBuffer segment = Segments.map(Segments.file(this.directory, this.prefix, existing), false, Integer.MAX_VALUE);
+        if (position > segment.limit()) {
+            log.warn("The offset {} is past the end of the segment {} of {}, moving to its end", position, existing,
+                    this.prefix);
+            position = segment.limit();
+        }
+        segment.position((int) position);
+        this.segment = segment;
+        this.index = existing;
+        this.offset.putLong(0, existing);
+        this.offset.putLong(8, position);
+        return true;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.file;
+
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Describes how messages are delimited inside a segment file.
+ * <p/>
+ * Segments are preallocated and zero-filled, so a zero byte where a record should start marks the
+ * end of the data written so far. Records are written body first, so a reader never sees a record
+ * before it's complete.
+ */
+public enum Framing {
+    /**
+     * Each message is followed by a '\n'. Messages must not contain '\n' or zero bytes.
+     */
+    NEWLINE {
+        @Override
+        int size(int length) {
+            return length + 1;
+        }
+
+        @Override
+        void validate(ByteBuffer message) throws IOException {
+            for (int i = message.position(); i < message.limit(); i++) {
+                byte b = message.get(i);
+                if (b == '\n' || b == 0) {
+                    throw new IOException("The message contains a " + (b == 0 ? "zero byte" : "'\\n'")
+                            + " at " + (i - message.position()) + ", which newline framing can't delimit.");
+                }
+            }
+        }
+
+        @Override
+        void write(ByteBuffer segment, ByteBuffer message) {
+            int position = segment.position();
+            int length = message.remaining();
+            ByteBuffer body = segment.duplicate();
+            body.position(position);
+            body.put(message);
+            segment.put(position + length, (byte) '\n');
+            segment.position(position + length + 1);
+        }
+
+        @Override
+        ByteBuffer read(ByteBuffer segment) {
+            int start = segment.position();
+            for (int i = start; i < segment.limit(); i++) {
+                byte b = segment.get(i);
+                if (b == '\n') {
+                    ByteBuffer record = segment.duplicate();
+                    record.position(start).limit(i);
+                    segment.position(i + 1);
+                    return record.slice();
+                } else if (b == 0) {
+                    break;
+                }
+            }
+            return null;
+        }
+    },
+
+    /**
+     * Each message is preceded by a big-endian int holding its length plus one, so that zero still
+     * marks free space.
+     */
+    LENGTH {
+        @Override
+        int size(int length) {
+            return length + 4;
+        }
+
+        @Override
+        void write(ByteBuffer segment, ByteBuffer message) {
+            int position = segment.position();
+            int length = message.remaining();
+            ByteBuffer body = segment.duplicate();
+            body.position(position + 4);
+            body.put(message);
+            segment.putInt(position, length + 1);
+            segment.position(position + 4 + length);
+        }
+
+        @Override
+        ByteBuffer read(ByteBuffer segment) {
+            int start = segment.position();
+            if (segment.limit() - start < 4) {
+                return null;
+            }
+            int length = segment.getInt(start) - 1;
+            if (length < 0 || segment.limit() - start - 4 < length) {
+                return null;
+            }
+            ByteBuffer record = segment.duplicate();
+            record.position(start + 4).limit(start + 4 + length);
+            segment.position(start + 4 + length);
+            return record.slice();
+        }
+    };
+
+    /**
+     * Gets the number of bytes a message takes in a segment.
+     */
+    abstract int size(int length);
+
+    /**
+     * Checks that a message can be framed.
+     *
+     * @throws IOException if the message can't be told apart from its delimiters.
+     */
+    void validate(ByteBuffer message) throws IOException {
+    }
+
+    /**
+     * Appends a message at the position of the segment and moves the position past it.
+     */
+    abstract void write(ByteBuffer segment, ByteBuffer message);
+
+    /**
+     * Reads the record at the position of the segment and moves the position past it.
+     *
+     * @return the bytes of the message, or null if no complete record has been written there yet.
+     */
+    abstract ByteBuffer read(ByteBuffer segment);
+
+    /**
+     * Parses a framing name, case-insensitively.
+     *
+     * @param name of the framing, or null for {@link #NEWLINE}.
+     */
+    public static Framing parse(String name) throws ConfigurationException {
+        if (name == null) {
+            return NEWLINE;
+        }
+        try {
+            return Framing.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new ConfigurationException("Unknown framing: " + name);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Naming and mapping of segment files. Segments of a log are named prefix-N.log where N is a
+ * zero-padded sequence number, so they sort in the order they were written.
+ */
+final class Segments {
+    private static final String SUFFIX = ".log";
+
+    private Segments() {
+    }
+
+    static File file(File directory, String prefix, long index) {
+        return new File(directory, String.format("%s-%020d%s", prefix, index, SUFFIX));
+    }
+
+    /**
+     * Gets the sequence numbers of existing segments, in ascending order.
+     */
+    static long[] list(File directory, String prefix) {
+        String[] names = directory.list();
+        if (names == null) {
+            return new long[0];
+        }
+        long[] indexes = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.length() == prefix.length() + 21 + SUFFIX.length() && name.startsWith(prefix + "-")
+                    && name.endsWith(SUFFIX)) {
+                try {
+                    indexes[count] = Long.parseLong(name.substring(prefix.length() + 1, prefix.length() + 21));
+                    count++;
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        long[] result = new long[count];
+        System.arraycopy(indexes, 0, result, 0, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Gets the first existing segment with a sequence number not less than index, or -1.
+     */
+    static long first(File directory, String prefix, long index) {
+        for (long existing : list(directory, prefix)) {
+            if (existing >= index) {
+                return existing;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Maps a file, growing it to size bytes if it's opened for writing.
+     */
+    static MappedByteBuffer map(File file, boolean writable, long size) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0,
+                    writable ? size : Math.min(size, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+}
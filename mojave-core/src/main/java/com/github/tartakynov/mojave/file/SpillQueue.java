@@ -0,0 +1,338 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.file;
+
+import com.github.tartakynov.mojave.Message;
+import com.github.tartakynov.mojave.pipeline.Buffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sink buffer kept on disk as an append-only log of memory-mapped, length-framed segments.
+ * <p/>
+ * Messages stay in the log after they are drained until the sink writer acknowledges them, and
+ * segments are deleted once all their messages are acknowledged. The acknowledged position is
+ * kept in a mapped name.ack file, so messages drained but not acknowledged before a crash are
+ * drained again when the queue is reopened.
+ * <p/>
+ * Appended batches are forced to the disk at most once per syncInterval milliseconds, or after
+ * every batch if it's zero; until then they survive a crash of the process but not of the host.
+ * When maxSegments is positive, producers block while that many segments are waiting for
+ * acknowledgement. Acknowledgements are counted in drain order, so a queue must be drained by a
+ * single writer.
+ */
+public class SpillQueue implements Buffer<CharSequence>, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SpillQueue.class);
+    private final File directory;
+    private final String prefix;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final long syncInterval;
+    private final MappedByteBuffer acknowledged;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = this.lock.newCondition();
+    private final Condition notFull = this.lock.newCondition();
+    private final Cursor reader;
+    private final Cursor acknowledger;
+    private long writeIndex;
+    private MappedByteBuffer writeSegment;
+    private long lastSync;
+    private int count;
+    private boolean closed;
+
+    /**
+     * Opens the queue, replaying messages that were not acknowledged.
+     *
+     * @param directory    to keep segments in.
+     * @param prefix       of segment files.
+     * @param segmentSize  size of a segment in bytes.
+     * @param maxSegments  maximum number of segments, at least 2, or zero for no limit.
+     * @param syncInterval minimum time in milliseconds between forcing segments to the disk.
+     */
+    public SpillQueue(File directory, String prefix, int segmentSize, int maxSegments, long syncInterval)
+            throws IOException {
+        if (maxSegments < 0 || maxSegments == 1) {
+            throw new IllegalArgumentException("maxSegments must be zero or at least 2: " + maxSegments);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the directory: " + directory);
+        }
+        this.directory = directory;
+        this.prefix = prefix;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.syncInterval = TimeUnit.MILLISECONDS.toNanos(syncInterval);
+        this.acknowledged = Segments.map(new File(directory, prefix + ".ack"), true, 16);
+
+        long[] existing = Segments.list(directory, prefix);
+        long ackIndex = this.acknowledged.getLong(0);
+        long ackPosition = this.acknowledged.getLong(8);
+        for (long index : existing) {
+            if (index < ackIndex) {
+                this.delete(index);
+            }
+        }
+        this.writeIndex = Math.max(ackIndex, existing.length == 0 ? 0 : existing[existing.length - 1] + 1);
+        this.writeSegment = Segments.map(Segments.file(directory, prefix, this.writeIndex), true, segmentSize);
+        this.lastSync = System.nanoTime();
+
+        this.reader = new Cursor(ackIndex, ackPosition);
+        this.acknowledger = new Cursor(ackIndex, ackPosition);
+        Cursor replay = new Cursor(ackIndex, ackPosition);
+        while (replay.next() != null) {
+            this.count++;
+        }
+        if (this.count > 0) {
+            log.info("Replaying {} messages from {}", this.count, prefix);
+        }
+    }
+
+    @Override
+    public int size() {
+        this.lock.lock();
+        try {
+            return this.count;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(CharSequence item) throws InterruptedException {
+        this.putAll(Collections.singletonList(item));
+    }
+
+    /**
+     * Appends messages to the log and releases them. A batch holding a message that can't be
+     * appended is rejected as a whole, and messages are released even if appending them fails.
+     */
+    @Override
+    public void putAll(List<? extends CharSequence> batch) throws InterruptedException {
+        int appended = 0;
+        try {
+            this.lock.lockInterruptibly();
+            try {
+                this.validate(batch);
+                for (CharSequence item : batch) {
+                    Message message = Message.wrap(item);
+                    appended++;
+                    try {
+                        this.append(message.getBuffer());
+                        this.count++;
+                    } finally {
+                        message.release();
+                    }
+                }
+                long now = System.nanoTime();
+                if (now - this.lastSync >= this.syncInterval) {
+                    this.writeSegment.force();
+                    this.lastSync = now;
+                }
+                this.notEmpty.signalAll();
+            } catch (IOException ex) {
+                throw new IllegalStateException("Unable to append to the spill queue: " + this.prefix, ex);
+            } finally {
+                this.lock.unlock();
+            }
+        } finally {
+            for (CharSequence item : batch.subList(appended, batch.size())) {
+                if (item instanceof Message) {
+                    ((Message) item).release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Drains messages as views of the mapped segments. They stay in the log until acknowledged.
+     */
+    @Override
+    public int drainTo(List<? super CharSequence> into, int max, long timeoutNanos) throws InterruptedException {
+        this.lock.lockInterruptibly();
+        try {
+            long nanos = timeoutNanos;
+            while (this.count == 0) {
+                if (nanos <= 0) {
+                    return 0;
+                }
+                nanos = this.notEmpty.awaitNanos(nanos);
+            }
+            int n = Math.min(this.count, max);
+            for (int i = 0; i < n; i++) {
+                into.add(new Message(this.reader.next(), null));
+            }
+            this.count -= n;
+            return n;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to read the spill queue: " + this.prefix, ex);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Acknowledges the oldest drained messages, deleting segments nothing is waiting for anymore.
+     *
+     * @param messages number of messages to acknowledge.
+     */
+    public void acknowledge(int messages) {
+        this.lock.lock();
+        try {
+            long index = this.acknowledger.index;
+            for (int i = 0; i < messages; i++) {
+                if (this.acknowledger.next() == null) {
+                    throw new IllegalStateException("More messages acknowledged than drained: " + this.prefix);
+                }
+            }
+            this.acknowledger.settle();
+            for (long old = index; old < this.acknowledger.index; old++) {
+                this.delete(old);
+            }
+            this.acknowledged.putLong(0, this.acknowledger.index);
+            this.acknowledged.putLong(8, this.acknowledger.segment.position());
+            this.notFull.signalAll();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to read the spill queue: " + this.prefix, ex);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Forces the log to the disk. Messages not acknowledged are replayed when the queue is reopened.
+     */
+    @Override
+    public void close() {
+        this.lock.lock();
+        try {
+            if (!this.closed) {
+                this.writeSegment.force();
+                this.acknowledged.force();
+                this.closed = true;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void validate(List<? extends CharSequence> batch) throws IOException {
+        if (this.closed) {
+            throw new IOException("The spill queue is closed: " + this.prefix);
+        }
+        for (CharSequence item : batch) {
+            int length = Message.sizeOf(item);
+            if (Framing.LENGTH.size(length) > this.segmentSize) {
+                throw new IOException("The message of " + length + " bytes doesn't fit a segment.");
+            }
+        }
+    }
+
+    private void append(ByteBuffer message) throws IOException, InterruptedException {
+        if (this.closed) {
+            throw new IOException("The spill queue is closed: " + this.prefix);
+        }
+        int size = Framing.LENGTH.size(message.remaining());
+        if (size > this.segmentSize) {
+            throw new IOException("The message of " + message.remaining() + " bytes doesn't fit a segment.");
+        }
+        if (this.writeSegment.remaining() < size) {
+            while (this.maxSegments > 0 && this.writeIndex + 1 - this.acknowledger.index >= this.maxSegments) {
+                this.notEmpty.signalAll();
+                this.notFull.await();
+            }
+            this.writeSegment.force();
+            this.lastSync = System.nanoTime();
+            this.writeIndex++;
+            this.writeSegment = Segments.map(Segments.file(this.directory, this.prefix, this.writeIndex), true,
+                    this.segmentSize);
+        }
+        Framing.LENGTH.write(this.writeSegment, message);
+    }
+
+    private void delete(long index) {
+        File file = Segments.file(this.directory, this.prefix, index);
+        if (file.exists() && !file.delete()) {
+            log.warn("Unable to delete the segment: {}", file);
+        }
+    }
+
+    /**
+     * Position in the log, moving across segments as records are read.
+     */
+    private final class Cursor {
+        private long index;
+        private ByteBuffer segment;
+
+        private Cursor(long index, long position) throws IOException {
+            this.index = index;
+            this.segment = this.map(index);
+            this.segment.position((int) Math.min(position, this.segment.limit()));
+        }
+
+        /**
+         * Reads the next record.
+         *
+         * @return the record, or null if it hasn't been written yet.
+         */
+        private ByteBuffer next() throws IOException {
+            while (true) {
+                ByteBuffer record = Framing.LENGTH.read(this.segment);
+                if (record != null || this.index >= SpillQueue.this.writeIndex) {
+                    return record;
+                }
+                this.index++;
+                this.segment = this.map(this.index);
+            }
+        }
+
+        /**
+         * Moves past segments that have been read up.
+         */
+        private void settle() throws IOException {
+            while (this.index < SpillQueue.this.writeIndex && Framing.LENGTH.read(this.segment.duplicate()) == null) {
+                this.index++;
+                this.segment = this.map(this.index);
+            }
+        }
+
+        private ByteBuffer map(long index) throws IOException {
+            if (index == SpillQueue.this.writeIndex) {
+                ByteBuffer segment = SpillQueue.this.writeSegment.duplicate();
+                segment.position(0);
+                return segment;
+            }
+            File file = Segments.file(SpillQueue.this.directory, SpillQueue.this.prefix, index);
+            if (!file.exists()) {
+                return ByteBuffer.allocate(0);
+            }
+            return Segments.map(file, false, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.metrics;
+
+import com.github.tartakynov.mojave.Message;
+import com.github.tartakynov.mojave.pipeline.Buffer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a single source, sink or script stage: messages and bytes passed with their rates,
+ * batch sizes, errors, latencies and, for sinks, the depth of the buffer in front of them and the
+ * batch size and linger commits are written with.
+ * <p/>
+ * Recording methods don't allocate and never block, so they can be called for every batch.
+ */
+public class ComponentMetrics implements ComponentMetricsMXBean {
+    private final String kind;
+    private final String name;
+    private final Meter messages = new Meter();
+    private final Meter bytes = new Meter();
+    private final LongAdder errors = new LongAdder();
+    private final Histogram batchSizes = new Histogram();
+    private final Histogram latencies = new Histogram();
+    private volatile Buffer<?> queue;
+    private volatile int batchSizeLimit;
+    private volatile long linger;
+
+    public ComponentMetrics(String kind, String name) {
+        this.kind = kind;
+        this.name = name;
+    }
+
+    /**
+     * Records a batch handled by the component.
+     *
+     * @param messages     number of messages in the batch.
+     * @param bytes        size of the messages in bytes.
+     * @param latencyNanos time it took to handle the batch in nanoseconds.
+     */
+    public void recordBatch(int messages, long bytes, long latencyNanos) {
+        this.messages.mark(messages);
+        this.bytes.mark(bytes);
+        this.batchSizes.record(messages);
+        this.latencies.record(latencyNanos);
+    }
+
+    /**
+     * Records a batch of messages handled by the component.
+     *
+     * @param batch        messages handled, or null if there were none.
+     * @param latencyNanos time it took to handle the batch in nanoseconds.
+     */
+    public void recordBatch(List<? extends CharSequence> batch, long latencyNanos) {
+        int size = batch == null ? 0 : batch.size();
+        long bytes = 0;
+        for (int i = 0; i < size; i++) {
+            bytes += Message.sizeOf(batch.get(i));
+        }
+        this.recordBatch(size, bytes, latencyNanos);
+    }
+
+    /**
+     * Records a failure to handle a batch.
+     */
+    public void recordError() {
+        this.errors.increment();
+    }
+
+    /**
+     * Records the batch size and linger a sink writes commits with.
+     *
+     * @param batchSize   maximum number of messages in a commit.
+     * @param lingerNanos time to wait for a commit to fill up in nanoseconds.
+     */
+    public void recordBatching(int batchSize, long lingerNanos) {
+        this.batchSizeLimit = batchSize;
+        this.linger = lingerNanos;
+    }
+
+    /**
+     * Sets the buffer whose size is reported as the queue depth.
+     */
+    public void setQueue(Buffer<?> queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Gets the distribution of batch sizes.
+     */
+    public Histogram getBatchSizes() {
+        return this.batchSizes;
+    }
+
+    /**
+     * Gets the distribution of batch latencies in nanoseconds.
+     */
+    public Histogram getLatencies() {
+        return this.latencies;
+    }
+
+    @Override
+    public String getKind() {
+        return this.kind;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public long getMessages() {
+        return this.messages.getCount();
+    }
+
+    @Override
+    public double getMessageRate() {
+        return this.messages.getRate();
+    }
+
+    @Override
+    public long getBytes() {
+        return this.bytes.getCount();
+    }
+
+    @Override
+    public double getByteRate() {
+        return this.bytes.getRate();
+    }
+
+    @Override
+    public long getErrors() {
+        return this.errors.sum();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        Buffer<?> queue = this.queue;
+        return queue == null ? 0 : queue.size();
+    }
+
+    @Override
+    public double getMeanBatchSize() {
+        return this.batchSizes.getMean();
+    }
+
+    @Override
+    public long getMaxBatchSize() {
+        return this.batchSizes.getMax();
+    }
+
+    @Override
+    public int getBatchSizeLimit() {
+        return this.batchSizeLimit;
+    }
+
+    @Override
+    public long getLinger() {
+        return TimeUnit.NANOSECONDS.toMicros(this.linger);
+    }
+
+    @Override
+    public double getMeanLatency() {
+        return this.latencies.getMean() / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    @Override
+    public long getLatency50() {
+        return TimeUnit.NANOSECONDS.toMicros(this.latencies.getPercentile(50));
+    }
+
+    @Override
+    public long getLatency99() {
+        return TimeUnit.NANOSECONDS.toMicros(this.latencies.getPercentile(99));
+    }
+
+    @Override
+    public long getLatency999() {
+        return TimeUnit.NANOSECONDS.toMicros(this.latencies.getPercentile(99.9));
+    }
+
+    @Override
+    public long getMaxLatency() {
+        return TimeUnit.NANOSECONDS.toMicros(this.latencies.getMax());
+    }
+
+    /**
+     * Forgets batch size and latency distributions. Counters keep going.
+     */
+    @Override
+    public void reset() {
+        this.batchSizes.reset();
+        this.latencies.reset();
+    }
+}
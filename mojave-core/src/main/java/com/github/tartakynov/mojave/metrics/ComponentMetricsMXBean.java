@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.metrics;
+
+/**
+ * Management interface of {@see ComponentMetrics}. Latencies and linger are in microseconds.
+ */
+public interface ComponentMetricsMXBean {
+    String getKind();
+
+    String getName();
+
+    long getMessages();
+
+    double getMessageRate();
+
+    long getBytes();
+
+    double getByteRate();
+
+    long getErrors();
+
+    int getQueueDepth();
+
+    double getMeanBatchSize();
+
+    long getMaxBatchSize();
+
+    int getBatchSizeLimit();
+
+    long getLinger();
+
+    double getMeanLatency();
+
+    long getLatency50();
+
+    long getLatency99();
+
+    long getLatency999();
+
+    long getMaxLatency();
+
+    void reset();
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events and estimates their rate per second as a one-minute exponentially weighted moving
+ * average. Marking only adds to a counter, the average is brought up to date when it's read.
+ */
+public final class Meter {
+    private static final long TICK_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+    private static final double ALPHA = 1 - Math.exp(-5 / 60.0);
+    private final LongAdder count = new LongAdder();
+    private final long started;
+    private long lastTick;
+    private long lastCount;
+    private double rate;
+    private boolean initialized;
+
+    public Meter() {
+        this.started = System.nanoTime();
+        this.lastTick = this.started;
+    }
+
+    /**
+     * Records events.
+     *
+     * @param events number of events.
+     */
+    public void mark(long events) {
+        this.count.add(events);
+    }
+
+    /**
+     * Gets the number of events recorded so far.
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * Gets the average number of events per second over the last minute.
+     */
+    public synchronized double getRate() {
+        long now = System.nanoTime();
+        long ticks = (now - this.lastTick) / TICK_INTERVAL;
+        if (ticks > 0) {
+            long count = this.count.sum();
+            double instant = (double) (count - this.lastCount) / (ticks * TimeUnit.NANOSECONDS.toSeconds(TICK_INTERVAL));
+            this.rate = this.initialized ? instant + (this.rate - instant) * Math.pow(1 - ALPHA, ticks) : instant;
+            this.initialized = true;
+            this.lastCount = count;
+            this.lastTick += ticks * TICK_INTERVAL;
+        }
+        if (!this.initialized) {
+            double elapsed = (double) (now - this.started) / TimeUnit.SECONDS.toNanos(1);
+            return elapsed > 0 ? this.count.sum() / elapsed : 0;
+        }
+        return this.rate;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Metrics of pipeline components, keyed by their kind and name.
+ * <p/>
+ * Once {@link #registerMBeans(MBeanServer)} is called, every component's metrics are also
+ * published as an MXBean named com.github.tartakynov.mojave:type=kind,name=name.
+ */
+public class MetricsRegistry {
+    public static final String SOURCE = "Source";
+    public static final String SINK = "Sink";
+    public static final String STAGE = "Stage";
+    public static final String DOMAIN = "com.github.tartakynov.mojave";
+    private static final Logger log = LoggerFactory.getLogger(MetricsRegistry.class);
+    private final ConcurrentMap<String, ComponentMetrics> components = new ConcurrentHashMap<String, ComponentMetrics>();
+    private MBeanServer server;
+
+    /**
+     * Gets metrics of a source, creating them on the first call.
+     */
+    public ComponentMetrics source(String name) {
+        return this.get(SOURCE, name);
+    }
+
+    /**
+     * Gets metrics of a sink, creating them on the first call.
+     */
+    public ComponentMetrics sink(String name) {
+        return this.get(SINK, name);
+    }
+
+    /**
+     * Gets metrics of the script stage transforming a source, creating them on the first call.
+     */
+    public ComponentMetrics stage(String name) {
+        return this.get(STAGE, name);
+    }
+
+    /**
+     * Gets metrics of a component, creating them on the first call.
+     *
+     * @param kind of the component.
+     * @param name of the component.
+     * @return metrics of the component.
+     */
+    public ComponentMetrics get(String kind, String name) {
+        String key = kind + "/" + name;
+        ComponentMetrics metrics = this.components.get(key);
+        if (metrics == null) {
+            metrics = new ComponentMetrics(kind, name);
+            ComponentMetrics existing = this.components.putIfAbsent(key, metrics);
+            if (existing != null) {
+                return existing;
+            }
+            synchronized (this) {
+                if (this.server != null) {
+                    this.register(this.server, metrics);
+                }
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Gets metrics of all components.
+     *
+     * @return read-only collection of metrics.
+     */
+    public Collection<ComponentMetrics> getAll() {
+        return Collections.unmodifiableCollection(this.components.values());
+    }
+
+    /**
+     * Publishes metrics of current and future components to the MBean server, replacing beans of
+     * the same names.
+     *
+     * @param server to register beans with.
+     */
+    public synchronized void registerMBeans(MBeanServer server) {
+        this.server = server;
+        for (ComponentMetrics metrics : this.components.values()) {
+            this.register(server, metrics);
+        }
+    }
+
+    /**
+     * Removes beans registered by {@link #registerMBeans(MBeanServer)}.
+     */
+    public synchronized void unregisterMBeans() {
+        if (this.server == null) {
+            return;
+        }
+        for (ComponentMetrics metrics : this.components.values()) {
+            try {
+                ObjectName name = objectName(metrics);
+                if (this.server.isRegistered(name)) {
+                    this.server.unregisterMBean(name);
+                }
+            } catch (JMException ex) {
+                log.warn("Unable to unregister metrics of " + metrics.getName(), ex);
+            }
+        }
+        this.server = null;
+    }
+
+    static ObjectName objectName(ComponentMetrics metrics) throws JMException {
+        return new ObjectName(DOMAIN + ":type=" + metrics.getKind() + ",name=" + ObjectName.quote(metrics.getName()));
+    }
+
+    private void register(MBeanServer server, ComponentMetrics metrics) {
+        try {
+            ObjectName name = objectName(metrics);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(metrics, name);
+        } catch (JMException ex) {
+            log.warn("Unable to register metrics of " + metrics.getName(), ex);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.net;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Thread running a {@see Selector} and dispatching ready channels to the {@see Handler} attached to
+ * their keys. Channels must be registered and their interest set changed on the loop thread, other
+ * threads pass that work in with {@link #execute(Runnable)}.
+ * <p/>
+ * Handlers that can't make progress, e.g. a connection whose messages nobody takes, may clear their
+ * interest set and ask to be retried a little later with {@link #retry(Runnable)}.
+ */
+class EventLoop implements Runnable, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(EventLoop.class);
+    private static final long RETRY_INTERVAL = 10;
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private List<Runnable> retries = new ArrayList<Runnable>();
+    private volatile boolean closed;
+
+    /**
+     * Gets notified of the events of a channel.
+     */
+    interface Handler {
+        /**
+         * Handles the operations the channel is ready for.
+         *
+         * @throws IOException closes the channel.
+         */
+        void ready(SelectionKey key) throws IOException;
+
+        /**
+         * Cleans up after the channel has been closed, either by the loop or due to an error.
+         *
+         * @param cause error the channel has been closed with, or null.
+         */
+        void closed(IOException cause);
+    }
+
+    EventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Runs a task on the loop thread.
+     */
+    void execute(Runnable task) {
+        this.tasks.add(task);
+        if (Thread.currentThread() != this.thread) {
+            this.selector.wakeup();
+        }
+    }
+
+    /**
+     * Runs a task on the loop thread after a short pause. Must be called on the loop thread.
+     */
+    void retry(Runnable task) {
+        this.retries.add(task);
+    }
+
+    /**
+     * Runs the tasks waiting to be retried without waiting for the pause to end.
+     */
+    void wakeup() {
+        this.selector.wakeup();
+    }
+
+    /**
+     * Registers a channel with the loop. Must be called on the loop thread.
+     */
+    SelectionKey register(SelectableChannel channel, int ops, Handler handler) throws IOException {
+        channel.configureBlocking(false);
+        return channel.register(this.selector, ops, handler);
+    }
+
+    /**
+     * Closes the channel of a key and notifies its handler.
+     */
+    static void close(SelectionKey key, IOException cause) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ex) {
+            log.debug("Unable to close a channel", ex);
+        }
+        ((Handler) key.attachment()).closed(cause);
+    }
+
+    boolean inLoop() {
+        return Thread.currentThread() == this.thread;
+    }
+
+    @Override
+    public void run() {
+        while (!this.closed) {
+            try {
+                this.selector.select(this.retries.isEmpty() ? 0 : RETRY_INTERVAL);
+            } catch (IOException ex) {
+                log.error("Unable to select channels", ex);
+                break;
+            }
+            Iterator<SelectionKey> selected = this.selector.selectedKeys().iterator();
+            while (selected.hasNext()) {
+                SelectionKey key = selected.next();
+                selected.remove();
+                try {
+                    ((Handler) key.attachment()).ready(key);
+                } catch (CancelledKeyException ex) {
+                    close(key, null);
+                } catch (IOException ex) {
+                    close(key, ex);
+                } catch (RuntimeException ex) {
+                    log.error("A handler of the event loop has failed", ex);
+                    close(key, new IOException(ex));
+                }
+            }
+            if (!this.retries.isEmpty()) {
+                List<Runnable> retries = this.retries;
+                this.retries = new ArrayList<Runnable>();
+                for (Runnable task : retries) {
+                    this.run(task);
+                }
+            }
+            Runnable task;
+            while ((task = this.tasks.poll()) != null) {
+                this.run(task);
+            }
+        }
+        for (SelectionKey key : this.selector.keys()) {
+            close(key, null);
+        }
+        try {
+            this.selector.close();
+        } catch (IOException ex) {
+            log.debug("Unable to close the selector", ex);
+        }
+    }
+
+    /**
+     * Stops the loop and closes all its channels.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.selector.wakeup();
+        if (!this.inLoop()) {
+            try {
+                this.thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException ex) {
+            log.error("A task of the event loop has failed", ex);
+        }
+    }
+}
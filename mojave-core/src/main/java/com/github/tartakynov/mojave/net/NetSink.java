@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.net;
+
+import com.github.tartakynov.mojave.BufferPool;
+import com.github.tartakynov.mojave.ByteSink;
+import com.github.tartakynov.mojave.Configuration;
+import com.github.tartakynov.mojave.Message;
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sink sending messages to host and port over TCP or UDP, see {@see Protocol}.
+ * <p/>
+ * Over TCP the sink keeps a connection per event loop, loops in total, and spreads batches over
+ * them in turn. Connections are opened when first written to and reopened by the next write after
+ * a failure, which fails the writes in flight. Batches are framed as configured by framing and
+ * delimiter, see {@see StreamFraming}, into pooled direct buffers of bufferSize bytes, and a
+ * message must fit one. Over UDP every message is sent as a datagram of its own by the writing
+ * thread.
+ */
+public class NetSink implements ByteSink {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_BUFFER_POOL_SIZE = 64;
+    private static final Logger log = LoggerFactory.getLogger(NetSink.class);
+    private final AtomicInteger nextConnection = new AtomicInteger();
+    private String name;
+    private InetSocketAddress address;
+    private Protocol protocol;
+    private StreamFraming framing;
+    private BufferPool buffers;
+    private EventLoop[] loops;
+    private Connection[] connections;
+    private DatagramChannel datagrams;
+    private volatile boolean closed;
+
+    @Override
+    public CompletableFuture<Void> write(List<String> batch) {
+        List<Message> messages = new ArrayList<Message>(batch.size());
+        for (String message : batch) {
+            messages.add(Message.wrap(message));
+        }
+        return this.writeMessages(messages);
+    }
+
+    @Override
+    public CompletableFuture<Void> writeMessages(List<Message> batch) {
+        CompletableFuture<Void> result = new CompletableFuture<Void>();
+        try {
+            if (this.closed) {
+                throw new IOException("The sink is closed: " + this.name);
+            }
+            if (this.protocol == Protocol.UDP) {
+                this.send(batch);
+                result.complete(null);
+            } else {
+                List<ByteBuffer> frames = this.frame(batch);
+                int index = (this.nextConnection.getAndIncrement() & Integer.MAX_VALUE) % this.connections.length;
+                this.connections[index].write(new Write(frames, result));
+            }
+        } catch (IOException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Closes the connections, failing the writes in flight.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        if (this.loops != null) {
+            for (EventLoop loop : this.loops) {
+                if (loop != null) {
+                    loop.close();
+                }
+            }
+            for (Connection connection : this.connections) {
+                if (connection != null) {
+                    connection.fail(new IOException("The sink is closed: " + this.name));
+                }
+            }
+        }
+        if (this.datagrams != null) {
+            try {
+                this.datagrams.close();
+            } catch (IOException ex) {
+                log.debug("Unable to close the channel", ex);
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public void configure(Configuration config) throws ConfigurationException {
+        this.name = config.getSectionName();
+        String host = config.get("host");
+        int port = config.getInt32("port", 0);
+        if (host == null || port <= 0 || port > 0xffff) {
+            throw new ConfigurationException("The host and port are not provided or invalid.");
+        }
+        int loops = config.getInt32("loops", 1);
+        if (loops <= 0) {
+            throw new ConfigurationException("The number of loops must be positive.");
+        }
+        int bufferSize = config.getInt32("bufferSize", DEFAULT_BUFFER_SIZE);
+        if (bufferSize <= 0) {
+            throw new ConfigurationException("The buffer size must be positive.");
+        }
+        this.address = new InetSocketAddress(host, port);
+        this.protocol = Protocol.parse(config.get("protocol"));
+        this.framing = StreamFraming.parse(config.get("framing"), config.get("delimiter"));
+        this.buffers = new BufferPool(bufferSize, config.getInt32("bufferPoolSize", DEFAULT_BUFFER_POOL_SIZE), true);
+        try {
+            if (this.protocol == Protocol.UDP) {
+                this.datagrams = DatagramChannel.open().connect(this.address);
+            } else {
+                this.loops = new EventLoop[loops];
+                this.connections = new Connection[loops];
+                for (int i = 0; i < loops; i++) {
+                    this.loops[i] = new EventLoop("mojave-net-" + this.name + "-" + i);
+                    this.connections[i] = new Connection(this.loops[i]);
+                }
+            }
+        } catch (IOException ex) {
+            this.close();
+            throw new ConfigurationException("Unable to open the sink " + this.name + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Frames the messages into as few buffers as they fit.
+     */
+    private List<ByteBuffer> frame(List<Message> batch) throws IOException {
+        List<ByteBuffer> frames = new ArrayList<ByteBuffer>();
+        ByteBuffer buffer = null;
+        try {
+            for (Message message : batch) {
+                ByteBuffer bytes = message.getBuffer();
+                int size = this.framing.size(bytes.remaining());
+                if (size > this.buffers.getBufferSize()) {
+                    throw new IOException("The message of " + bytes.remaining() + " bytes doesn't fit a buffer.");
+                }
+                if (buffer == null || buffer.remaining() < size) {
+                    buffer = this.buffers.acquire();
+                    frames.add(buffer);
+                }
+                this.framing.write(buffer, bytes);
+            }
+        } catch (IOException ex) {
+            this.release(frames);
+            throw ex;
+        }
+        for (ByteBuffer frame : frames) {
+            frame.flip();
+        }
+        return frames;
+    }
+
+    private void release(List<ByteBuffer> frames) {
+        for (ByteBuffer frame : frames) {
+            this.buffers.release(frame);
+        }
+    }
+
+    private void send(List<Message> batch) throws IOException {
+        ByteBuffer buffer = this.buffers.acquire();
+        try {
+            for (Message message : batch) {
+                ByteBuffer bytes = message.getBuffer();
+                if (this.framing.size(bytes.remaining()) > buffer.capacity()) {
+                    throw new IOException("The message of " + bytes.remaining() + " bytes doesn't fit a buffer.");
+                }
+                buffer.clear();
+                this.framing.write(buffer, bytes);
+                buffer.flip();
+                this.datagrams.write(buffer);
+            }
+        } finally {
+            this.buffers.release(buffer);
+        }
+    }
+
+    /**
+     * Framed batch waiting to be written.
+     */
+    private static class Write {
+        private final List<ByteBuffer> frames;
+        private final CompletableFuture<Void> result;
+
+        Write(List<ByteBuffer> frames, CompletableFuture<Void> result) {
+            this.frames = frames;
+            this.result = result;
+        }
+    }
+
+    /**
+     * Connection writing batches in order. Its key is only touched on its loop thread.
+     */
+    private class Connection implements EventLoop.Handler {
+        private final EventLoop loop;
+        private final Queue<Write> writes = new ConcurrentLinkedQueue<Write>();
+        private SelectionKey key;
+
+        Connection(EventLoop loop) {
+            this.loop = loop;
+        }
+
+        void write(Write write) {
+            this.writes.add(write);
+            this.loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (key == null) {
+                        connect();
+                    } else if (key.isValid() && (key.interestOps() & SelectionKey.OP_CONNECT) == 0) {
+                        key.interestOps(SelectionKey.OP_WRITE);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void ready(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            if (key.isConnectable()) {
+                channel.finishConnect();
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            Write write;
+            while ((write = this.writes.peek()) != null) {
+                for (ByteBuffer frame : write.frames) {
+                    if (frame.hasRemaining()) {
+                        channel.write(frame);
+                        if (frame.hasRemaining()) {
+                            return;
+                        }
+                    }
+                }
+                this.writes.poll();
+                release(write.frames);
+                write.result.complete(null);
+            }
+            key.interestOps(0);
+        }
+
+        @Override
+        public void closed(IOException cause) {
+            this.key = null;
+            IOException error = cause != null ? cause : new IOException("The connection is closed: " + name);
+            if (cause != null) {
+                log.warn("Lost the connection to {}: {}", address, cause.getMessage());
+            }
+            this.fail(error);
+        }
+
+        private void connect() {
+            try {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                boolean connected = channel.connect(address);
+                this.key = this.loop.register(channel, connected ? SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT, this);
+            } catch (IOException ex) {
+                log.warn("Unable to connect to {}: {}", address, ex.getMessage());
+                this.fail(ex);
+            }
+        }
+
+        private void fail(IOException error) {
+            Write write;
+            while ((write = this.writes.poll()) != null) {
+                release(write.frames);
+                write.result.completeExceptionally(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.net;
+
+import com.github.tartakynov.mojave.BufferPool;
+import com.github.tartakynov.mojave.ByteSource;
+import com.github.tartakynov.mojave.Configuration;
+import com.github.tartakynov.mojave.Message;
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Source receiving messages over TCP connections or UDP datagrams, see {@see Protocol}.
+ * <p/>
+ * The source listens on host and port, port 0 picks a free one, see {@link #getLocalPort()}.
+ * Accepted connections are spread over loops event loops, each reading its connections into pooled
+ * direct buffers of receiveBufferSize bytes. Messages are framed as configured by framing and
+ * delimiter, see {@see StreamFraming}, and must fit bufferSize. Up to queueSize received messages
+ * wait to be taken; when the queue is full, connections stop being read so senders are held back by
+ * TCP, while datagrams are dropped. Paused connections resume once the queue is half empty.
+ */
+public class NetSource extends ByteSource implements Closeable {
+    public static final int DEFAULT_BACKLOG = 1024;
+    public static final int DEFAULT_QUEUE_SIZE = 8192;
+    public static final int DEFAULT_RECEIVE_BUFFER_SIZE = 64 * 1024;
+    private static final Logger log = LoggerFactory.getLogger(NetSource.class);
+    private final AtomicLong dropped = new AtomicLong();
+    private Protocol protocol;
+    private StreamFraming framing;
+    private EventLoop[] loops;
+    private NetworkChannel channel;
+    private BlockingQueue<Message> queue;
+    private BufferPool receiveBuffers;
+    private int nextLoop;
+    private int queueSize;
+    private volatile boolean paused;
+
+    @Override
+    public boolean read(ByteBuffer buffer) {
+        Message message = this.next();
+        if (message == null) {
+            return false;
+        }
+        buffer.put(message.getBuffer());
+        message.release();
+        return true;
+    }
+
+    @Override
+    protected Message next() {
+        Message message = this.queue.poll();
+        if (this.paused && this.queue.size() <= this.queueSize / 2) {
+            this.paused = false;
+            for (EventLoop loop : this.loops) {
+                loop.wakeup();
+            }
+        }
+        return message;
+    }
+
+    @Override
+    public void configure(Configuration config) throws ConfigurationException {
+        super.configure(config);
+        if (this.loops != null) {
+            return;
+        }
+        int port = config.getInt32("port", -1);
+        if (port < 0 || port > 0xffff) {
+            throw new ConfigurationException("The port is not provided or invalid.");
+        }
+        int backlog = config.getInt32("backlog", DEFAULT_BACKLOG);
+        int loops = config.getInt32("loops", 1);
+        if (backlog <= 0 || loops <= 0) {
+            throw new ConfigurationException("The backlog and the number of loops must be positive.");
+        }
+        this.queueSize = config.getInt32("queueSize", DEFAULT_QUEUE_SIZE);
+        if (this.queueSize <= 0) {
+            throw new ConfigurationException("The queue size must be positive.");
+        }
+        int bufferSize = this.getBufferPool().getBufferSize();
+        int receiveBufferSize = Math.max(config.getInt32("receiveBufferSize", DEFAULT_RECEIVE_BUFFER_SIZE),
+                bufferSize + 4);
+        this.protocol = Protocol.parse(config.get("protocol"));
+        this.framing = StreamFraming.parse(config.get("framing"), config.get("delimiter"));
+        this.queue = new ArrayBlockingQueue<Message>(this.queueSize);
+        this.receiveBuffers = new BufferPool(receiveBufferSize, loops * 16, true);
+        String host = config.get("host") != null ? config.get("host") : "0.0.0.0";
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        this.loops = new EventLoop[this.protocol == Protocol.UDP ? 1 : loops];
+        try {
+            for (int i = 0; i < this.loops.length; i++) {
+                this.loops[i] = new EventLoop("mojave-net-" + config.getSectionName() + "-" + i);
+            }
+            if (this.protocol == Protocol.UDP) {
+                this.listen(DatagramChannel.open().bind(address), SelectionKey.OP_READ, new Receiver());
+            } else {
+                this.listen(ServerSocketChannel.open().bind(address, backlog), SelectionKey.OP_ACCEPT, new Acceptor());
+            }
+        } catch (IOException ex) {
+            this.close();
+            throw new ConfigurationException("Unable to listen on " + address + ": " + ex.getMessage());
+        }
+        log.info("Listening on {} over {}", this.channel, this.protocol);
+    }
+
+    /**
+     * Gets the port the source listens on.
+     */
+    public int getLocalPort() {
+        try {
+            return ((InetSocketAddress) this.channel.getLocalAddress()).getPort();
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Gets the number of datagrams and messages dropped because they were too long or the queue was
+     * full. Connections sending messages that are too long are closed instead.
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    /**
+     * Stops listening, closes all connections and releases the messages nobody has taken.
+     */
+    @Override
+    public void close() {
+        if (this.loops != null) {
+            for (EventLoop loop : this.loops) {
+                if (loop != null) {
+                    loop.close();
+                }
+            }
+        }
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (IOException ex) {
+                log.debug("Unable to close the channel", ex);
+            }
+        }
+        if (this.queue != null) {
+            Message message;
+            while ((message = this.queue.poll()) != null) {
+                message.release();
+            }
+        }
+    }
+
+    private void listen(final SelectableChannel channel, final int ops, final EventLoop.Handler handler) {
+        this.channel = (NetworkChannel) channel;
+        final EventLoop loop = this.loops[0];
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    loop.register(channel, ops, handler);
+                } catch (IOException ex) {
+                    log.error("Unable to register the channel", ex);
+                }
+            }
+        });
+    }
+
+    private Message copy(ByteBuffer frame) {
+        BufferPool pool = this.getBufferPool();
+        ByteBuffer buffer = pool.acquire();
+        buffer.put(frame);
+        buffer.flip();
+        return new Message(buffer, pool);
+    }
+
+    /**
+     * Accepts connections and hands them to the loops in turn.
+     */
+    private class Acceptor implements EventLoop.Handler {
+        @Override
+        public void ready(SelectionKey key) throws IOException {
+            SocketChannel channel;
+            while ((channel = ((ServerSocketChannel) key.channel()).accept()) != null) {
+                final EventLoop loop = loops[nextLoop++ % loops.length];
+                final SocketChannel accepted = channel;
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            new Connection(loop, accepted);
+                        } catch (IOException ex) {
+                            log.warn("Unable to register a connection", ex);
+                        }
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void closed(IOException cause) {
+            if (cause != null) {
+                log.error("Stopped accepting connections", cause);
+            }
+        }
+    }
+
+    /**
+     * Reads framed messages from a connection, pausing while the queue is full.
+     */
+    private class Connection implements EventLoop.Handler, Runnable {
+        private final EventLoop loop;
+        private final SelectionKey key;
+        private final ByteBuffer receive;
+        private Message pending;
+        private boolean eof;
+
+        Connection(EventLoop loop, SocketChannel channel) throws IOException {
+            this.loop = loop;
+            this.receive = receiveBuffers.acquire();
+            this.key = loop.register(channel, SelectionKey.OP_READ, this);
+        }
+
+        @Override
+        public void ready(SelectionKey key) throws IOException {
+            if (key.isReadable() && ((SocketChannel) key.channel()).read(this.receive) < 0) {
+                this.eof = true;
+            }
+            this.process();
+        }
+
+        /**
+         * Resumes a paused connection once the queue is half empty.
+         */
+        @Override
+        public void run() {
+            if (!this.key.isValid()) {
+                return;
+            }
+            if (paused && queue.size() > queueSize / 2) {
+                this.loop.retry(this);
+                return;
+            }
+            try {
+                this.process();
+            } catch (IOException ex) {
+                EventLoop.close(this.key, ex);
+            }
+        }
+
+        @Override
+        public void closed(IOException cause) {
+            if (cause != null) {
+                log.warn("Closed a connection: {}", cause.getMessage());
+            }
+            receiveBuffers.release(this.receive);
+            if (this.pending != null) {
+                this.pending.release();
+                this.pending = null;
+            }
+        }
+
+        private void process() throws IOException {
+            if (this.pending != null) {
+                if (!queue.offer(this.pending)) {
+                    this.pause();
+                    return;
+                }
+                this.pending = null;
+            }
+            this.receive.flip();
+            try {
+                ByteBuffer frame;
+                while ((frame = framing.read(this.receive, getBufferPool().getBufferSize())) != null
+                        || (this.eof && (frame = framing.remainder(this.receive, getBufferPool().getBufferSize())) != null)) {
+                    Message message = copy(frame);
+                    if (!queue.offer(message)) {
+                        this.pending = message;
+                        break;
+                    }
+                }
+            } finally {
+                this.receive.compact();
+            }
+            if (this.pending != null) {
+                this.pause();
+            } else if (this.eof) {
+                EventLoop.close(this.key, null);
+            } else {
+                this.key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        private void pause() {
+            paused = true;
+            this.key.interestOps(0);
+            this.loop.retry(this);
+        }
+    }
+
+    /**
+     * Reads framed messages from datagrams, dropping them while the queue is full.
+     */
+    private class Receiver implements EventLoop.Handler {
+        private final ByteBuffer receive = receiveBuffers.acquire();
+
+        @Override
+        public void ready(SelectionKey key) throws IOException {
+            DatagramChannel channel = (DatagramChannel) key.channel();
+            while (channel.receive(this.receive) != null) {
+                this.receive.flip();
+                try {
+                    ByteBuffer frame;
+                    while ((frame = framing.read(this.receive, getBufferPool().getBufferSize())) != null
+                            || (frame = framing.remainder(this.receive, getBufferPool().getBufferSize())) != null) {
+                        Message message = copy(frame);
+                        if (!queue.offer(message)) {
+                            message.release();
+                            dropped.incrementAndGet();
+                        }
+                    }
+                } catch (IOException ex) {
+                    dropped.incrementAndGet();
+                }
+                this.receive.clear();
+            }
+        }
+
+        @Override
+        public void closed(IOException cause) {
+            if (cause != null) {
+                log.error("Stopped receiving datagrams", cause);
+            }
+            receiveBuffers.release(this.receive);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.net;
+
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Describes how messages are delimited in a stream: either followed by a delimiter byte, '\n' by
+ * default, or preceded by their length as a big-endian int.
+ * <p/>
+ * With the '\n' delimiter a '\r' before it is dropped too, so CRLF-terminated lines read the same.
+ */
+public abstract class StreamFraming {
+    public static final byte DEFAULT_DELIMITER = '\n';
+
+    /**
+     * Messages preceded by their length as a big-endian int.
+     */
+    public static final StreamFraming LENGTH = new StreamFraming() {
+        @Override
+        int size(int length) {
+            return length + 4;
+        }
+
+        @Override
+        void write(ByteBuffer out, ByteBuffer message) {
+            out.putInt(message.remaining());
+            out.put(message);
+        }
+
+        @Override
+        ByteBuffer read(ByteBuffer input, int maxLength) throws IOException {
+            int start = input.position();
+            if (input.limit() - start < 4) {
+                return null;
+            }
+            int length = input.getInt(start);
+            if (length < 0 || length > maxLength) {
+                throw new IOException("Invalid message length: " + length);
+            }
+            if (input.limit() - start - 4 < length) {
+                return null;
+            }
+            return frame(input, start + 4, start + 4 + length, start + 4 + length);
+        }
+
+        @Override
+        ByteBuffer remainder(ByteBuffer input, int maxLength) {
+            return null;
+        }
+    };
+
+    /**
+     * Gets the framing of messages followed by a delimiter.
+     *
+     * @param delimiter byte following every message.
+     */
+    public static StreamFraming delimiter(final byte delimiter) {
+        return new StreamFraming() {
+            @Override
+            int size(int length) {
+                return length + 1;
+            }
+
+            @Override
+            void write(ByteBuffer out, ByteBuffer message) {
+                out.put(message);
+                out.put(delimiter);
+            }
+
+            @Override
+            ByteBuffer read(ByteBuffer input, int maxLength) throws IOException {
+                int start = input.position();
+                for (int i = start; i < input.limit(); i++) {
+                    if (input.get(i) == delimiter) {
+                        int end = this.trim(input, start, i);
+                        if (end - start > maxLength) {
+                            throw new IOException("A message is longer than " + maxLength + " bytes.");
+                        }
+                        return frame(input, start, end, i + 1);
+                    }
+                }
+                if (input.limit() - start > maxLength + 1) {
+                    throw new IOException("A message is longer than " + maxLength + " bytes.");
+                }
+                return null;
+            }
+
+            @Override
+            ByteBuffer remainder(ByteBuffer input, int maxLength) throws IOException {
+                int start = input.position();
+                int end = input.limit();
+                if (end > start && input.get(end - 1) == delimiter) {
+                    end--;
+                }
+                end = this.trim(input, start, end);
+                if (end - start > maxLength) {
+                    input.position(input.limit());
+                    throw new IOException("A message is longer than " + maxLength + " bytes.");
+                }
+                return end > start ? frame(input, start, end, input.limit()) : null;
+            }
+
+            private int trim(ByteBuffer input, int start, int end) {
+                return delimiter == '\n' && end > start && input.get(end - 1) == '\r' ? end - 1 : end;
+            }
+        };
+    }
+
+    /**
+     * Parses a framing by name, "delimiter" or "length".
+     *
+     * @param name      of the framing, or null for the delimiter.
+     * @param delimiter the first character of which delimits messages, or null for '\n'.
+     */
+    public static StreamFraming parse(String name, String delimiter) throws ConfigurationException {
+        if (name == null || name.equalsIgnoreCase("delimiter")) {
+            if (delimiter == null) {
+                return delimiter(DEFAULT_DELIMITER);
+            }
+            if (delimiter.length() != 1 || delimiter.charAt(0) > 0x7f) {
+                throw new ConfigurationException("The delimiter must be a single ASCII character.");
+            }
+            return delimiter((byte) delimiter.charAt(0));
+        }
+        if (name.equalsIgnoreCase("length")) {
+            return LENGTH;
+        }
+        throw new ConfigurationException("Unknown framing: " + name);
+    }
+
+    private static ByteBuffer frame(ByteBuffer input, int start, int end, int next) {
+        ByteBuffer frame = input.duplicate();
+        frame.limit(end).position(start);
+        input.position(next);
+        return frame;
+    }
+
+    /**
+     * Gets the number of bytes a message takes in the stream.
+     */
+    abstract int size(int length);
+
+    /**
+     * Writes a framed message at the position of the output.
+     */
+    abstract void write(ByteBuffer out, ByteBuffer message);
+
+    /**
+     * Reads the next complete message between the position and limit of the input and moves the
+     * position past it.
+     *
+     * @param input     received bytes.
+     * @param maxLength of messages in bytes.
+     * @return the bytes of the message, or null if the input doesn't hold a whole message yet.
+     * @throws IOException if the message is longer than maxLength.
+     */
+    abstract ByteBuffer read(ByteBuffer input, int maxLength) throws IOException;
+
+    /**
+     * Reads what's left in the input at the end of the stream as the last message, if the framing
+     * allows messages without a trailing delimiter.
+     *
+     * @return the bytes of the message, or null if there's none.
+     * @throws IOException if the message is longer than maxLength.
+     */
+    abstract ByteBuffer remainder(ByteBuffer input, int maxLength) throws IOException;
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import com.github.tartakynov.mojave.metrics.ComponentMetrics;
+
+/**
+ * Tunes the batch size and linger of the writers of a sink toward a target latency, the time from
+ * a commit's first message leaving the buffer to the sink completing the write.
+ * <p/>
+ * Latencies of commits are smoothed and acted upon at most once per target latency. While the
+ * latency is above the target, a backlog in the buffer grows batches, so that the sink catches up
+ * with fewer writes, and drops linger; without a backlog linger is halved first and batches shrink
+ * once there's no linger left. While the latency is well below the target, full batches or a
+ * backlog grow batches, and commits leaving underfilled raise linger, saving writes on quiet
+ * traffic. Decisions stay within the configured bounds and are reported to the sink's metrics.
+ * <p/>
+ * Without a target latency the batch size and linger are fixed.
+ */
+class BatchController {
+    private static final double SMOOTHING = 0.2;
+    private static final double HEADROOM = 0.8;
+    private static final double GROWTH = 1.25;
+    private static final double SHRINK = 0.8;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long minLinger;
+    private final long maxLinger;
+    private final long target;
+    private final ComponentMetrics metrics;
+    private volatile int batchSize;
+    private volatile long linger;
+    private double latency = -1;
+    private long adjusted;
+
+    /**
+     * Creates a controller keeping the batch size and linger fixed.
+     *
+     * @param batchSize maximum number of messages in a commit.
+     * @param linger    time in nanoseconds to wait for a commit to fill up.
+     * @param metrics   to report the batch size and linger to.
+     */
+    BatchController(int batchSize, long linger, ComponentMetrics metrics) {
+        this(batchSize, batchSize, batchSize, linger, linger, linger, 0, metrics);
+    }
+
+    /**
+     * Creates a controller tuning the batch size and linger.
+     *
+     * @param batchSize    initial maximum number of messages in a commit.
+     * @param minBatchSize lower bound of the batch size.
+     * @param maxBatchSize upper bound of the batch size.
+     * @param linger       initial time in nanoseconds to wait for a commit to fill up.
+     * @param minLinger    lower bound of linger in nanoseconds.
+     * @param maxLinger    upper bound of linger in nanoseconds.
+     * @param target       latency to aim for in nanoseconds, 0 to keep settings fixed.
+     * @param metrics      to report the batch size and linger to.
+     */
+    BatchController(int batchSize, int minBatchSize, int maxBatchSize, long linger, long minLinger, long maxLinger,
+                    long target, ComponentMetrics metrics) {
+        if (minBatchSize <= 0 || minBatchSize > maxBatchSize || minLinger < 0 || minLinger > maxLinger || target < 0) {
+            throw new IllegalArgumentException("Invalid batching bounds");
+        }
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.minLinger = minLinger;
+        this.maxLinger = maxLinger;
+        this.target = target;
+        this.metrics = metrics;
+        this.batchSize = Math.max(minBatchSize, Math.min(maxBatchSize, batchSize));
+        this.linger = Math.max(minLinger, Math.min(maxLinger, linger));
+        metrics.recordBatching(this.batchSize, this.linger);
+    }
+
+    /**
+     * Gets the current maximum number of messages in a commit.
+     */
+    int getBatchSize() {
+        return this.batchSize;
+    }
+
+    /**
+     * Gets the current time in nanoseconds to wait for a commit to fill up.
+     */
+    long getLinger() {
+        return this.linger;
+    }
+
+    /**
+     * Records a written commit and adjusts the settings if it's time to.
+     *
+     * @param size    number of messages in the commit.
+     * @param latency nanoseconds from the first message leaving the buffer to the write completing.
+     * @param depth   number of messages waiting in the buffer.
+     * @param now     current {@see System#nanoTime()}.
+     */
+    synchronized void record(int size, long latency, int depth, long now) {
+        if (this.target == 0) {
+            return;
+        }
+        this.latency = this.latency < 0 ? latency : this.latency + SMOOTHING * (latency - this.latency);
+        if (now - this.adjusted < this.target) {
+            return;
+        }
+        this.adjusted = now;
+
+        int batchSize = this.batchSize;
+        long linger = this.linger;
+        boolean backlog = depth >= batchSize;
+        if (this.latency > this.target) {
+            if (backlog) {
+                batchSize = this.grow(batchSize);
+                linger = this.minLinger;
+            } else if (linger > this.minLinger) {
+                linger = Math.max(this.minLinger, linger / 2);
+            } else {
+                batchSize = Math.max(this.minBatchSize, (int) (batchSize * SHRINK));
+            }
+        } else if (this.latency < this.target * HEADROOM) {
+            if (backlog || size >= batchSize) {
+                batchSize = this.grow(batchSize);
+            } else {
+                linger = Math.min(this.maxLinger, linger + Math.max(1, (this.maxLinger - this.minLinger) / 8));
+            }
+        }
+
+        if (batchSize != this.batchSize || linger != this.linger) {
+            this.batchSize = batchSize;
+            this.linger = linger;
+            this.metrics.recordBatching(batchSize, linger);
+        }
+    }
+
+    private int grow(int batchSize) {
+        return (int) Math.min(this.maxBatchSize, Math.max(batchSize + 1, (long) (batchSize * GROWTH)));
+    }
+}
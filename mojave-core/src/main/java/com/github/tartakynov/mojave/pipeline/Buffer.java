@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import java.util.List;
+
+/**
+ * FIFO buffer between source readers and a sink writer.
+ */
+public interface Buffer<T> extends Destination<T> {
+    /**
+     * Gets the number of items waiting to be drained.
+     */
+    int size();
+
+    /**
+     * Removes up to max items and adds them to the given list, waiting no longer than
+     * timeoutNanos for the buffer to become non-empty.
+     *
+     * @param into         list to add items to.
+     * @param max          maximum number of items to remove.
+     * @param timeoutNanos maximum time to wait in nanoseconds.
+     * @return the number of items removed.
+     */
+    int drainTo(List<? super T> into, int max, long timeoutNanos) throws InterruptedException;
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import java.util.List;
+
+/**
+ * Anything source readers publish messages to: a sink buffer or a {@see Router} in front of the
+ * buffers of a partitioned sink.
+ */
+public interface Destination<T> {
+    /**
+     * Appends an item, waiting for space to become available if the destination is full.
+     *
+     * @param item to append.
+     */
+    void put(T item) throws InterruptedException;
+
+    /**
+     * Appends all items in order, waiting for space to become available whenever the destination
+     * is full.
+     *
+     * @param batch items to append.
+     */
+    void putAll(List<? extends T> batch) throws InterruptedException;
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Defines what threads run source consumers and sink writers.
+ */
+public enum ExecutionMode {
+    /**
+     * Consumers share a fixed work-stealing pool, sink writers run on platform threads.
+     */
+    POOLED {
+        @Override
+        public ThreadFactory newThreadFactory(final String prefix) {
+            return new ThreadFactory() {
+                private final AtomicInteger index = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, prefix + this.index.getAndIncrement());
+                }
+            };
+        }
+    },
+
+    /**
+     * Every consumer and sink writer runs on its own virtual thread, so blocking sources and
+     * sinks cost little memory. Requires Java 21 or newer.
+     */
+    VIRTUAL {
+        @Override
+        public ThreadFactory newThreadFactory(String prefix) throws ConfigurationException {
+            try {
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+                return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            } catch (Exception ex) {
+                throw new ConfigurationException("Virtual threads are not supported by this JVM.");
+            }
+        }
+    };
+
+    /**
+     * Parses an execution mode ignoring case.
+     *
+     * @param value name of the mode, or null for {@see #POOLED}.
+     * @return the parsed mode.
+     */
+    public static ExecutionMode parse(String value) throws ConfigurationException {
+        if (value == null) {
+            return POOLED;
+        }
+        for (ExecutionMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        throw new ConfigurationException("Unknown execution mode: " + value);
+    }
+
+    /**
+     * Creates a factory of threads for the current mode.
+     *
+     * @param prefix of thread names.
+     * @return a new thread factory.
+     */
+    public abstract ThreadFactory newThreadFactory(String prefix) throws ConfigurationException;
+}
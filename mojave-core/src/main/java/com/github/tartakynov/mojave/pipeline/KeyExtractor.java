@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import com.github.tartakynov.mojave.Message;
+
+/**
+ * Extracts the key a partitioned sink routes messages by. Messages with equal keys go to the same
+ * partition.
+ */
+public interface KeyExtractor {
+    /**
+     * Uses the whole message text as the key.
+     */
+    KeyExtractor MESSAGE = new KeyExtractor() {
+        @Override
+        public Object getKey(CharSequence message) {
+            return message.toString();
+        }
+    };
+
+    /**
+     * Gets the key of a message.
+     *
+     * @param message either a string or a {@see Message}.
+     * @return the key, whose hash code picks the partition, or null for the first partition.
+     */
+    Object getKey(CharSequence message);
+}
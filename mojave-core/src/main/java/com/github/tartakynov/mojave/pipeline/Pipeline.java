@@ -0,0 +1,447 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import com.github.tartakynov.mojave.Configuration;
+import com.github.tartakynov.mojave.RateLimiter;
+import com.github.tartakynov.mojave.Sink;
+import com.github.tartakynov.mojave.Source;
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import com.github.tartakynov.mojave.file.SpillQueue;
+import com.github.tartakynov.mojave.metrics.ComponentMetrics;
+import com.github.tartakynov.mojave.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves messages from sources to sinks through bounded buffers.
+ * <p/>
+ * Every sink has its own {@see RingBuffer} drained by one or more writer threads. Every source is
+ * read by {@see Source#getConcurrencyLevel()} consumers on a {@see Scheduler}. Consumers publish
+ * each transformed batch to all sink buffers and block while any of them is full, so slow sinks
+ * slow sources down instead of piling messages up on the heap.
+ * <p/>
+ * A sink with a spillDirectory gets a {@see SpillQueue} on disk instead, so it can fall behind or
+ * be down for as long as there is disk space, and messages it hasn't written are replayed after a
+ * restart.
+ * <p/>
+ * A partitioned sink has a buffer per partition behind a {@see Router} that sends every message to
+ * one partition by the hash of its key, so partitions write in parallel while each key keeps its order.
+ * <p/>
+ * In {@see ExecutionMode#VIRTUAL} mode every consumer and sink writer gets a virtual thread. Virtual
+ * threads are daemons, so a started pipeline holds a platform thread until it is stopped to keep
+ * the JVM running, as writer threads do in {@see ExecutionMode#POOLED} mode.
+ */
+public class Pipeline {
+    public static final int DEFAULT_QUEUE_DEPTH = 1024;
+    public static final int DEFAULT_THREADS = 1;
+    public static final long DEFAULT_LINGER = 0;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1;
+    public static final int DEFAULT_SPILL_SEGMENT_SIZE = 16 * 1024 * 1024;
+    public static final long DEFAULT_SPILL_SYNC_INTERVAL = 0;
+    public static final long DEFAULT_RETRY_INTERVAL = 1000;
+    private static final Logger log = LoggerFactory.getLogger(Pipeline.class);
+    private final Configuration config;
+    private final List<Sink> sinks = new ArrayList<Sink>();
+    private final Map<String, RateLimiter> sinkLimiters = new HashMap<String, RateLimiter>();
+    private final List<Destination<CharSequence>> buffers = new ArrayList<Destination<CharSequence>>();
+    private final List<SpillQueue> spillQueues = new ArrayList<SpillQueue>();
+    private final List<SinkWriter> writers = new ArrayList<SinkWriter>();
+    private final List<Thread> writerThreads = new ArrayList<Thread>();
+    private final CountDownLatch stopping = new CountDownLatch(1);
+    private Thread keepAlive;
+    private final Map<Source, Scheduler.Group> readers = new HashMap<Source, Scheduler.Group>();
+    private final Map<Source, Set<StatefulTransform>> statefulTransforms = new HashMap<Source, Set<StatefulTransform>>();
+    private final Scheduler scheduler;
+    private final boolean ownsScheduler;
+    private final ThreadFactory writerThreadFactory;
+    private final MetricsRegistry metrics;
+    private boolean started;
+    private boolean stopped;
+
+    /**
+     * Creates a pipeline reading sources on its own {@see Scheduler}.
+     *
+     * @param config pipeline section providing the executionMode, the number of workerThreads and
+     *               defaults for queueDepth, batchSize, batchTimeout and sinkThreads.
+     */
+    public Pipeline(Configuration config) throws ConfigurationException {
+        this(config, new MetricsRegistry());
+    }
+
+    /**
+     * Creates a pipeline reading sources on its own {@see Scheduler} and recording metrics of its
+     * components.
+     *
+     * @param config  pipeline section providing the executionMode, the number of workerThreads and
+     *                defaults for queueDepth, batchSize, batchTimeout and sinkThreads.
+     * @param metrics to record metrics in.
+     */
+    public Pipeline(Configuration config, MetricsRegistry metrics) throws ConfigurationException {
+        ExecutionMode mode = ExecutionMode.parse(config.get("executionMode"));
+        this.config = config;
+        if (mode == ExecutionMode.VIRTUAL) {
+            this.scheduler = new Scheduler(mode.newThreadFactory("mojave-source-"));
+        } else {
+            this.scheduler = new Scheduler(config.getInt32("workerThreads", Runtime.getRuntime().availableProcessors()));
+        }
+        this.ownsScheduler = true;
+        this.writerThreadFactory = mode.newThreadFactory("mojave-sink-writer-");
+        this.metrics = metrics;
+    }
+
+    /**
+     * Creates a pipeline reading sources on a shared {@see Scheduler}.
+     *
+     * @param config    pipeline section providing the executionMode of sink writers and defaults
+     *                  for queueDepth, batchSize, batchTimeout and sinkThreads.
+     * @param scheduler to run source readers on.
+     */
+    public Pipeline(Configuration config, Scheduler scheduler) throws ConfigurationException {
+        this(config, scheduler, new MetricsRegistry());
+    }
+
+    /**
+     * Creates a pipeline reading sources on a shared {@see Scheduler} and recording metrics of its
+     * components.
+     *
+     * @param config    pipeline section providing the executionMode of sink writers and defaults
+     *                  for queueDepth, batchSize, batchTimeout and sinkThreads.
+     * @param scheduler to run source readers on.
+     * @param metrics   to record metrics in.
+     */
+    public Pipeline(Configuration config, Scheduler scheduler, MetricsRegistry metrics) throws ConfigurationException {
+        this.config = config;
+        this.scheduler = scheduler;
+        this.ownsScheduler = false;
+        this.writerThreadFactory = ExecutionMode.parse(config.get("executionMode")).newThreadFactory("mojave-sink-writer-");
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the registry metrics of sources, sinks and script stages are recorded in.
+     */
+    public MetricsRegistry getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Gets the limiter of the rate messages are written to a sink at.
+     *
+     * @param sink name of the sink, or of a partition.
+     * @return the limiter, or null if there's no such sink.
+     */
+    public synchronized RateLimiter getRateLimiter(String sink) {
+        return this.sinkLimiters.get(sink);
+    }
+
+    /**
+     * Adds a sink to the pipeline. The sink's section may override queueDepth, batchSize,
+     * batchTimeout, linger, maxInFlight and threads. Messages are written in commits of up to
+     * batchSize messages, waiting up to linger milliseconds for a commit to fill up.
+     * <p/>
+     * With targetLatency milliseconds set, batchSize and linger are only starting points, tuned
+     * toward the target between minBatchSize and maxBatchSize, and minLinger and maxLinger, see
+     * {@see BatchController}.
+     * <p/>
+     * Writes are limited by messageRate and byteRate of the section, see {@see RateLimiter}; every
+     * partition of a partitioned sink gets the whole rate.
+     * <p/>
+     * When spillDirectory is set, the sink is buffered by a {@see SpillQueue} of spillSegmentSize
+     * byte segments named after the sink, holding up to spillMaxSegments segments and synced at
+     * most every spillSyncInterval milliseconds. Failed commits are then retried every
+     * retryInterval milliseconds, and the sink must have a single writer thread.
+     *
+     * @param sink   to add.
+     * @param config sink's configuration section.
+     */
+    public synchronized void addSink(Sink sink, Configuration config) throws ConfigurationException {
+        if (this.started) {
+            throw new IllegalStateException("Sinks can't be added to a running pipeline.");
+        }
+        this.buffers.add(this.connect(sink, config));
+    }
+
+    /**
+     * Adds a sink split into partitions. Every message goes to a single partition picked by the
+     * hash of its key, so messages with the same key are written by the same partition in order,
+     * as long as each partition has a single writer thread. Each partition gets its own buffer and
+     * writers configured by the section as in {@link #addSink(Sink, Configuration)}, and is named
+     * after its sink.
+     *
+     * @param partitions sinks to route messages to.
+     * @param extractor  of message keys.
+     * @param config     configuration section shared by partitions.
+     */
+    public synchronized void addSink(List<? extends Sink> partitions, KeyExtractor extractor, Configuration config)
+            throws ConfigurationException {
+        if (this.started) {
+            throw new IllegalStateException("Sinks can't be added to a running pipeline.");
+        }
+        if (partitions.isEmpty()) {
+            throw new ConfigurationException("No partitions given for the sink: " + config.getSectionName());
+        }
+
+        List<Buffer<CharSequence>> buffers = new ArrayList<Buffer<CharSequence>>(partitions.size());
+        for (Sink partition : partitions) {
+            buffers.add(this.connect(partition, config));
+        }
+        this.buffers.add(new Router(buffers, extractor));
+    }
+
+    /**
+     * Starts sink writers.
+     */
+    public synchronized void start() {
+        if (this.stopped) {
+            throw new IllegalStateException("The pipeline is stopped.");
+        }
+        if (this.started) {
+            return;
+        }
+
+        boolean daemons = false;
+        for (SinkWriter writer : this.writers) {
+            Thread thread = this.writerThreadFactory.newThread(writer);
+            thread.start();
+            this.writerThreads.add(thread);
+            daemons |= thread.isDaemon();
+        }
+        if (daemons) {
+            this.keepAlive = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        stopping.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "mojave-pipeline");
+            this.keepAlive.setDaemon(false);
+            this.keepAlive.start();
+        }
+        this.started = true;
+    }
+
+    /**
+     * Starts concurrencyLevel readers of the source, passing every batch through the transform.
+     *
+     * @param source    to read.
+     * @param transform applied to every batch.
+     */
+    public synchronized void attach(Source source, Transform transform) throws ConfigurationException {
+        List<Transform> transforms = new ArrayList<Transform>(source.getConcurrencyLevel());
+        for (int i = 0; i < source.getConcurrencyLevel(); i++) {
+            transforms.add(transform);
+        }
+        this.attach(source, transforms, false);
+    }
+
+    /**
+     * Starts a reader of the source per transform, so each transform is only ever called by one
+     * thread at a time. The number of transforms takes the place of the source's concurrency level.
+     * <p/>
+     * When ordered, batches reach sink buffers in the order they were taken from the source;
+     * otherwise each goes as soon as it's transformed.
+     *
+     * @param source     to read.
+     * @param transforms one per reader.
+     * @param ordered    whether to keep the order of the source.
+     */
+    public synchronized void attach(Source source, List<? extends Transform> transforms, boolean ordered)
+            throws ConfigurationException {
+        if (this.readers.containsKey(source)) {
+            throw new IllegalStateException("The source is already attached: " + source.getName());
+        }
+        if (transforms.isEmpty()) {
+            throw new ConfigurationException("No transforms given for the source: " + source.getName());
+        }
+
+        this.start();
+        Sequencer sequencer = ordered ? new Sequencer() : null;
+        List<SourceReader> sourceReaders = new ArrayList<SourceReader>(transforms.size());
+        Set<StatefulTransform> stateful = new LinkedHashSet<StatefulTransform>();
+        for (Transform transform : transforms) {
+            sourceReaders.add(new SourceReader(source.getName(), source, transform, this.buffers, this.metrics, sequencer));
+            if (transform instanceof StatefulTransform) {
+                stateful.add((StatefulTransform) transform);
+            }
+        }
+        this.readers.put(source, this.scheduler.schedule(sourceReaders));
+        this.statefulTransforms.put(source, stateful);
+    }
+
+    /**
+     * Stops reading the source and waits for batches in flight to reach sink buffers. Stateful
+     * transforms of the source then flush what they hold to sink buffers.
+     *
+     * @param source to stop reading.
+     */
+    public synchronized void detach(Source source) throws InterruptedException {
+        Scheduler.Group group = this.readers.remove(source);
+        if (group != null) {
+            group.stop();
+            group.await();
+        }
+        Set<StatefulTransform> stateful = this.statefulTransforms.remove(source);
+        if (stateful != null) {
+            for (StatefulTransform transform : stateful) {
+                try {
+                    SourceReader.publish(transform.flush(), this.buffers);
+                } catch (InterruptedException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    log.error("Unable to flush a stage of a detached source", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops all sources, lets sink writers drain their buffers, waits for them to finish and
+     * closes sinks. A stopped pipeline can't be started again, and stopping it again does nothing.
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (this.stopped) {
+            return;
+        }
+        for (Source source : new ArrayList<Source>(this.readers.keySet())) {
+            this.detach(source);
+        }
+        for (SinkWriter writer : this.writers) {
+            writer.stop();
+        }
+        for (Thread thread : this.writerThreads) {
+            thread.join();
+        }
+        this.writerThreads.clear();
+        for (SpillQueue spillQueue : this.spillQueues) {
+            spillQueue.close();
+        }
+        for (Sink sink : this.sinks) {
+            try {
+                sink.close();
+            } catch (IOException ex) {
+                log.error("Unable to close the sink", ex);
+            }
+        }
+        if (this.ownsScheduler) {
+            this.scheduler.shutdown();
+        }
+        this.stopping.countDown();
+        if (this.keepAlive != null) {
+            this.keepAlive.join();
+            this.keepAlive = null;
+        }
+        this.stopped = true;
+        log.debug("Pipeline stopped");
+    }
+
+    /**
+     * Creates the buffer and writers of a sink.
+     */
+    private Buffer<CharSequence> connect(Sink sink, Configuration config) throws ConfigurationException {
+        int queueDepth = config.getInt32("queueDepth", this.config.getInt32("queueDepth", DEFAULT_QUEUE_DEPTH));
+        int batchSize = config.getInt32("batchSize", this.config.getInt32("batchSize", Source.DEFAULT_BATCH_SIZE));
+        long batchTimeout = config.getInt64("batchTimeout", this.config.getInt64("batchTimeout", Source.DEFAULT_BATCH_TIMEOUT));
+        long linger = config.getInt64("linger", this.config.getInt64("linger", DEFAULT_LINGER));
+        int maxInFlight = config.getInt32("maxInFlight", this.config.getInt32("maxInFlight", DEFAULT_MAX_IN_FLIGHT));
+        int threads = config.getInt32("threads", this.config.getInt32("sinkThreads", DEFAULT_THREADS));
+        long retryInterval = config.getInt64("retryInterval", this.config.getInt64("retryInterval", DEFAULT_RETRY_INTERVAL));
+        if (queueDepth <= 0 || batchSize <= 0 || threads <= 0 || linger < 0 || maxInFlight <= 0 || retryInterval < 0) {
+            throw new ConfigurationException("Invalid buffer settings for the sink: " + sink.getName());
+        }
+
+        String spillDirectory = config.get("spillDirectory") != null ? config.get("spillDirectory") : this.config.get("spillDirectory");
+        Buffer<CharSequence> buffer;
+        if (spillDirectory == null) {
+            buffer = new RingBuffer<CharSequence>(queueDepth);
+        } else {
+            if (threads != 1) {
+                throw new ConfigurationException("A sink with a spill queue must have a single thread: " + sink.getName());
+            }
+            SpillQueue spillQueue = this.createSpillQueue(new File(spillDirectory), sink.getName(), config);
+            this.spillQueues.add(spillQueue);
+            buffer = spillQueue;
+        }
+        ComponentMetrics metrics = this.metrics.sink(sink.getName());
+        metrics.setQueue(buffer);
+        BatchController controller = this.createBatchController(sink.getName(), config, batchSize, linger, queueDepth, metrics);
+        RateLimiter limiter = RateLimiter.create(config);
+        this.sinks.add(sink);
+        this.sinkLimiters.put(sink.getName(), limiter);
+        for (int i = 0; i < threads; i++) {
+            this.writers.add(new SinkWriter(sink.getName(), sink, buffer, controller, limiter, batchTimeout, maxInFlight,
+                    retryInterval, metrics));
+        }
+        return buffer;
+    }
+
+    /**
+     * Creates the controller of the batch size and linger of a sink, tuning them when targetLatency
+     * is set.
+     */
+    private BatchController createBatchController(String name, Configuration config, int batchSize, long linger,
+                                                  int queueDepth, ComponentMetrics metrics) throws ConfigurationException {
+        long target = config.getInt64("targetLatency", this.config.getInt64("targetLatency", 0));
+        if (target <= 0) {
+            return new BatchController(batchSize, TimeUnit.MILLISECONDS.toNanos(linger), metrics);
+        }
+        int minBatchSize = config.getInt32("minBatchSize", this.config.getInt32("minBatchSize", 1));
+        int maxBatchSize = config.getInt32("maxBatchSize", this.config.getInt32("maxBatchSize", Math.max(batchSize, queueDepth)));
+        long minLinger = config.getInt64("minLinger", this.config.getInt64("minLinger", 0));
+        long maxLinger = config.getInt64("maxLinger", this.config.getInt64("maxLinger", Math.max(linger, target / 2)));
+        if (minBatchSize <= 0 || minBatchSize > maxBatchSize || minLinger < 0 || minLinger > maxLinger) {
+            throw new ConfigurationException("Invalid batching bounds for the sink: " + name);
+        }
+        return new BatchController(batchSize, minBatchSize, maxBatchSize, TimeUnit.MILLISECONDS.toNanos(linger),
+                TimeUnit.MILLISECONDS.toNanos(minLinger), TimeUnit.MILLISECONDS.toNanos(maxLinger),
+                TimeUnit.MILLISECONDS.toNanos(target), metrics);
+    }
+
+    private SpillQueue createSpillQueue(File directory, String name, Configuration config) throws ConfigurationException {
+        int segmentSize = config.getInt32("spillSegmentSize", this.config.getInt32("spillSegmentSize", DEFAULT_SPILL_SEGMENT_SIZE));
+        int maxSegments = config.getInt32("spillMaxSegments", this.config.getInt32("spillMaxSegments", 0));
+        long syncInterval = config.getInt64("spillSyncInterval", this.config.getInt64("spillSyncInterval", DEFAULT_SPILL_SYNC_INTERVAL));
+        if (segmentSize <= 0 || maxSegments < 0 || syncInterval < 0) {
+            throw new ConfigurationException("Invalid spill settings for the sink: " + name);
+        }
+        if (maxSegments == 1) {
+            throw new ConfigurationException("The spillMaxSegments of the sink " + name + " must be zero or at least 2.");
+        }
+        try {
+            return new SpillQueue(directory, name, segmentSize, maxSegments, syncInterval);
+        } catch (IOException ex) {
+            throw new ConfigurationException("Unable to open the spill queue of the sink " + name + ": " + ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded FIFO buffer backed by an array. Producers block while the buffer is full,
+ * which slows them down to the pace of consumers.
+ */
+public class RingBuffer<T> implements Buffer<T> {
+    private final Object[] items;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = this.lock.newCondition();
+    private final Condition notFull = this.lock.newCondition();
+    private int head;
+    private int tail;
+    private int count;
+
+    public RingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity");
+        }
+        this.items = new Object[capacity];
+    }
+
+    /**
+     * Gets the maximum number of items the buffer can hold.
+     */
+    public int capacity() {
+        return this.items.length;
+    }
+
+    @Override
+    public int size() {
+        this.lock.lock();
+        try {
+            return this.count;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(T item) throws InterruptedException {
+        this.lock.lockInterruptibly();
+        try {
+            while (this.count == this.items.length) {
+                this.notFull.await();
+            }
+            this.enqueue(item);
+            this.notEmpty.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void putAll(List<? extends T> batch) throws InterruptedException {
+        this.lock.lockInterruptibly();
+        try {
+            for (T item : batch) {
+                while (this.count == this.items.length) {
+                    this.notEmpty.signalAll();
+                    this.notFull.await();
+                }
+                this.enqueue(item);
+            }
+            this.notEmpty.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(List<? super T> into, int max, long timeoutNanos) throws InterruptedException {
+        this.lock.lockInterruptibly();
+        try {
+            long nanos = timeoutNanos;
+            while (this.count == 0) {
+                if (nanos <= 0) {
+                    return 0;
+                }
+                nanos = this.notEmpty.awaitNanos(nanos);
+            }
+            int n = Math.min(this.count, max);
+            for (int i = 0; i < n; i++) {
+                into.add(this.dequeue());
+            }
+            this.notFull.signalAll();
+            return n;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void enqueue(T item) {
+        this.items[this.tail] = item;
+        this.tail = (this.tail + 1) % this.items.length;
+        this.count++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T dequeue() {
+        T item = (T) this.items[this.head];
+        this.items[this.head] = null;
+        this.head = (this.head + 1) % this.items.length;
+        this.count--;
+        return item;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Routes every message to one of the partition buffers of a sink by the hash of its key.
+ * <p/>
+ * Messages with the same key published by one reader reach their partition in order. Partitions
+ * are drained by their own writers.
+ */
+class Router implements Destination<CharSequence> {
+    private final List<Buffer<CharSequence>> partitions;
+    private final KeyExtractor extractor;
+
+    Router(List<Buffer<CharSequence>> partitions, KeyExtractor extractor) {
+        this.partitions = partitions;
+        this.extractor = extractor;
+    }
+
+    /**
+     * Gets the partition of a message.
+     *
+     * @param message to route.
+     * @return index of the partition.
+     */
+    int partitionOf(CharSequence message) {
+        Object key = this.extractor.getKey(message);
+        int hash = key == null ? 0 : key.hashCode();
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % this.partitions.size();
+    }
+
+    @Override
+    public void put(CharSequence item) throws InterruptedException {
+        this.partitions.get(this.partitionOf(item)).put(item);
+    }
+
+    @Override
+    public void putAll(List<? extends CharSequence> batch) throws InterruptedException {
+        int count = this.partitions.size();
+        List<List<CharSequence>> routed = new ArrayList<List<CharSequence>>(count);
+        for (int i = 0; i < count; i++) {
+            routed.add(Collections.<CharSequence>emptyList());
+        }
+        for (CharSequence message : batch) {
+            int partition = this.partitionOf(message);
+            List<CharSequence> messages = routed.get(partition);
+            if (messages.isEmpty()) {
+                messages = new ArrayList<CharSequence>();
+                routed.set(partition, messages);
+            }
+            messages.add(message);
+        }
+        for (int i = 0; i < count; i++) {
+            if (!routed.get(i).isEmpty()) {
+                this.partitions.get(i).putAll(routed.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs consumers on a shared work-stealing pool.
+ * <p/>
+ * A consumer is a step that is run over and over until its group is stopped. After every step the
+ * consumer is pushed back to the queue of the worker that ran it, where idle workers can steal it,
+ * so a pool of a few threads serves any number of consumers. Workers never run out of local work
+ * while consumers are running, so they move newly scheduled consumers to their own queues too.
+ * Steps that block, such as putting a batch into a full {@see RingBuffer} or waiting for a turn of
+ * a {@see Sequencer}, hold a worker for as long as they wait, so the parallelism should exceed the
+ * number of consumers that can block at once.
+ * <p/>
+ * A consumer whose step throws an error stops and is counted as done, so its group can still be
+ * awaited.
+ * <p/>
+ * Alternatively every consumer runs its steps in a loop on a thread of its own, which suits
+ * consumers that block and cheap threads such as virtual ones.
+ * <p/>
+ * Steps can register actions to run on their thread once it stops running consumers, e.g. to
+ * release resources kept per thread, see {@see #onThreadExit}.
+ */
+public class Scheduler {
+    private static final Logger log = LoggerFactory.getLogger(Scheduler.class);
+    private static final ThreadLocal<List<Runnable>> exitActions = new ThreadLocal<List<Runnable>>();
+    private final WorkerPool pool;
+    private final ThreadFactory threadFactory;
+    private final List<Thread> threads = new ArrayList<Thread>();
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param parallelism number of worker threads.
+     */
+    public Scheduler(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism");
+        }
+        this.pool = new WorkerPool(parallelism);
+        this.threadFactory = null;
+    }
+
+    /**
+     * Creates a scheduler running every consumer on a thread of its own.
+     *
+     * @param threadFactory creating consumer threads.
+     */
+    public Scheduler(ThreadFactory threadFactory) {
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("threadFactory");
+        }
+        this.pool = null;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Starts running the given consumers.
+     *
+     * @param consumers steps to run repeatedly, one per consumer.
+     * @return the group of started consumers.
+     */
+    public Group schedule(List<? extends Runnable> consumers) {
+        Group group = new Group(consumers.size());
+        for (Runnable step : consumers) {
+            if (this.pool != null) {
+                this.submit(new Consumer(group, step));
+            } else {
+                this.startThread(new Loop(group, step));
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Stops accepting consumers and waits for running steps to finish.
+     */
+    public void shutdown() throws InterruptedException {
+        if (this.pool != null) {
+            this.pool.shutdown();
+            this.pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } else {
+            List<Thread> started;
+            synchronized (this.threads) {
+                started = new ArrayList<Thread>(this.threads);
+                this.threads.clear();
+            }
+            for (Thread thread : started) {
+                thread.join();
+            }
+        }
+    }
+
+    /**
+     * Registers an action to run on the current thread when it stops running consumers.
+     *
+     * @param action to run.
+     * @return false if the current thread isn't a thread of a scheduler, so the action won't run.
+     */
+    public static boolean onThreadExit(Runnable action) {
+        List<Runnable> actions = exitActions.get();
+        if (actions == null) {
+            return false;
+        }
+        actions.add(action);
+        return true;
+    }
+
+    private static void runExitActions() {
+        List<Runnable> actions = exitActions.get();
+        exitActions.remove();
+        if (actions == null) {
+            return;
+        }
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException ex) {
+                log.error("Unable to clean up a consumer thread", ex);
+            }
+        }
+    }
+
+    private void startThread(Loop loop) {
+        Thread thread = this.threadFactory.newThread(loop);
+        synchronized (this.threads) {
+            this.threads.add(thread);
+        }
+        thread.start();
+    }
+
+    private void submit(Consumer consumer) {
+        try {
+            if (ForkJoinTask.getPool() == this.pool) {
+                ForkJoinTask<?> submission = this.pool.pollSubmission();
+                if (submission != null) {
+                    submission.fork();
+                }
+                ForkJoinTask.adapt(consumer).fork();
+            } else {
+                this.pool.execute(consumer);
+            }
+        } catch (RejectedExecutionException ex) {
+            consumer.group.done.countDown();
+        }
+    }
+
+    /**
+     * Consumers started together.
+     */
+    public static class Group {
+        private final CountDownLatch done;
+        private volatile boolean running = true;
+
+        private Group(int size) {
+            this.done = new CountDownLatch(size);
+        }
+
+        /**
+         * Asks consumers to stop after their current step.
+         */
+        public void stop() {
+            this.running = false;
+        }
+
+        /**
+         * Waits for all consumers to finish their last step.
+         */
+        public void await() throws InterruptedException {
+            this.done.await();
+        }
+    }
+
+    private final class Consumer implements Runnable {
+        private final Group group;
+        private final Runnable step;
+
+        private Consumer(Group group, Runnable step) {
+            this.group = group;
+            this.step = step;
+        }
+
+        @Override
+        public void run() {
+            boolean resubmitted = false;
+            try {
+                if (this.group.running) {
+                    try {
+                        this.step.run();
+                    } catch (RuntimeException ex) {
+                        log.error("Consumer step failed", ex);
+                    }
+                }
+                if (this.group.running) {
+                    submit(this);
+                    resubmitted = true;
+                }
+            } finally {
+                if (!resubmitted) {
+                    this.group.done.countDown();
+                }
+            }
+        }
+    }
+
+    private static final class Loop implements Runnable {
+        private final Group group;
+        private final Runnable step;
+
+        private Loop(Group group, Runnable step) {
+            this.group = group;
+            this.step = step;
+        }
+
+        @Override
+        public void run() {
+            exitActions.set(new ArrayList<Runnable>());
+            try {
+                while (this.group.running) {
+                    try {
+                        this.step.run();
+                    } catch (RuntimeException ex) {
+                        log.error("Consumer step failed", ex);
+                    }
+                }
+            } finally {
+                runExitActions();
+                this.group.done.countDown();
+            }
+        }
+    }
+
+    private static final class WorkerPool extends ForkJoinPool {
+        private WorkerPool(int parallelism) {
+            super(parallelism, new ForkJoinWorkerThreadFactory() {
+                private final AtomicInteger index = new AtomicInteger();
+
+                @Override
+                public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                    ForkJoinWorkerThread thread = new Worker(pool);
+                    thread.setName("mojave-worker-" + this.index.getAndIncrement());
+                    return thread;
+                }
+            }, null, true);
+        }
+
+        @Override
+        protected ForkJoinTask<?> pollSubmission() {
+            return super.pollSubmission();
+        }
+    }
+
+    private static final class Worker extends ForkJoinWorkerThread {
+        private Worker(ForkJoinPool pool) {
+            super(pool);
+        }
+
+        @Override
+        protected void onStart() {
+            super.onStart();
+            exitActions.set(new ArrayList<Runnable>());
+        }
+
+        @Override
+        protected void onTermination(Throwable exception) {
+            try {
+                runExitActions();
+            } finally {
+                super.onTermination(exception);
+            }
+        }
+    }
+}
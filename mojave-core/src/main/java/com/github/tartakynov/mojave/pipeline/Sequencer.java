@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out tickets in the order batches are taken from a source and lets readers publish their
+ * batches in ticket order, however long each took to transform.
+ * <p/>
+ * Every ticket must be completed, otherwise readers holding later tickets wait forever.
+ */
+class Sequencer {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition turnChanged = this.lock.newCondition();
+    private final ReentrantLock taking = new ReentrantLock();
+    private long next;
+    private long turn;
+
+    /**
+     * Lets a reader take a batch from the source, readers wait until the previous one issued its
+     * ticket. Unlike a monitor the lock doesn't pin the carrier of a virtual thread parking in the
+     * source.
+     */
+    void beginTake() {
+        this.taking.lock();
+    }
+
+    /**
+     * Lets the next reader take a batch.
+     */
+    void endTake() {
+        this.taking.unlock();
+    }
+
+    /**
+     * Issues the next ticket. Readers take a batch and its ticket between {@see #beginTake} and
+     * {@see #endTake}, so tickets follow the order of batches in the source.
+     */
+    long ticket() {
+        return this.next++;
+    }
+
+    /**
+     * Waits until all batches with earlier tickets are published.
+     *
+     * @param ticket of the batch to publish.
+     */
+    void awaitTurn(long ticket) throws InterruptedException {
+        this.lock.lockInterruptibly();
+        try {
+            while (this.turn != ticket) {
+                this.turnChanged.await();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the batch published, or dropped, and lets the next one go.
+     *
+     * @param ticket of the batch.
+     */
+    void complete(long ticket) {
+        this.lock.lock();
+        try {
+            while (this.turn != ticket) {
+                this.turnChanged.awaitUninterruptibly();
+            }
+            this.turn++;
+            this.turnChanged.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import com.github.tartakynov.mojave.ByteSink;
+import com.github.tartakynov.mojave.Message;
+import com.github.tartakynov.mojave.RateLimiter;
+import com.github.tartakynov.mojave.Sink;
+import com.github.tartakynov.mojave.file.SpillQueue;
+import com.github.tartakynov.mojave.metrics.ComponentMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains a sink buffer and writes group commits to a {@see Sink}.
+ * <p/>
+ * A commit is written once it has batchSize messages or its first message has waited for linger
+ * milliseconds, both given by a {@see BatchController} that may tune them as commits complete.
+ * Commits wait for the sink's {@see RateLimiter} before they're written. Up to maxInFlight commits
+ * are written at once; the sink is flushed whenever the buffer runs dry.
+ * <p/>
+ * When the buffer is a {@see SpillQueue}, commits are acknowledged to it once written, and failed
+ * commits are retried every retryInterval milliseconds until they succeed. A commit that still
+ * fails once the writer is stopping is left in the queue, together with everything after it, to be
+ * replayed when the queue is reopened.
+ * <p/>
+ * Other buffers don't keep messages once they're taken, so a failed commit is logged, counted as
+ * an error of the sink and dropped: without a spill queue messages are delivered at most once.
+ */
+class SinkWriter implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(SinkWriter.class);
+    private final String name;
+    private final Sink sink;
+    private final Buffer<CharSequence> buffer;
+    private final SpillQueue spill;
+    private final BatchController controller;
+    private final RateLimiter limiter;
+    private final long timeout;
+    private final int maxInFlight;
+    private final long retryInterval;
+    private final ComponentMetrics metrics;
+    private final Deque<Commit> pending = new ArrayDeque<Commit>();
+    private volatile boolean running = true;
+    private boolean abandoned;
+    private long collected;
+
+    SinkWriter(String name, Sink sink, Buffer<CharSequence> buffer, BatchController controller, RateLimiter limiter,
+               long timeout, int maxInFlight, long retryInterval, ComponentMetrics metrics) {
+        this.name = name;
+        this.sink = sink;
+        this.buffer = buffer;
+        this.spill = buffer instanceof SpillQueue ? (SpillQueue) buffer : null;
+        this.controller = controller;
+        this.limiter = limiter;
+        this.timeout = TimeUnit.MILLISECONDS.toNanos(timeout);
+        this.maxInFlight = maxInFlight;
+        this.retryInterval = retryInterval;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void run() {
+        boolean dirty = false;
+        try {
+            while (this.running || (this.buffer.size() > 0 && !this.abandoned)) {
+                int batchSize = this.controller.getBatchSize();
+                List<CharSequence> batch = new ArrayList<CharSequence>(batchSize);
+                if (this.collect(batch, batchSize) > 0) {
+                    this.submit(batch);
+                    dirty = true;
+                } else if (dirty) {
+                    this.completeAll();
+                    this.flush();
+                    dirty = false;
+                }
+            }
+            this.completeAll();
+            if (dirty) {
+                this.flush();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        log.debug("Sink writer stopped: {}", this.name);
+    }
+
+    /**
+     * Asks the writer to stop once its buffer is drained.
+     */
+    void stop() {
+        this.running = false;
+    }
+
+    private int collect(List<CharSequence> batch, int batchSize) throws InterruptedException {
+        int count = this.buffer.drainTo(batch, batchSize, this.timeout);
+        this.collected = System.nanoTime();
+        long linger = this.controller.getLinger();
+        if (count == 0 || linger <= 0) {
+            return count;
+        }
+
+        long deadline = this.collected + linger;
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            this.buffer.drainTo(batch, batchSize - batch.size(), remaining);
+        }
+        return batch.size();
+    }
+
+    private void submit(List<CharSequence> batch) throws InterruptedException {
+        while (this.pending.size() >= this.maxInFlight) {
+            this.complete(this.pending.removeFirst());
+        }
+        SourceReader.throttle(this.limiter, batch);
+
+        long started = System.nanoTime();
+        this.pending.addLast(new Commit(batch, this.collected, started, this.write(batch)));
+        while (!this.pending.isEmpty() && this.pending.peekFirst().future.isDone()) {
+            this.complete(this.pending.removeFirst());
+        }
+    }
+
+    private CompletableFuture<Void> write(List<CharSequence> batch) {
+        try {
+            return this.send(batch);
+        } catch (RuntimeException ex) {
+            CompletableFuture<Void> future = new CompletableFuture<Void>();
+            future.completeExceptionally(ex);
+            return future;
+        }
+    }
+
+    private CompletableFuture<Void> send(List<CharSequence> batch) {
+        if (this.sink instanceof ByteSink) {
+            List<Message> messages = new ArrayList<Message>(batch.size());
+            for (CharSequence message : batch) {
+                messages.add(Message.wrap(message));
+            }
+            return ((ByteSink) this.sink).writeMessages(messages);
+        }
+
+        List<String> messages = new ArrayList<String>(batch.size());
+        for (CharSequence message : batch) {
+            messages.add(message.toString());
+        }
+        return this.sink.write(messages);
+    }
+
+    private void completeAll() throws InterruptedException {
+        while (!this.pending.isEmpty()) {
+            this.complete(this.pending.removeFirst());
+        }
+    }
+
+    private void complete(Commit commit) throws InterruptedException {
+        try {
+            while (true) {
+                try {
+                    commit.future.get();
+                    long now = System.nanoTime();
+                    this.metrics.recordBatch(commit.batch, now - commit.started);
+                    if (!commit.retried) {
+                        this.controller.record(commit.batch.size(), now - commit.collected, this.buffer.size(), now);
+                    }
+                    if (this.spill != null && !this.abandoned) {
+                        this.spill.acknowledge(commit.batch.size());
+                    }
+                    return;
+                } catch (ExecutionException ex) {
+                    this.metrics.recordError();
+                    log.error("Unable to write a batch to the sink: " + this.name, ex.getCause());
+                }
+                if (this.spill == null) {
+                    return;
+                }
+                if (!this.running) {
+                    this.abandoned = true;
+                    return;
+                }
+                Thread.sleep(this.retryInterval);
+                commit.retried = true;
+                commit.started = System.nanoTime();
+                commit.future = this.write(commit.batch);
+            }
+        } finally {
+            for (CharSequence message : commit.batch) {
+                if (message instanceof Message) {
+                    ((Message) message).release();
+                }
+            }
+        }
+    }
+
+    private void flush() {
+        try {
+            this.sink.flush();
+        } catch (Exception ex) {
+            log.error("Unable to flush the sink: " + this.name, ex);
+        }
+    }
+
+    private static final class Commit {
+        private final List<CharSequence> batch;
+        private final long collected;
+        private CompletableFuture<Void> future;
+        private long started;
+        private boolean retried;
+
+        private Commit(List<CharSequence> batch, long collected, long started, CompletableFuture<Void> future) {
+            this.batch = batch;
+            this.collected = collected;
+            this.started = started;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import com.github.tartakynov.mojave.ByteSource;
+import com.github.tartakynov.mojave.Message;
+import com.github.tartakynov.mojave.RateLimiter;
+import com.github.tartakynov.mojave.Source;
+import com.github.tartakynov.mojave.metrics.ComponentMetrics;
+import com.github.tartakynov.mojave.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes a batch from a {@see Source}, transforms it and publishes the result to sink buffers.
+ * Every run handles a single batch, the {@see Scheduler} runs readers repeatedly.
+ * <p/>
+ * Source metrics record the time taken to fill a batch, stage metrics the time spent in the
+ * transform, unless it's {@see Transform#IDENTITY}.
+ * <p/>
+ * Readers sharing a {@see Sequencer} publish batches in the order they took them from the source.
+ * Unordered readers of a {@see StatefulTransform} let it emit due messages whenever the source is idle.
+ * <p/>
+ * Readers park after taking a batch until the source's {@see RateLimiter} lets it through.
+ * <p/>
+ * Messages a transform doesn't return, and batches that fail, are released right away, sink
+ * writers release the published ones.
+ */
+class SourceReader implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(SourceReader.class);
+    private final String name;
+    private final Source source;
+    private final Transform transform;
+    private final List<Destination<CharSequence>> buffers;
+    private final int batchSize;
+    private final long timeout;
+    private final List<CharSequence> batch;
+    private final ComponentMetrics sourceMetrics;
+    private final ComponentMetrics stageMetrics;
+    private final Sequencer sequencer;
+
+    SourceReader(String name, Source source, Transform transform, List<Destination<CharSequence>> buffers,
+                 MetricsRegistry metrics, Sequencer sequencer) {
+        this.name = name;
+        this.source = source;
+        this.transform = transform;
+        this.buffers = buffers;
+        this.batchSize = source.getBatchSize();
+        this.timeout = TimeUnit.MILLISECONDS.toNanos(source.getBatchTimeout());
+        this.batch = new ArrayList<CharSequence>(this.batchSize);
+        this.sourceMetrics = metrics.source(name);
+        this.stageMetrics = transform == Transform.IDENTITY ? null : metrics.stage(name);
+        this.sequencer = sequencer;
+    }
+
+    @Override
+    public void run() {
+        this.batch.clear();
+        ComponentMetrics failing = this.sourceMetrics;
+        List<CharSequence> owned = this.batch;
+        long ticket = -1;
+        try {
+            long started = System.nanoTime();
+            if (this.sequencer == null) {
+                if (this.take() == 0) {
+                    if (this.transform instanceof StatefulTransform) {
+                        failing = this.stageMetrics;
+                        this.publish(((StatefulTransform) this.transform).tick());
+                    }
+                    return;
+                }
+            } else {
+                this.sequencer.beginTake();
+                try {
+                    if (this.take() == 0) {
+                        return;
+                    }
+                    ticket = this.sequencer.ticket();
+                } finally {
+                    this.sequencer.endTake();
+                }
+            }
+            this.sourceMetrics.recordBatch(this.batch, System.nanoTime() - started);
+            throttle(this.source.getRateLimiter(), this.batch);
+
+            long taken = System.nanoTime();
+            failing = this.stageMetrics;
+            List<CharSequence> output = this.transform.apply(this.batch);
+            owned = output;
+            releaseDropped(this.batch, output);
+            if (this.stageMetrics != null) {
+                this.stageMetrics.recordBatch(output, System.nanoTime() - taken);
+            }
+            failing = null;
+            if (ticket >= 0) {
+                this.sequencer.awaitTurn(ticket);
+            }
+            owned = null;
+            this.publish(output);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            if (failing != null) {
+                failing.recordError();
+            }
+            log.error("Unable to process a batch from the source: " + this.name, ex);
+        } finally {
+            if (owned != null) {
+                release(owned);
+            }
+            if (ticket >= 0) {
+                this.sequencer.complete(ticket);
+            }
+        }
+    }
+
+    /**
+     * Releases the messages of a batch a transform didn't return, as it dropped or consumed them,
+     * and retains the ones it returned more than once, so every returned message is released once
+     * per occurrence and sink buffer.
+     *
+     * @param input  batch passed to the transform.
+     * @param output batch returned by the transform, may be null.
+     */
+    static void releaseDropped(List<CharSequence> input, List<CharSequence> output) {
+        if (input == output) {
+            return;
+        }
+        Map<Message, Boolean> returned = null;
+        if (output != null) {
+            for (CharSequence message : output) {
+                if (message instanceof Message) {
+                    if (returned == null) {
+                        returned = new IdentityHashMap<Message, Boolean>();
+                    }
+                    if (returned.put((Message) message, Boolean.TRUE) != null) {
+                        ((Message) message).retain(1);
+                    }
+                }
+            }
+        }
+        for (CharSequence message : input) {
+            if (message instanceof Message && (returned == null || !returned.containsKey(message))) {
+                ((Message) message).release();
+            }
+        }
+    }
+
+    /**
+     * Releases the messages of a batch that won't be published.
+     */
+    private static void release(List<CharSequence> messages) {
+        for (CharSequence message : messages) {
+            if (message instanceof Message) {
+                ((Message) message).release();
+            }
+        }
+    }
+
+    /**
+     * Publishes messages to all sink buffers.
+     *
+     * @param messages to publish, may be null.
+     */
+    static void publish(List<CharSequence> messages, List<Destination<CharSequence>> buffers) throws InterruptedException {
+        if (messages != null && !messages.isEmpty()) {
+            if (buffers.size() > 1) {
+                for (CharSequence message : messages) {
+                    if (message instanceof Message) {
+                        ((Message) message).retain(buffers.size() - 1);
+                    }
+                }
+            }
+            for (Destination<CharSequence> buffer : buffers) {
+                buffer.putAll(messages);
+            }
+        }
+    }
+
+    /**
+     * Waits for the rate limiter of a source or sink to let a batch through.
+     *
+     * @param limiter to take tokens from, may be null.
+     * @param batch   messages passing the limiter.
+     */
+    static void throttle(RateLimiter limiter, List<? extends CharSequence> batch) throws InterruptedException {
+        if (limiter == null) {
+            return;
+        }
+        long bytes = 0;
+        if (limiter.limitsBytes()) {
+            for (CharSequence message : batch) {
+                bytes += Message.sizeOf(message);
+            }
+        }
+        limiter.acquire(batch.size(), bytes);
+    }
+
+    private void publish(List<CharSequence> messages) throws InterruptedException {
+        publish(messages, this.buffers);
+    }
+
+    private int take() {
+        if (this.source instanceof ByteSource) {
+            return ((ByteSource) this.source).takeMessages(this.batch, this.batchSize, this.timeout);
+        }
+        return this.source.takeBatch(this.batch, this.batchSize, this.timeout);
+    }
+}
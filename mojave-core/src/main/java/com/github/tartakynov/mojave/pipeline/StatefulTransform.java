@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import java.util.List;
+
+/**
+ * A transform keeping state across batches, e.g. windowed aggregates, that emits messages as time
+ * passes and not only in response to batches. Readers may call it concurrently.
+ */
+public interface StatefulTransform extends Transform {
+    /**
+     * Emits messages that are due, called when the source has no messages.
+     *
+     * @return messages to send to sinks, or null if there is nothing to send.
+     */
+    List<CharSequence> tick() throws Exception;
+
+    /**
+     * Emits everything held, called once the source is detached.
+     *
+     * @return messages to send to sinks, or null if there is nothing to send.
+     */
+    List<CharSequence> flush() throws Exception;
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import com.github.tartakynov.mojave.Message;
+
+import java.util.List;
+
+/**
+ * Transforms batches of messages on their way from a source to sinks.
+ */
+public interface Transform {
+    /**
+     * Passes batches through unchanged.
+     */
+    Transform IDENTITY = new Transform() {
+        @Override
+        public List<CharSequence> apply(List<CharSequence> batch) {
+            return batch;
+        }
+    };
+
+    /**
+     * Transforms a batch of messages. {@see Message}s of the batch that aren't returned are
+     * released once the call returns, so they must not be kept.
+     *
+     * @param batch messages taken from a source, either strings or {@see Message}s.
+     * @return messages to send to sinks, or null if there is nothing to send.
+     */
+    List<CharSequence> apply(List<CharSequence> batch) throws Exception;
+}
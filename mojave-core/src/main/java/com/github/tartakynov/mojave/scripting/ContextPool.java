@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import com.github.tartakynov.mojave.pipeline.Scheduler;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+
+/**
+ * Keeps one entered {@see Context} per thread, so callbacks run on worker threads don't enter and
+ * exit a context for every call.
+ * <p/>
+ * Every pooled context gets the optimization level and language version of the context the pool
+ * was created from. Scripts are run against the same top-level scope, so the generated classes in
+ * its {@see org.mozilla.javascript.ClassCache} are shared by all of them.
+ * <p/>
+ * A thread that already entered a context, e.g. the one running the main script, keeps using it
+ * with its own settings. Contexts entered by the pool are exited when the {@see Scheduler} thread
+ * they were entered on stops, on other threads they stay entered for the lifetime of the thread.
+ */
+public class ContextPool {
+    private static final Runnable EXIT = new Runnable() {
+        @Override
+        public void run() {
+            Context.exit();
+        }
+    };
+    private final ContextFactory factory;
+    private final int optimizationLevel;
+    private final int languageVersion;
+
+    /**
+     * Creates a pool of contexts configured the same way as the given one.
+     *
+     * @param ctx context to copy settings from.
+     */
+    public ContextPool(Context ctx) {
+        this.factory = ctx.getFactory();
+        this.optimizationLevel = ctx.getOptimizationLevel();
+        this.languageVersion = ctx.getLanguageVersion();
+    }
+
+    /**
+     * Gets the context of the current thread, entering a new one if the thread has none.
+     *
+     * @return the context of the current thread.
+     */
+    public Context current() {
+        Context ctx = Context.getCurrentContext();
+        if (ctx != null) {
+            return ctx;
+        }
+        ctx = this.factory.enterContext();
+        ctx.setOptimizationLevel(this.optimizationLevel);
+        ctx.setLanguageVersion(this.languageVersion);
+        Scheduler.onThreadExit(EXIT);
+        return ctx;
+    }
+}
@@ -18,33 +18,88 @@
  */
 package com.github.tartakynov.mojave.scripting;
 
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import com.github.tartakynov.mojave.metrics.MetricsRegistry;
 import org.mozilla.javascript.*;
 import org.mozilla.javascript.tools.shell.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JavaScript global object for Mojave.
+ * <p/>
+ * The global object can watch its main script and the modules it requires. When any of them
+ * changes the main script is run again in the background: {@see Mojave} objects created by the
+ * previous run are reused, and callbacks passed to running sources replace the current ones once
+ * the whole script has run successfully.
+ * <p/>
+ * Callbacks on all threads share named {@see ScriptableCache}s created by cache(name, config), which
+ * also survive reloads, and can decode and encode messages with native JSON and CSV codecs: json,
+ * parseJson, toJson, csv, csvField and toCsv.
  */
 public class Global extends ImporterTopLevel {
-    protected static final HashMap<File, Scriptable> modules = new HashMap<File, Scriptable>();
+    private static final Logger log = LoggerFactory.getLogger(Global.class);
+    protected static final ScriptCache scripts = new ScriptCache();
+    protected volatile ConcurrentMap<String, Scriptable> modules = new ConcurrentHashMap<String, Scriptable>();
+    protected final ConcurrentMap<String, ScriptableCache> caches = new ConcurrentHashMap<String, ScriptableCache>();
     protected final Context context;
+    protected final ContextPool contexts;
+    protected final MetricsRegistry metrics = new MetricsRegistry();
+    protected final List<Mojave> pipelines = new ArrayList<Mojave>();
+    protected final Map<ScriptTransform, Function> replacedCallbacks = new LinkedHashMap<ScriptTransform, Function>();
+    protected final Map<String, Long> watchedFiles = new HashMap<String, Long>();
+    protected final Set<String> watchedScripts = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    protected volatile boolean reloading;
+    protected int reloadedPipelines;
+    protected File mainScript;
+    protected ScheduledExecutorService watcher;
 
     public Global(Context ctx, boolean sealed) throws Exception {
-        String[] functionNames = {"version", "require"};
+        String[] functionNames = {"version", "require", "cache", "json", "parseJson", "toJson", "csv", "csvField", "toCsv"};
         this.initStandardObjects(ctx, sealed);
         this.defineFunctionProperties(functionNames, Global.class, DONTENUM);
         ScriptableObject.defineClass(this, Mojave.class);
+        ScriptableObject.defineClass(this, ScriptableCache.class);
 
         Environment.defineClass(this);
         Environment environment = new Environment(this);
         this.defineProperty(Properties.ENVIRONMENT.toString(), environment, DONTENUM);
         this.defineProperty(Properties.STDOUT.toString(), System.out, DONTENUM);
         this.defineProperty(Properties.STDERR.toString(), System.err, DONTENUM);
+        this.defineProperty(Properties.METRICS.toString(), this.metrics, DONTENUM);
         this.context = ctx;
+        this.contexts = new ContextPool(ctx);
+    }
+
+    /**
+     * Gets contexts for running callbacks on worker threads.
+     */
+    public ContextPool getContextPool() {
+        return this.contexts;
+    }
+
+    /**
+     * Gets metrics of the pipelines created by scripts of this global object.
+     */
+    public MetricsRegistry getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Gets compiled scripts shared by all global objects.
+     */
+    public static ScriptCache getScriptCache() {
+        return scripts;
     }
 
     /**
@@ -67,11 +122,13 @@ public class Global extends ImporterTopLevel {
     public static Object require(Context ctx, Scriptable thisObj, Object[] args, Function funObj)
             throws IOException {
         String dir = (String) getProperty(thisObj, Properties.DIRECTORY_NAME.toString());
-        File file = new File(dir, Context.toString(args[0]));
+        File file = new File(dir, Context.toString(args[0])).getCanonicalFile();
+        ConcurrentMap<String, Scriptable> modules = getGlobal(thisObj).modules;
 
         // check if module is already loaded
-        if (modules.containsKey(file)) {
-            return modules.get(file);
+        Scriptable loaded = modules.get(file.getPath());
+        if (loaded != null) {
+            return loaded;
         }
 
         // make new global object
@@ -85,9 +142,104 @@ public class Global extends ImporterTopLevel {
         // compile & execute the module
         runScriptFromFile(ctx, scope, file);
 
-        // put module to the map and return
-        modules.put(file, exports);
-        return exports;
+        // put module to the map unless another thread has loaded it meanwhile
+        loaded = modules.putIfAbsent(file.getPath(), exports);
+        return loaded != null ? loaded : exports;
+    }
+
+    /**
+     * Gets a view of a JSON document whose members are decoded when first read.
+     * This method is defined as a JavaScript function.
+     */
+    public static Object json(Context ctx, Scriptable thisObj, Object[] args, Function funObj) {
+        return ScriptCodecs.json(getTopLevelScope(funObj), arg(args, 0));
+    }
+
+    /**
+     * Parses a whole JSON document, faster than JSON.parse.
+     * This method is defined as a JavaScript function.
+     */
+    public static Object parseJson(Context ctx, Scriptable thisObj, Object[] args, Function funObj) {
+        return ScriptCodecs.parseJson(getTopLevelScope(funObj), arg(args, 0));
+    }
+
+    /**
+     * Serializes a value as JSON, faster than JSON.stringify.
+     * This method is defined as a JavaScript function.
+     */
+    public static Object toJson(Context ctx, Scriptable thisObj, Object[] args, Function funObj) {
+        return ScriptCodecs.toJson(arg(args, 0));
+    }
+
+    /**
+     * Splits a delimited line into an array of fields, the delimiter is a comma by default.
+     * This method is defined as a JavaScript function.
+     */
+    public static Object csv(Context ctx, Scriptable thisObj, Object[] args, Function funObj) {
+        return ScriptCodecs.csv(ctx, getTopLevelScope(funObj), arg(args, 0), arg(args, 1));
+    }
+
+    /**
+     * Reads a field of a delimited line by its index without splitting the whole line.
+     * This method is defined as a JavaScript function.
+     */
+    public static Object csvField(Context ctx, Scriptable thisObj, Object[] args, Function funObj) {
+        return ScriptCodecs.csvField(arg(args, 0), arg(args, 1), arg(args, 2));
+    }
+
+    /**
+     * Joins an array of fields into a delimited line, the delimiter is a comma by default.
+     * This method is defined as a JavaScript function.
+     */
+    public static Object toCsv(Context ctx, Scriptable thisObj, Object[] args, Function funObj) {
+        return ScriptCodecs.toCsv(arg(args, 0), arg(args, 1));
+    }
+
+    private static Object arg(Object[] args, int index) {
+        return index < args.length ? args[index] : Context.getUndefinedValue();
+    }
+
+    /**
+     * Gets the named cache shared by all scripts of the global object, creating it on the first
+     * call. Later calls, e.g. from a reloaded script, only replace the loader.
+     * This method is defined as a JavaScript function.
+     */
+    public static Object cache(Context ctx, Scriptable thisObj, Object[] args, Function funObj)
+            throws ConfigurationException {
+        if (args.length == 0) {
+            throw ScriptRuntime.typeError("cache expects a name");
+        }
+        String name = Context.toString(args[0]);
+        NativeObject config = args.length > 1 && args[1] instanceof NativeObject ? (NativeObject) args[1] : new NativeObject();
+        Global global = getGlobal(thisObj);
+        synchronized (global.caches) {
+            ScriptableCache cache = global.caches.get(name);
+            if (cache != null) {
+                if (args.length > 1) {
+                    cache.reconfigure(config, global.contexts);
+                }
+                return cache;
+            }
+
+            cache = new ScriptableCache(name, config, global.contexts);
+            cache.setParentScope(global);
+            cache.setPrototype(getClassPrototype(global, cache.getClassName()));
+            global.caches.put(name, cache);
+            return cache;
+        }
+    }
+
+    /**
+     * Finds the global object the given scope belongs to.
+     */
+    protected static Global getGlobal(Scriptable scope) {
+        for (Scriptable obj = scope; obj != null; obj = obj.getPrototype()) {
+            Scriptable topLevel = getTopLevelScope(obj);
+            if (topLevel instanceof Global) {
+                return (Global) topLevel;
+            }
+        }
+        throw new IllegalStateException("The scope doesn't belong to a global object.");
     }
 
     /**
@@ -95,15 +247,10 @@ public class Global extends ImporterTopLevel {
      */
     protected static void runScriptFromFile(Context cx, ScriptableObject scope, File file)
             throws IOException {
-        FileReader in = new FileReader(file);
-        try {
-            Script script = cx.compileReader(in, file.getName(), 1, null);
-            scope.defineProperty(Properties.FILE_NAME.toString(), file.getName(), CONST | DONTENUM);
-            scope.defineProperty(Properties.DIRECTORY_NAME.toString(), file.getParent(), CONST | DONTENUM);
-            script.exec(cx, scope);
-        } finally {
-            in.close();
-        }
+        Script script = scripts.get(cx, file);
+        scope.defineProperty(Properties.FILE_NAME.toString(), file.getName(), CONST | DONTENUM);
+        scope.defineProperty(Properties.DIRECTORY_NAME.toString(), file.getAbsoluteFile().getParent(), CONST | DONTENUM);
+        script.exec(cx, scope);
     }
 
     /**
@@ -145,8 +292,149 @@ public class Global extends ImporterTopLevel {
     /**
      * Runs script from given file.
      */
-    public void run(String file) throws IOException {
-        runScriptFromFile(this.context, this, new File(file));
+    public synchronized void run(String file) throws IOException {
+        this.mainScript = new File(file);
+        runScriptFromFile(this.context, this, this.mainScript);
+        this.snapshotWatchedFiles();
+    }
+
+    /**
+     * Runs the main script again, keeping sources running.
+     * Callbacks are replaced only if the whole script runs successfully. Modules are required
+     * again into a new map that replaces the current one, so callbacks requiring modules meanwhile
+     * always find them loaded, and the current map is put back if the script fails.
+     */
+    public synchronized void reload() throws IOException {
+        if (this.mainScript == null) {
+            throw new IllegalStateException("No script has been run.");
+        }
+
+        ConcurrentMap<String, Scriptable> previousModules = this.modules;
+        this.modules = new ConcurrentHashMap<String, Scriptable>();
+        this.reloadedPipelines = 0;
+        this.reloading = true;
+        try {
+            runScriptFromFile(this.contexts.current(), this, this.mainScript);
+            for (Map.Entry<ScriptTransform, Function> entry : this.replacedCallbacks.entrySet()) {
+                entry.getKey().setCallback(entry.getValue());
+            }
+            log.info("Reloaded the script: {}", this.mainScript);
+        } catch (IOException ex) {
+            this.modules = previousModules;
+            throw ex;
+        } catch (RuntimeException ex) {
+            this.modules = previousModules;
+            throw ex;
+        } finally {
+            this.reloading = false;
+            this.replacedCallbacks.clear();
+            this.snapshotWatchedFiles();
+        }
+    }
+
+    /**
+     * Starts checking the main script and required modules for changes, reloading the script
+     * whenever any of them changes.
+     *
+     * @param interval between checks in milliseconds.
+     */
+    public synchronized void watch(long interval) {
+        if (this.watcher != null) {
+            return;
+        }
+
+        this.watcher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "mojave-script-watcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.watcher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                if (hasWatchedFilesChanged()) {
+                    try {
+                        reload();
+                    } catch (Exception ex) {
+                        log.error("Unable to reload the script: " + mainScript, ex);
+                    }
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops checking scripts for changes.
+     */
+    public synchronized void unwatch() {
+        if (this.watcher != null) {
+            this.watcher.shutdownNow();
+            this.watcher = null;
+        }
+    }
+
+    /**
+     * Determines whether the main script is being reloaded.
+     */
+    public boolean isReloading() {
+        return this.reloading;
+    }
+
+    /**
+     * Registers a pipeline created by the main script.
+     */
+    void addPipeline(Mojave pipeline) {
+        synchronized (this.pipelines) {
+            this.pipelines.add(pipeline);
+        }
+    }
+
+    /**
+     * Gets the pipeline created by the previous run of the main script in the same order,
+     * or null if the script creates more pipelines than before.
+     */
+    Mojave nextReloadedPipeline() {
+        synchronized (this.pipelines) {
+            if (this.reloadedPipelines < this.pipelines.size()) {
+                return this.pipelines.get(this.reloadedPipelines++);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Adds a script, other than the main one and modules, to check for changes.
+     */
+    void addWatchedScript(File script) {
+        this.watchedScripts.add(script.getAbsolutePath());
+    }
+
+    /**
+     * Replaces the transform's callback once the script being reloaded has run.
+     */
+    void replaceCallback(ScriptTransform transform, Function callback) {
+        this.replacedCallbacks.put(transform, callback);
+    }
+
+    private synchronized boolean hasWatchedFilesChanged() {
+        for (Map.Entry<String, Long> entry : this.watchedFiles.entrySet()) {
+            if (new File(entry.getKey()).lastModified() != entry.getValue()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void snapshotWatchedFiles() {
+        this.watchedFiles.clear();
+        List<String> paths = new ArrayList<String>(this.modules.keySet());
+        paths.addAll(this.watchedScripts);
+        paths.add(this.mainScript.getAbsolutePath());
+        for (String path : paths) {
+            this.watchedFiles.put(path, new File(path).lastModified());
+        }
     }
 
     /**
@@ -161,6 +449,8 @@ public class Global extends ImporterTopLevel {
 
         STDERR("stderr"),
 
+        METRICS("metrics"),
+
         DIRECTORY_NAME("__dirname"),
 
         FILE_NAME("__filename");
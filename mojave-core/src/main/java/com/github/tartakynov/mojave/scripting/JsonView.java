@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import com.github.tartakynov.mojave.codec.Json;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JavaScript object backed by the text of a JSON object. Members are decoded when they are first
+ * read, so reading a field or two of a large message doesn't build the whole object. Nested
+ * objects are views over the same text, arrays are decoded into arrays of such values.
+ * <p/>
+ * Members may be assigned and deleted as in any object. A view that hasn't been changed, nor have
+ * the views nested in it, is serialized by toJson as its original text.
+ */
+@SuppressWarnings("serial")
+class JsonView extends ScriptableObject {
+    private final String text;
+    private final int start;
+    private Set<String> missing;
+    private Map<NativeArray, Object[]> arrays;
+    private boolean materialized;
+    private boolean modified;
+
+    JsonView(Scriptable scope, String text, int start) {
+        this.text = text;
+        this.start = start;
+        this.setParentScope(scope);
+        this.setPrototype(getObjectPrototype(scope));
+    }
+
+    /**
+     * Decodes the JSON value starting at a position.
+     */
+    static Object read(Scriptable scope, String text, int pos) {
+        if (pos >= text.length()) {
+            throw new IllegalArgumentException("Invalid JSON at position " + pos);
+        }
+        char c = text.charAt(pos);
+        if (c == '{') {
+            return new JsonView(scope, text, pos);
+        }
+        if (c == '[') {
+            int[] items = Json.items(text, pos);
+            Object[] values = new Object[items.length];
+            for (int i = 0; i < items.length; i++) {
+                values[i] = read(scope, text, items[i]);
+            }
+            return Context.getCurrentContext().newArray(scope, values);
+        }
+        return Json.read(text, pos, Json.COLLECTIONS);
+    }
+
+    /**
+     * Gets the original text of the object, or null if it or a value decoded from it has been
+     * changed.
+     */
+    String getSource() {
+        if (this.modified) {
+            return null;
+        }
+        for (Object id : super.getIds()) {
+            Object value = id instanceof String ? super.get((String) id, this) : super.get((Integer) id, this);
+            if (!this.isUnchanged(value)) {
+                return null;
+            }
+        }
+        return this.text.substring(this.start, Json.skip(this.text, this.start));
+    }
+
+    @Override
+    public String getClassName() {
+        return "Object";
+    }
+
+    @Override
+    public Object get(String name, Scriptable start) {
+        Object value = super.get(name, start);
+        if (value != NOT_FOUND || this.materialized || (this.missing != null && this.missing.contains(name))) {
+            return value;
+        }
+
+        int pos = Json.find(this.text, this.start, name);
+        if (pos < 0) {
+            if (this.missing == null) {
+                this.missing = new HashSet<String>();
+            }
+            this.missing.add(name);
+            return NOT_FOUND;
+        }
+        value = read(this.getParentScope(), this.text, pos);
+        if (value instanceof NativeArray) {
+            this.snapshot((NativeArray) value);
+        }
+        super.put(name, this, value);
+        return value;
+    }
+
+    @Override
+    public boolean has(String name, Scriptable start) {
+        return this.get(name, start) != NOT_FOUND;
+    }
+
+    @Override
+    public void put(String name, Scriptable start, Object value) {
+        this.materialize();
+        this.modified = true;
+        super.put(name, start, value);
+    }
+
+    @Override
+    public void delete(String name) {
+        this.materialize();
+        this.modified = true;
+        super.delete(name);
+    }
+
+    @Override
+    public void put(int index, Scriptable start, Object value) {
+        this.materialize();
+        this.modified = true;
+        super.put(index, start, value);
+    }
+
+    @Override
+    public void delete(int index) {
+        this.materialize();
+        this.modified = true;
+        super.delete(index);
+    }
+
+    @Override
+    public Object[] getIds() {
+        this.materialize();
+        return super.getIds();
+    }
+
+    /**
+     * Remembers the items of a decoded array, arrays can't tell whether they've been changed.
+     */
+    private void snapshot(NativeArray array) {
+        if (this.arrays == null) {
+            this.arrays = new IdentityHashMap<NativeArray, Object[]>();
+        }
+        Object[] items = new Object[(int) array.getLength()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = array.get(i, array);
+            if (items[i] instanceof NativeArray) {
+                this.snapshot((NativeArray) items[i]);
+            }
+        }
+        this.arrays.put(array, items);
+    }
+
+    private boolean isUnchanged(Object value) {
+        if (value instanceof JsonView) {
+            return ((JsonView) value).getSource() != null;
+        }
+        if (value instanceof NativeArray) {
+            NativeArray array = (NativeArray) value;
+            Object[] items = this.arrays != null ? this.arrays.get(array) : null;
+            if (items == null || array.getLength() != items.length) {
+                return false;
+            }
+            for (int i = 0; i < items.length; i++) {
+                Object item = array.get(i, array);
+                if (item != items[i] || !this.isUnchanged(item)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes all members not read yet, so the object no longer depends on its text.
+     */
+    private void materialize() {
+        if (this.materialized) {
+            return;
+        }
+        List<String> names = Json.names(this.text, this.start);
+        for (String name : names) {
+            this.get(name, this);
+        }
+        this.materialized = true;
+    }
+}
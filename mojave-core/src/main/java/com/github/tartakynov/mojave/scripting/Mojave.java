@@ -18,17 +18,62 @@
  */
 package com.github.tartakynov.mojave.scripting;
 
+import com.github.tartakynov.mojave.Bootstrap;
+import com.github.tartakynov.mojave.Component;
+import com.github.tartakynov.mojave.ComponentsFactory;
 import com.github.tartakynov.mojave.Configuration;
+import com.github.tartakynov.mojave.RateLimiter;
+import com.github.tartakynov.mojave.Sink;
+import com.github.tartakynov.mojave.Source;
+import com.github.tartakynov.mojave.aggregation.Aggregate;
+import com.github.tartakynov.mojave.aggregation.ValueExtractor;
+import com.github.tartakynov.mojave.aggregation.WindowAggregator;
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import com.github.tartakynov.mojave.metrics.MetricsRegistry;
+import com.github.tartakynov.mojave.pipeline.ExecutionMode;
+import com.github.tartakynov.mojave.pipeline.KeyExtractor;
+import com.github.tartakynov.mojave.pipeline.Pipeline;
 import org.mozilla.javascript.*;
 import org.mozilla.javascript.annotations.JSConstructor;
+import org.mozilla.javascript.annotations.JSFunction;
 import org.mozilla.javascript.annotations.JSGetter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- *
+ * JavaScript object describing a pipeline: its sources, sinks and buffer settings.
+ * <p/>
+ * A sink with partitions is created that many times, and every message goes to one of the
+ * copies by its key, e.g. <code>{ "class": "...", "partitions": 4, "key": function (m) { ... } }</code>.
+ * <p/>
+ * Windows aggregate messages of the sources started with them, e.g.
+ * <code>windows: { clicks: { size: 60000, slide: 10000, aggregates: ["count", "avg"], key: ..., value: ... } }</code>
+ * and <code>mojave.sources.s.start(mojave.windows.clicks)</code>.
+ * <p/>
+ * Sinks and sources are configured concurrently, each after the components listed by its dependsOn,
+ * and the time each took is given by <code>mojave.initTimes</code>.
  */
 public class Mojave extends ScriptableObject {
+    private static final Logger log = LoggerFactory.getLogger(Mojave.class);
+    private final Map<String, Source> sources = new LinkedHashMap<String, Source>();
+    private final Map<String, SourceRunner> runners = new LinkedHashMap<String, SourceRunner>();
+    private final Map<String, WindowAggregator> windows = new LinkedHashMap<String, WindowAggregator>();
+    private final Map<String, List<String>> sinkNames = new LinkedHashMap<String, List<String>>();
+    private Map<String, Long> initTimes = Collections.emptyMap();
+    private Pipeline pipeline;
+    private NativeObject configJsObj;
+
     /**
      * The zero-argument constructor used by Rhino runtime to create instances.
      */
@@ -36,14 +81,230 @@ public class Mojave extends ScriptableObject {
     }
 
     /**
-     * The JavaScript constructor.
+     * Creates components and the pipeline described by the configuration.
+     *
+     * @param configJsObj configuration.
+     */
+    public Mojave(NativeObject configJsObj) throws ConfigurationException {
+        this(configJsObj, new MetricsRegistry());
+    }
+
+    /**
+     * Creates components and the pipeline described by the configuration.
      *
      * @param configJsObj configuration.
+     * @param metrics     to record metrics of the pipeline in.
+     */
+    public Mojave(NativeObject configJsObj, MetricsRegistry metrics) throws ConfigurationException {
+        Configuration config = new Configuration(new ScriptableTree(configJsObj));
+        this.configJsObj = configJsObj;
+        ComponentsFactory factory = new ComponentsFactory();
+        Configuration pipeline = config.getSection("pipeline");
+        this.pipeline = new Pipeline(pipeline, metrics);
+
+        Map<String, List<Configuration>> sections = new LinkedHashMap<String, List<Configuration>>();
+        for (String kind : new String[]{"sinks", "sources"}) {
+            Configuration group = config.getSection(kind);
+            for (String name : group.getSectionNames()) {
+                Configuration section = group.getSection(name);
+                sections.put(kind + "." + name, kind.equals("sinks") && section.contains("partitions")
+                        ? this.getPartitions(section) : Collections.singletonList(section));
+            }
+        }
+        Map<String, Component> components = this.bootstrap(factory, pipeline, sections);
+
+        Configuration sinks = config.getSection("sinks");
+        for (String name : sinks.getSectionNames()) {
+            Configuration section = sinks.getSection(name);
+            List<String> names = new ArrayList<String>();
+            for (Configuration partition : sections.get("sinks." + name)) {
+                names.add(partition.getSectionName());
+            }
+            this.sinkNames.put(name, names);
+            if (section.contains("partitions")) {
+                List<Sink> partitions = new ArrayList<Sink>();
+                for (Configuration partition : sections.get("sinks." + name)) {
+                    partitions.add((Sink) components.get("sinks." + partition.getSectionName()));
+                }
+                this.addPartitionedSink(factory, section, partitions);
+            } else {
+                this.pipeline.addSink((Sink) components.get("sinks." + name), section);
+            }
+        }
+
+        Configuration windows = config.getSection("windows");
+        for (String name : windows.getSectionNames()) {
+            this.windows.put(name, this.createWindow(factory, windows.getSection(name)));
+        }
+
+        for (String name : config.getSection("sources").getSectionNames()) {
+            this.sources.put(name, (Source) components.get("sources." + name));
+        }
+    }
+
+    /**
+     * Creates and configures sinks and sources concurrently on bootstrapThreads threads of the
+     * pipeline section, twice the number of processors by default. A component is configured after
+     * the components listed by its dependsOn, e.g. <code>dependsOn: ["sinks.archive"]</code>;
+     * depending on a partitioned sink means depending on all its partitions.
+     *
+     * @param sections of the components, the partitions of a sink under the sink's id.
+     * @return configured components by ids, "sinks." or "sources." followed by their names.
+     */
+    private Map<String, Component> bootstrap(ComponentsFactory factory, Configuration pipeline,
+                                             Map<String, List<Configuration>> sections) throws ConfigurationException {
+        Map<String, List<String>> ids = new LinkedHashMap<String, List<String>>();
+        for (Map.Entry<String, List<Configuration>> entry : sections.entrySet()) {
+            String kind = entry.getKey().substring(0, entry.getKey().indexOf('.') + 1);
+            List<String> components = new ArrayList<String>();
+            for (Configuration section : entry.getValue()) {
+                components.add(kind + section.getSectionName());
+            }
+            ids.put(entry.getKey(), components);
+        }
+
+        int threads = pipeline.getInt32("bootstrapThreads", 2 * Runtime.getRuntime().availableProcessors());
+        if (threads <= 0) {
+            throw new ConfigurationException("The number of bootstrap threads must be positive.");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                ExecutionMode.parse(pipeline.get("executionMode")).newThreadFactory("mojave-bootstrap-"));
+        Bootstrap bootstrap = new Bootstrap(factory, executor);
+        for (Map.Entry<String, List<Configuration>> entry : sections.entrySet()) {
+            List<String> components = ids.get(entry.getKey());
+            for (int i = 0; i < components.size(); i++) {
+                Configuration section = entry.getValue().get(i);
+                List<String> dependencies = new ArrayList<String>();
+                for (String dependency : section.getArray("dependsOn")) {
+                    dependencies.addAll(ids.containsKey(dependency) ? ids.get(dependency)
+                            : Collections.singletonList(dependency));
+                }
+                if (entry.getKey().startsWith("sinks.")) {
+                    bootstrap.addSink(components.get(i), section, dependencies);
+                } else {
+                    bootstrap.addSource(components.get(i), section, dependencies);
+                }
+            }
+        }
+        try {
+            return bootstrap.run();
+        } finally {
+            executor.shutdown();
+            this.initTimes = bootstrap.getTimings();
+        }
+    }
+
+    /**
+     * Gets the sections of the partitions of a sink, named after the sink's section with the
+     * partition number appended.
+     */
+    private List<Configuration> getPartitions(Configuration section) throws ConfigurationException {
+        String name = section.getSectionName();
+        int count = section.getInt32("partitions", 0);
+        if (count <= 0) {
+            throw new ConfigurationException("The number of partitions must be positive: " + name);
+        }
+        List<Configuration> partitions = new ArrayList<Configuration>(count);
+        for (int i = 0; i < count; i++) {
+            partitions.add(section.rename(name + "-" + i));
+        }
+        return partitions;
+    }
+
+    /**
+     * Adds the sinks created for the partitions of a section, and routes messages to them by the
+     * key given by the section's key function or keyExtractor class. Without either the whole
+     * message is the key.
+     */
+    private void addPartitionedSink(ComponentsFactory factory, Configuration section, List<Sink> partitions)
+            throws ConfigurationException {
+        String name = section.getSectionName();
+        KeyExtractor extractor = this.getScriptExtractor("sinks", name, "key");
+        if (extractor == null) {
+            String className = section.get("keyExtractor");
+            extractor = className != null ? factory.createKeyExtractor(className) : KeyExtractor.MESSAGE;
+        }
+        this.pipeline.addSink(partitions, extractor, section);
+    }
+
+    /**
+     * Creates a window aggregator described by a section of windows. Keys, values and distinct
+     * values are given by the key, value and distinct functions of the section, or by the
+     * keyExtractor, valueExtractor and distinctExtractor classes.
+     */
+    private WindowAggregator createWindow(ComponentsFactory factory, Configuration section) throws ConfigurationException {
+        String name = section.getSectionName();
+        long size = section.getInt64("size", 0);
+        long slide = section.getInt64("slide", size);
+        List<Aggregate> aggregates = new ArrayList<Aggregate>();
+        for (String aggregate : section.getArray("aggregates")) {
+            aggregates.add(Aggregate.parse(aggregate));
+        }
+
+        KeyExtractor key = this.getScriptExtractor("windows", name, "key");
+        if (key == null && section.get("keyExtractor") != null) {
+            key = factory.createKeyExtractor(section.get("keyExtractor"));
+        }
+        ValueExtractor value = this.getScriptExtractor("windows", name, "value");
+        if (value == null && section.get("valueExtractor") != null) {
+            value = factory.createValueExtractor(section.get("valueExtractor"));
+        }
+        KeyExtractor distinct = this.getScriptExtractor("windows", name, "distinct");
+        if (distinct == null && section.get("distinctExtractor") != null) {
+            distinct = factory.createKeyExtractor(section.get("distinctExtractor"));
+        }
+        int precision = section.getInt32("precision", WindowAggregator.DEFAULT_PRECISION);
+        return new WindowAggregator(name, size, slide, aggregates, key, value, distinct, precision);
+    }
+
+    /**
+     * Gets an extractor calling the JavaScript function set to a property of a component's section.
+     *
+     * @return the extractor, or null if the property isn't a function.
+     */
+    private ScriptExtractor getScriptExtractor(String components, String name, String property) {
+        Object value = this.configJsObj.get(components, this.configJsObj);
+        value = value instanceof NativeObject ? ((NativeObject) value).get(name, (NativeObject) value) : null;
+        value = value instanceof NativeObject ? ((NativeObject) value).get(property, (NativeObject) value) : null;
+        if (!(value instanceof Function)) {
+            return null;
+        }
+        Scriptable scope = getTopLevelScope((Function) value);
+        return new ScriptExtractor(scope, (Function) value, this.getContextPool(scope));
+    }
+
+    /**
+     * The JavaScript constructor. While the global object is reloading its script, returns the
+     * pipeline created by the same statement of the previous run, so running sources keep going.
      */
     @JSConstructor
-    public Mojave(NativeObject configJsObj) {
-        Map<String, String> map = Global.convertJsObjectToMap(configJsObj);
-        Configuration config = new Configuration(map);
+    public static Scriptable jsConstructor(Context cx, Object[] args, Function ctorObj, boolean inNewExpr)
+            throws ConfigurationException {
+        if (args.length == 0 || !(args[0] instanceof NativeObject)) {
+            throw ScriptRuntime.typeError("Mojave expects a configuration object");
+        }
+
+        Scriptable scope = getTopLevelScope(ctorObj);
+        Global global = scope instanceof Global ? (Global) scope : null;
+        if (global != null && global.isReloading()) {
+            Mojave existing = global.nextReloadedPipeline();
+            if (existing != null) {
+                Map<String, String> previous = Global.convertJsObjectToMap(existing.configJsObj);
+                if (!previous.equals(Global.convertJsObjectToMap((NativeObject) args[0]))) {
+                    log.warn("Pipeline configuration has changed, the changes take effect after restart");
+                }
+                return existing;
+            }
+        }
+
+        Mojave mojave = global != null ? new Mojave((NativeObject) args[0], global.getMetrics())
+                : new Mojave((NativeObject) args[0]);
+        mojave.setParentScope(scope);
+        mojave.setPrototype(getClassPrototype(scope, mojave.getClassName()));
+        if (global != null) {
+            global.addPipeline(mojave);
+        }
+        return mojave;
     }
 
     @Override
@@ -56,13 +317,139 @@ public class Mojave extends ScriptableObject {
      *
      * @return a javascript object with the map of sources.
      */
-    // The method getCount defines the count property.
     @JSGetter
     public Object getSources() {
-        final Scriptable scope = this.getParentScope();
-        return new NativeObject() {{
-            defineProperty("a", new SourceRunner(scope, null), READONLY);
-            defineProperty("b", 2, READONLY);
-        }};
+        final Scriptable scope = ScriptableObject.getTopLevelScope(this);
+        ScriptableObject result = (ScriptableObject) Context.getCurrentContext().newObject(scope);
+        for (Map.Entry<String, Source> entry : this.sources.entrySet()) {
+            SourceRunner runner = this.runners.get(entry.getKey());
+            if (runner == null) {
+                runner = new SourceRunner(scope, entry.getValue(), this.pipeline, this.getContextPool(scope));
+                this.runners.put(entry.getKey(), runner);
+            }
+            result.defineProperty(entry.getKey(), Context.javaToJS(runner, scope), READONLY);
+        }
+        return result;
+    }
+
+    /**
+     * This method defines 'initTimes' property.
+     *
+     * @return a javascript object with the milliseconds each sink and source took to configure, by
+     * their ids, e.g. "sources.clicks".
+     */
+    @JSGetter
+    public Object getInitTimes() {
+        Scriptable scope = ScriptableObject.getTopLevelScope(this);
+        ScriptableObject result = (ScriptableObject) Context.getCurrentContext().newObject(scope);
+        for (Map.Entry<String, Long> entry : this.initTimes.entrySet()) {
+            result.defineProperty(entry.getKey(), entry.getValue().doubleValue(), READONLY);
+        }
+        return result;
+    }
+
+    /**
+     * This method defines 'windows' property.
+     *
+     * @return a javascript object with the map of window aggregators to start sources with.
+     */
+    @JSGetter
+    public Object getWindows() {
+        Scriptable scope = ScriptableObject.getTopLevelScope(this);
+        ScriptableObject result = (ScriptableObject) Context.getCurrentContext().newObject(scope);
+        for (Map.Entry<String, WindowAggregator> entry : this.windows.entrySet()) {
+            result.defineProperty(entry.getKey(), Context.javaToJS(entry.getValue(), scope), READONLY);
+        }
+        return result;
+    }
+
+    /**
+     * Declares a transform stage to start sources with. The configuration gives the stage script,
+     * relative to the main script's directory, the number of workers, all processors by default,
+     * and whether the stage keeps the order of the source, true by default.
+     *
+     * @param config stage configuration.
+     * @return the stage.
+     */
+    @JSFunction
+    public Object stage(Object config) throws ConfigurationException {
+        if (!(config instanceof NativeObject)) {
+            throw ScriptRuntime.typeError("stage expects a configuration object");
+        }
+
+        Configuration section = new Configuration(new ScriptableTree((NativeObject) config));
+        String script = section.get("script");
+        if (script == null) {
+            throw new ConfigurationException("The stage script is not provided.");
+        }
+        int workers = section.getInt32("workers", Runtime.getRuntime().availableProcessors());
+        if (workers <= 0) {
+            throw new ConfigurationException("The number of stage workers must be positive.");
+        }
+
+        Scriptable scope = getTopLevelScope(this);
+        File file = new File(script);
+        Object directory = getProperty(scope, Global.Properties.DIRECTORY_NAME.toString());
+        if (!file.isAbsolute() && directory instanceof String) {
+            file = new File((String) directory, script);
+        }
+        ScriptStage stage = new ScriptStage(file, workers, section.getBoolean("ordered", true));
+        return Context.javaToJS(stage, scope);
+    }
+
+    private ContextPool getContextPool(Scriptable scope) {
+        if (scope instanceof Global) {
+            return ((Global) scope).getContextPool();
+        }
+        return new ContextPool(Context.getCurrentContext());
+    }
+
+    /**
+     * Changes the rate limits of a sink or source while the pipeline runs, e.g.
+     * <code>mojave.limit("sources.clicks", {messageRate: 1000, byteRate: 1e6})</code>. Limits that
+     * aren't given are kept and a rate of 0 removes the limit, see {@see RateLimiter}. Every
+     * partition of a partitioned sink gets the whole rate.
+     *
+     * @param id     of the sink or source, "sinks." or "sources." followed by its name.
+     * @param config limits to set.
+     */
+    @JSFunction
+    public void limit(String id, Object config) throws ConfigurationException {
+        if (!(config instanceof NativeObject)) {
+            throw ScriptRuntime.typeError("limit expects a configuration object");
+        }
+
+        List<RateLimiter> limiters = new ArrayList<RateLimiter>();
+        if (id.startsWith("sources.") && this.sources.containsKey(id.substring(8))) {
+            limiters.add(this.sources.get(id.substring(8)).getRateLimiter());
+        } else if (id.startsWith("sinks.") && this.sinkNames.containsKey(id.substring(6))) {
+            for (String name : this.sinkNames.get(id.substring(6))) {
+                limiters.add(this.pipeline.getRateLimiter(name));
+            }
+        } else {
+            throw new ConfigurationException("Unknown component: " + id);
+        }
+        Configuration section = new Configuration(new ScriptableTree((NativeObject) config));
+        for (RateLimiter limiter : limiters) {
+            limiter.update(section);
+        }
+    }
+
+    /**
+     * Stops all sources and waits for sinks to drain their buffers, then closes the sources holding
+     * resources, e.g. listening sockets.
+     */
+    @JSFunction
+    public void stop() throws InterruptedException {
+        this.pipeline.stop();
+        for (Source source : this.sources.values()) {
+            if (source instanceof Closeable) {
+                try {
+                    ((Closeable) source).close();
+                } catch (IOException ex) {
+                    log.error("Unable to close the source", ex);
+                }
+            }
+        }
     }
 }
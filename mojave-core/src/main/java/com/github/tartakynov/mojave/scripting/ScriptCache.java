@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.GeneratedClassLoader;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.optimizer.ClassCompiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe cache of compiled scripts keyed by canonical path and modification time.
+ * <p/>
+ * When a directory is set, scripts compiled to Java classes (optimization level 0 and above) are
+ * also stored there, so other processes and later runs load the class bytes instead of compiling.
+ * Classes compiled from older versions of a script are deleted when its new version is stored.
+ */
+public class ScriptCache {
+    private static final Logger log = LoggerFactory.getLogger(ScriptCache.class);
+    private static final String CLASS_PREFIX = "mojave.scripts.Script_";
+    private final ConcurrentMap<String, Entry> scripts = new ConcurrentHashMap<String, Entry>();
+    private volatile File directory;
+
+    /**
+     * Sets the directory for compiled class bytes.
+     *
+     * @param directory to store classes in, or null to keep compiled scripts in memory only.
+     */
+    public void setDirectory(File directory) {
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Unable to create the directory: " + directory);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the compiled script for the file, compiling it if the file is new or has changed.
+     *
+     * @param cx   context to compile in.
+     * @param file script file.
+     * @return the compiled script.
+     */
+    public Script get(Context cx, File file) throws IOException {
+        File canonical = file.getCanonicalFile();
+        String path = canonical.getPath();
+        long lastModified = canonical.lastModified();
+        String key = path + "|" + cx.getOptimizationLevel() + "|" + cx.getLanguageVersion();
+        Entry entry = this.scripts.get(key);
+        if (entry == null || entry.lastModified != lastModified) {
+            entry = new Entry(lastModified, this.compile(cx, canonical, key, lastModified));
+            this.scripts.put(key, entry);
+        }
+        return entry.script;
+    }
+
+    /**
+     * Drops all compiled scripts kept in memory.
+     */
+    public void clear() {
+        this.scripts.clear();
+    }
+
+    private Script compile(Context cx, File file, String key, long lastModified) throws IOException {
+        File directory = this.directory;
+        if (directory == null || cx.getOptimizationLevel() < 0) {
+            log.debug("Compiling the script: {}", file);
+            return cx.compileString(readSource(file), file.getName(), 1, null);
+        }
+
+        String prefix = CLASS_PREFIX + digest(key) + "_";
+        String className = prefix + lastModified;
+        File classes = new File(directory, className + ".bin");
+        Object[] compiled = null;
+        if (classes.isFile()) {
+            try {
+                compiled = readClasses(classes);
+            } catch (IOException ex) {
+                log.warn("Unable to read compiled classes: " + classes, ex);
+            }
+        }
+        if (compiled == null) {
+            log.debug("Compiling the script to classes: {}", file);
+            CompilerEnvirons env = new CompilerEnvirons();
+            env.initFromContext(cx);
+            compiled = new ClassCompiler(env).compileToClassFiles(readSource(file), file.getName(), 1, className);
+            try {
+                writeClasses(classes, compiled);
+            } catch (IOException ex) {
+                log.warn("Unable to write compiled classes: " + classes, ex);
+            }
+            deleteClasses(directory, prefix, classes);
+        }
+        return loadScript(cx, compiled, className);
+    }
+
+    private static Script loadScript(Context cx, Object[] compiled, String className) {
+        GeneratedClassLoader loader = cx.createClassLoader(cx.getApplicationClassLoader());
+        Class<?> main = null;
+        for (int i = 0; i < compiled.length; i += 2) {
+            Class<?> type = loader.defineClass((String) compiled[i], (byte[]) compiled[i + 1]);
+            if (className.equals(compiled[i])) {
+                main = type;
+            }
+        }
+        if (main == null) {
+            throw new IllegalStateException("The compiled script has no main class: " + className);
+        }
+        loader.linkClass(main);
+        try {
+            return (Script) main.getDeclaredConstructor().newInstance();
+        } catch (Exception ex) {
+            throw new IllegalStateException("Unable to instantiate the compiled script: " + className, ex);
+        }
+    }
+
+    private static Object[] readClasses(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            Object[] compiled = new Object[in.readInt() * 2];
+            for (int i = 0; i < compiled.length; i += 2) {
+                compiled[i] = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                compiled[i + 1] = bytes;
+            }
+            return compiled;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeClasses(File file, Object[] compiled) throws IOException {
+        // write to a temporary file first, so concurrent readers never see a partial file
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(compiled.length / 2);
+            for (int i = 0; i < compiled.length; i += 2) {
+                byte[] bytes = (byte[]) compiled[i + 1];
+                out.writeUTF((String) compiled[i]);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Deletes the classes compiled from other versions of a script.
+     */
+    private static void deleteClasses(File directory, final String prefix, File current) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix) && name.endsWith(".bin");
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.equals(current) && !file.delete()) {
+                log.warn("Unable to delete outdated compiled classes: {}", file);
+            }
+        }
+    }
+
+    private static String readSource(File file) throws IOException {
+        Reader in = new FileReader(file);
+        try {
+            StringBuilder source = new StringBuilder((int) file.length());
+            char[] buffer = new char[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                source.append(buffer, 0, n);
+            }
+            return source.toString();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String digest(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            StringBuilder result = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static final class Entry {
+        private final long lastModified;
+        private final Script script;
+
+        private Entry(long lastModified, Script script) {
+            this.lastModified = lastModified;
+            this.script = script;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import com.github.tartakynov.mojave.codec.Csv;
+import com.github.tartakynov.mojave.codec.Json;
+import org.mozilla.javascript.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts between JavaScript values and JSON or delimited text with the codecs of
+ * {@see com.github.tartakynov.mojave.codec}, for the functions of {@see Global}.
+ */
+final class ScriptCodecs {
+    private static final char DEFAULT_DELIMITER = ',';
+
+    private ScriptCodecs() {
+    }
+
+    /**
+     * Gets a lazy view of a JSON document, see {@see JsonView}.
+     */
+    static Object json(Scriptable scope, Object text) {
+        String value = toText(text);
+        return JsonView.read(scope, value, Json.skipWhitespace(value, 0));
+    }
+
+    /**
+     * Parses a whole JSON document into JavaScript objects and arrays.
+     */
+    static Object parseJson(final Scriptable scope, Object text) {
+        return Json.parse(toText(text), new Json.Handler() {
+            @Override
+            public Object createObject() {
+                NativeObject object = new NativeObject();
+                ScriptRuntime.setBuiltinProtoAndParent(object, scope, TopLevel.Builtins.Object);
+                return object;
+            }
+
+            @Override
+            public void setMember(Object object, String name, Object value) {
+                NativeObject target = (NativeObject) object;
+                target.put(name, target, value);
+            }
+
+            @Override
+            public Object createArray(List<Object> items) {
+                NativeArray array = new NativeArray(items.toArray());
+                ScriptRuntime.setBuiltinProtoAndParent(array, scope, TopLevel.Builtins.Array);
+                return array;
+            }
+        });
+    }
+
+    /**
+     * Serializes a JavaScript value as JSON. Unchanged views are written as their original text,
+     * functions and undefined members are left out.
+     */
+    static String toJson(Object value) {
+        StringBuilder out = new StringBuilder();
+        writeJson(value, out);
+        return out.toString();
+    }
+
+    /**
+     * Splits a delimited line into an array of fields.
+     */
+    static Object csv(Context cx, Scriptable scope, Object line, Object delimiter) {
+        List<String> fields = Csv.parse(toText(line), toDelimiter(delimiter));
+        return cx.newArray(scope, fields.toArray());
+    }
+
+    /**
+     * Reads a single field of a delimited line.
+     *
+     * @return the field, or undefined if the index is negative or the line has fewer fields.
+     */
+    static Object csvField(Object line, Object index, Object delimiter) {
+        String field = Csv.field(toText(line), (int) Context.toNumber(index), toDelimiter(delimiter));
+        return field != null ? field : Context.getUndefinedValue();
+    }
+
+    /**
+     * Joins an array of fields into a delimited line.
+     */
+    static String toCsv(Object fields, Object delimiter) {
+        List<Object> values = new ArrayList<Object>();
+        if (fields instanceof NativeArray) {
+            NativeArray array = (NativeArray) fields;
+            for (int i = 0; i < array.getLength(); i++) {
+                Object field = array.get(i, array);
+                values.add(field == null || field instanceof Undefined ? null : Context.toString(field));
+            }
+        }
+        StringBuilder out = new StringBuilder();
+        Csv.write(values, toDelimiter(delimiter), out);
+        return out.toString();
+    }
+
+    private static void writeJson(Object value, StringBuilder out) {
+        if (value instanceof Wrapper) {
+            value = ((Wrapper) value).unwrap();
+        }
+        if (value == null || value instanceof Undefined) {
+            out.append("null");
+        } else if (value instanceof CharSequence) {
+            Json.quote((CharSequence) value, out);
+        } else if (value instanceof Number) {
+            Json.writeNumber(((Number) value).doubleValue(), out);
+        } else if (value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof JsonView && ((JsonView) value).getSource() != null) {
+            out.append(((JsonView) value).getSource());
+        } else if (value instanceof NativeArray) {
+            NativeArray array = (NativeArray) value;
+            out.append('[');
+            for (int i = 0; i < array.getLength(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                Object item = array.get(i, array);
+                writeJson(item instanceof Function ? null : item, out);
+            }
+            out.append(']');
+        } else if (value instanceof Scriptable) {
+            Scriptable object = (Scriptable) value;
+            out.append('{');
+            boolean first = true;
+            for (Object id : object.getIds()) {
+                Object member = id instanceof Integer ? object.get((Integer) id, object) : object.get(id.toString(), object);
+                if (member instanceof Function || member instanceof Undefined || member == Scriptable.NOT_FOUND) {
+                    continue;
+                }
+                if (!first) {
+                    out.append(',');
+                }
+                Json.quote(id.toString(), out);
+                out.append(':');
+                writeJson(member, out);
+                first = false;
+            }
+            out.append('}');
+        } else {
+            Json.write(value, out);
+        }
+    }
+
+    private static String toText(Object text) {
+        if (text instanceof Wrapper) {
+            text = ((Wrapper) text).unwrap();
+        }
+        return text instanceof CharSequence ? text.toString() : Context.toString(text);
+    }
+
+    private static char toDelimiter(Object delimiter) {
+        if (delimiter == null || delimiter instanceof Undefined) {
+            return DEFAULT_DELIMITER;
+        }
+        String value = Context.toString(delimiter);
+        return value.length() > 0 ? value.charAt(0) : DEFAULT_DELIMITER;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import com.github.tartakynov.mojave.Message;
+import com.github.tartakynov.mojave.aggregation.ValueExtractor;
+import com.github.tartakynov.mojave.pipeline.KeyExtractor;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.Undefined;
+import org.mozilla.javascript.Wrapper;
+
+/**
+ * Extracts keys or values of messages with a JavaScript function. The function receives a message,
+ * passed the same way as to {@see ScriptTransform} callbacks, and returns its key or value.
+ * <p/>
+ * Keys are converted to strings, so equal keys of any JavaScript type hash equally, and values to
+ * numbers.
+ */
+class ScriptExtractor implements KeyExtractor, ValueExtractor {
+    private final Scriptable scope;
+    private final Function function;
+    private final ContextPool contexts;
+
+    ScriptExtractor(Scriptable scope, Function function, ContextPool contexts) {
+        this.scope = scope;
+        this.function = function;
+        this.contexts = contexts;
+    }
+
+    @Override
+    public Object getKey(CharSequence message) {
+        Object key = this.call(message);
+        if (key == null || key instanceof Undefined) {
+            return null;
+        }
+        if (key instanceof Wrapper) {
+            key = ((Wrapper) key).unwrap();
+        }
+        return Context.toString(key);
+    }
+
+    @Override
+    public double getValue(CharSequence message) {
+        Object value = this.call(message);
+        if (value == null || value instanceof Undefined) {
+            return Double.NaN;
+        }
+        if (value instanceof Wrapper) {
+            value = ((Wrapper) value).unwrap();
+        }
+        return Context.toNumber(value);
+    }
+
+    private Object call(CharSequence message) {
+        Context ctx = this.contexts.current();
+        Object item = message instanceof Message ? ctx.getWrapFactory().wrap(ctx, this.scope, message, null) : message.toString();
+        return this.function.call(ctx, this.scope, this.scope, new Object[]{item});
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.ImporterTopLevel;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transform stage declared with mojave.stage({script: ..., workers: ..., ordered: ...}).
+ * <p/>
+ * The script is run once per worker, each time in a scope of its own like a module, and must
+ * export the callback as exports.transform. Workers share nothing but the global object and
+ * required modules, so their callbacks may keep state without locking.
+ */
+public class ScriptStage {
+    private final File script;
+    private final int workers;
+    private final boolean ordered;
+
+    public ScriptStage(File script, int workers, boolean ordered) {
+        this.script = script;
+        this.workers = workers;
+        this.ordered = ordered;
+    }
+
+    public File getScript() {
+        return this.script;
+    }
+
+    public int getWorkers() {
+        return this.workers;
+    }
+
+    /**
+     * Determines whether batches leave the stage in the order they were taken from the source.
+     */
+    public boolean isOrdered() {
+        return this.ordered;
+    }
+
+    /**
+     * Runs the script for every worker.
+     *
+     * @param cx       context to run the script in.
+     * @param global   scope the worker scopes inherit from.
+     * @param contexts contexts for calling callbacks on worker threads.
+     * @return a transform per worker.
+     */
+    List<ScriptTransform> createTransforms(Context cx, Scriptable global, ContextPool contexts)
+            throws IOException, ConfigurationException {
+        List<ScriptTransform> transforms = new ArrayList<ScriptTransform>(this.workers);
+        for (int i = 0; i < this.workers; i++) {
+            ScriptableObject scope = new ImporterTopLevel(cx);
+            scope.setPrototype(global);
+            Scriptable exports = cx.newObject(scope);
+            scope.defineProperty(Global.Properties.EXPORTS.toString(), exports,
+                    ScriptableObject.PERMANENT | ScriptableObject.DONTENUM);
+            Global.runScriptFromFile(cx, scope, this.script);
+
+            Object callback = ScriptableObject.getProperty(exports, "transform");
+            if (!(callback instanceof Function)) {
+                throw new ConfigurationException("The stage script doesn't export a transform function: " + this.script);
+            }
+            transforms.add(new ScriptTransform(scope, (Function) callback, contexts));
+        }
+        return transforms;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import com.github.tartakynov.mojave.Message;
+import com.github.tartakynov.mojave.pipeline.Transform;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.Undefined;
+import org.mozilla.javascript.Wrapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Transforms batches with a JavaScript callback. The callback receives an array of messages and
+ * returns an array of messages to send, a single message, or nothing.
+ * <p/>
+ * Messages of byte sources are passed as Java {@see Message} objects and decoded only when the
+ * callback reads them, e.g. with String(message). Returning them unchanged keeps their bytes.
+ */
+class ScriptTransform implements Transform {
+    private final Scriptable scope;
+    private final ContextPool contexts;
+    private volatile Function callback;
+
+    ScriptTransform(Scriptable scope, Function callback, ContextPool contexts) {
+        this.scope = scope;
+        this.callback = callback;
+        this.contexts = contexts;
+    }
+
+    /**
+     * Converts a value returned by a callback to a list of messages.
+     */
+    static List<CharSequence> toMessages(Object result) {
+        if (result == null || result instanceof Undefined) {
+            return null;
+        }
+        if (result instanceof List) {
+            List<?> items = (List<?>) result;
+            List<CharSequence> messages = new ArrayList<CharSequence>(items.size());
+            for (Object item : items) {
+                messages.add(toMessage(item));
+            }
+            return messages;
+        }
+        return Collections.singletonList(toMessage(result));
+    }
+
+    private static CharSequence toMessage(Object value) {
+        if (value instanceof Wrapper) {
+            value = ((Wrapper) value).unwrap();
+        }
+        return value instanceof Message ? (Message) value : Context.toString(value);
+    }
+
+    /**
+     * Gets the current callback.
+     */
+    Function getCallback() {
+        return this.callback;
+    }
+
+    /**
+     * Replaces the callback. Batches in flight finish with the previous one.
+     *
+     * @param callback new JavaScript function to call.
+     */
+    void setCallback(Function callback) {
+        this.callback = callback;
+    }
+
+    @Override
+    public List<CharSequence> apply(List<CharSequence> batch) {
+        Context ctx = this.contexts.current();
+        Object[] items = new Object[batch.size()];
+        for (int i = 0; i < items.length; i++) {
+            CharSequence message = batch.get(i);
+            items[i] = message instanceof String ? message : ctx.getWrapFactory().wrap(ctx, this.scope, message, null);
+        }
+        Scriptable messages = ctx.newArray(this.scope, items);
+        return toMessages(this.callback.call(ctx, this.scope, this.scope, new Object[]{messages}));
+    }
+}
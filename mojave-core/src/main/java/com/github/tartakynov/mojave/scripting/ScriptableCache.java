@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import com.github.tartakynov.mojave.Configuration;
+import com.github.tartakynov.mojave.cache.Eviction;
+import com.github.tartakynov.mojave.cache.Loader;
+import com.github.tartakynov.mojave.cache.LookupCache;
+import com.github.tartakynov.mojave.cache.Weigher;
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import org.mozilla.javascript.*;
+import org.mozilla.javascript.annotations.JSFunction;
+import org.mozilla.javascript.annotations.JSGetter;
+
+import java.util.Map;
+
+/**
+ * JavaScript object of a {@see LookupCache} shared by all callbacks of a global object, created by
+ * the cache(name, config) function. Loaders are JavaScript functions called with the missing key,
+ * so only misses run script code.
+ * <p/>
+ * The configuration gives maxEntries and maxWeight in bytes, eviction, either "lru" or "ttl", the
+ * ttl in milliseconds and the loader. Weights are estimated from the size of strings, numbers and
+ * the properties of objects.
+ */
+@SuppressWarnings("serial")
+public class ScriptableCache extends ScriptableObject {
+    private static final int MAX_WEIGHED_DEPTH = 8;
+    private LookupCache<Object> cache;
+
+    /**
+     * The zero-argument constructor used by Rhino runtime to create instances.
+     */
+    public ScriptableCache() {
+    }
+
+    /**
+     * Creates a cache described by the configuration.
+     *
+     * @param name     of the cache.
+     * @param config   configuration.
+     * @param contexts to call the loader in.
+     */
+    ScriptableCache(String name, NativeObject config, ContextPool contexts) throws ConfigurationException {
+        Configuration section = new Configuration(name, new ScriptableTree(config));
+        long maxEntries = section.getInt64("maxEntries", 0);
+        long maxWeight = section.getInt64("maxWeight", 0);
+        if (maxEntries == 0 && maxWeight == 0) {
+            maxEntries = LookupCache.DEFAULT_MAX_ENTRIES;
+        }
+        String eviction = section.get("eviction");
+        this.cache = new LookupCache<Object>(name, maxEntries, maxWeight,
+                eviction != null ? Eviction.parse(eviction) : Eviction.LRU, section.getInt64("ttl", 0),
+                createLoader(config, contexts), new Weigher<Object>() {
+            @Override
+            public long weigh(String key, Object value) {
+                return sizeOf(key, 0) + sizeOf(value, 0);
+            }
+        });
+    }
+
+    /**
+     * Estimates the size of a JavaScript value in bytes.
+     */
+    static long sizeOf(Object value, int depth) {
+        if (value instanceof CharSequence) {
+            return 40 + 2 * ((CharSequence) value).length();
+        }
+        if (value instanceof Wrapper) {
+            return sizeOf(((Wrapper) value).unwrap(), depth);
+        }
+        if (value instanceof Scriptable && depth < MAX_WEIGHED_DEPTH) {
+            Scriptable object = (Scriptable) value;
+            long size = 64;
+            for (Object id : object.getIds()) {
+                Object property = id instanceof Integer ? object.get((Integer) id, object) : object.get(id.toString(), object);
+                size += 16 + sizeOf(property, depth + 1);
+            }
+            return size;
+        }
+        return 16;
+    }
+
+    private static Loader<Object> createLoader(NativeObject config, final ContextPool contexts) {
+        Object loader = config.get("loader", config);
+        if (!(loader instanceof Function)) {
+            return null;
+        }
+        final Function function = (Function) loader;
+        final Scriptable scope = getTopLevelScope(function);
+        return new Loader<Object>() {
+            @Override
+            public Object load(String key) {
+                Object value = function.call(contexts.current(), scope, scope, new Object[]{key});
+                return value == null || value instanceof Undefined ? null : value;
+            }
+        };
+    }
+
+    /**
+     * Replaces the loader with the one of another configuration of the same cache, e.g. when
+     * the script declaring it is reloaded. Limits keep their current values.
+     */
+    void reconfigure(NativeObject config, ContextPool contexts) {
+        this.cache.setLoader(createLoader(config, contexts));
+    }
+
+    @Override
+    public String getClassName() {
+        return "Cache";
+    }
+
+    /**
+     * Gets the cached value of a key, calling the loader on a miss.
+     *
+     * @param key to look up.
+     * @return the value, or undefined if it isn't cached and can't be loaded.
+     */
+    @JSFunction("get")
+    public Object lookup(Object key) throws Exception {
+        Object value = this.cache.get(Context.toString(key));
+        return value != null ? value : Context.getUndefinedValue();
+    }
+
+    /**
+     * Caches a value, or removes the key if the value is null or undefined.
+     */
+    @JSFunction("put")
+    public void store(Object key, Object value) {
+        this.cache.put(Context.toString(key), value == null || value instanceof Undefined ? null : value);
+    }
+
+    /**
+     * Caches every property of an object under its name.
+     */
+    @JSFunction
+    public void putAll(Object values) {
+        if (values instanceof NativeObject) {
+            for (Map.Entry<Object, Object> entry : ((NativeObject) values).entrySet()) {
+                this.store(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @JSFunction
+    public void invalidate(Object key) {
+        this.cache.invalidate(Context.toString(key));
+    }
+
+    @JSFunction
+    public void invalidateAll() {
+        this.cache.invalidateAll();
+    }
+
+    /**
+     * Loads the values of all cached keys again.
+     *
+     * @return the number of keys loaded.
+     */
+    @JSFunction
+    public int refresh() {
+        return this.cache.refresh();
+    }
+
+    /**
+     * Gets statistics of the cache: size, weight, hits, misses, hitRate, loads, loadFailures,
+     * meanLoadTime in milliseconds and evictions.
+     */
+    @JSFunction
+    public Object stats() {
+        Scriptable scope = getTopLevelScope(this);
+        Scriptable stats = Context.getCurrentContext().newObject(scope);
+        stats.put("size", stats, (double) this.cache.getSize());
+        stats.put("weight", stats, (double) this.cache.getWeight());
+        stats.put("hits", stats, (double) this.cache.getHits());
+        stats.put("misses", stats, (double) this.cache.getMisses());
+        stats.put("hitRate", stats, this.cache.getHitRate());
+        stats.put("loads", stats, (double) this.cache.getLoads());
+        stats.put("loadFailures", stats, (double) this.cache.getLoadFailures());
+        stats.put("meanLoadTime", stats, this.cache.getMeanLoadTime());
+        stats.put("evictions", stats, (double) this.cache.getEvictions());
+        return stats;
+    }
+
+    @JSGetter
+    public String getName() {
+        return this.cache.getName();
+    }
+
+    /**
+     * Gets the underlying cache.
+     */
+    public LookupCache<Object> getCache() {
+        return this.cache;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import com.github.tartakynov.mojave.ConfigurationTree;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.util.*;
+
+/**
+ * Configuration tree copied from a JavaScript object, without flattening it to strings.
+ * <p/>
+ * Nested objects are sections and arrays are arrays; numbers and booleans keep their types. As in
+ * {@see Global#convertJsObjectToMap}, the "__" property of an object is the value of its own key.
+ * The object is read once when the tree is created, so the script can't change the tree later and
+ * the tree can be read from any thread.
+ */
+public class ScriptableTree implements ConfigurationTree {
+    private static final String SECTION_VALUE = "__";
+    private final Map<String, Object> values = new HashMap<String, Object>();
+    private final Map<String, Set<String>> sectionNames = new HashMap<String, Set<String>>();
+    private final Map<String, List<String>> arrays = new HashMap<String, List<String>>();
+    private volatile Map<String, String> properties;
+
+    public ScriptableTree(NativeObject root) {
+        this.index("", root, Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()));
+    }
+
+    @Override
+    public Object get(String path) {
+        return this.values.get(path);
+    }
+
+    @Override
+    public String getString(String path) {
+        Object value = this.values.get(path);
+        return value != null ? Context.toString(value) : null;
+    }
+
+    @Override
+    public Set<String> getSectionNames(String path) {
+        return this.sectionNames.get(path);
+    }
+
+    @Override
+    public List<String> getArray(String path) {
+        return this.arrays.get(path);
+    }
+
+    @Override
+    public Map<String, String> getProperties() {
+        Map<String, String> result = this.properties;
+        if (result == null) {
+            Map<String, String> properties = new HashMap<String, String>(this.values.size() * 2);
+            for (Map.Entry<String, Object> entry : this.values.entrySet()) {
+                properties.put(entry.getKey(), Context.toString(entry.getValue()));
+            }
+            result = Collections.unmodifiableMap(properties);
+            this.properties = result;
+        }
+        return result;
+    }
+
+    /**
+     * Copies the JavaScript value at the path and everything nested in it.
+     *
+     * @param path      of the value.
+     * @param node      the value.
+     * @param ancestors objects and arrays enclosing the value, to skip circular references.
+     */
+    @SuppressWarnings("unchecked")
+    private void index(String path, Object node, Set<Object> ancestors) {
+        if (node instanceof NativeObject) {
+            if (!ancestors.add(node)) {
+                return;
+            }
+            Set<String> names = new LinkedHashSet<String>();
+            for (Map.Entry<Object, Object> property : ((NativeObject) node).entrySet()) {
+                String name = property.getKey().toString();
+                Object value = property.getValue();
+                if (name.equals(SECTION_VALUE)) {
+                    if (path.length() > 0 && !(value instanceof NativeObject) && !(value instanceof NativeArray)) {
+                        this.put(path, value);
+                    }
+                    continue;
+                }
+                if (value instanceof NativeObject || value instanceof NativeArray) {
+                    names.add(name);
+                }
+                this.index(path.length() == 0 ? name : path + "." + name, value, ancestors);
+            }
+            this.sectionNames.put(path, Collections.unmodifiableSet(names));
+            ancestors.remove(node);
+        } else if (node instanceof NativeArray) {
+            if (!ancestors.add(node)) {
+                return;
+            }
+            List<String> items = new ArrayList<String>();
+            for (Object item : (NativeArray) node) {
+                this.index(path + "." + items.size(), item, ancestors);
+                items.add(Context.toString(item));
+            }
+            this.arrays.put(path, Collections.unmodifiableList(items));
+            this.sectionNames.put(path, Collections.<String>emptySet());
+            ancestors.remove(node);
+        } else {
+            this.put(path, node);
+        }
+    }
+
+    private void put(String path, Object value) {
+        if (value == null || value == ScriptableObject.NOT_FOUND || value == Context.getUndefinedValue()) {
+            return;
+        }
+        this.values.put(path, value instanceof Number || value instanceof Boolean ? value : Context.toString(value));
+    }
+}
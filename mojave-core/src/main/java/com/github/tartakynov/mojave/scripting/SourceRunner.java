@@ -19,41 +19,119 @@
 package com.github.tartakynov.mojave.scripting;
 
 import com.github.tartakynov.mojave.Source;
+import com.github.tartakynov.mojave.aggregation.WindowAggregator;
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import com.github.tartakynov.mojave.pipeline.Pipeline;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Function;
 import org.mozilla.javascript.Scriptable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 /**
- *
+ * Connects a {@see Source} to the pipeline, passing every batch through a JavaScript callback, a
+ * {@see ScriptStage} or a {@see WindowAggregator}.
  */
 public class SourceRunner {
+    private static final Logger log = LoggerFactory.getLogger(SourceRunner.class);
     protected Scriptable scope;
     protected Source source;
+    protected Pipeline pipeline;
+    protected ContextPool contexts;
+    protected List<ScriptTransform> transforms;
 
-    public SourceRunner(Scriptable scope, Source source) {
+    public SourceRunner(Scriptable scope, Source source, Pipeline pipeline, ContextPool contexts) {
         this.scope = scope;
         this.source = source;
+        this.pipeline = pipeline;
+        this.contexts = contexts;
+    }
+
+    /**
+     * Starts reading the source. The callback is called once per batch with an array of messages
+     * and returns the messages to send to sinks.
+     * <p/>
+     * While the script is being reloaded a running source keeps going, and the callback replaces
+     * the current one once the whole script has run.
+     *
+     * @param callback JavaScript function to call.
+     */
+    public synchronized void start(Function callback) throws ConfigurationException {
+        if (this.isReloading()) {
+            for (ScriptTransform transform : this.transforms) {
+                ((Global) this.scope).replaceCallback(transform, callback);
+            }
+            return;
+        }
+
+        ScriptTransform transform = new ScriptTransform(this.scope, callback, this.contexts);
+        this.pipeline.attach(this.source, transform);
+        this.transforms = Collections.singletonList(transform);
     }
 
-    public void start(final Function callback) {
-        Thread thread = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                Context ctx = Context.enter();
-                try {
-                    Thread.sleep(1000);
-                    callback.call(ctx, scope, null, new Object[]{1, 2});
-                } catch (InterruptedException e) {
-                    e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
-                } finally {
-                    Context.exit();
-                }
+    /**
+     * Starts reading the source with a reader per worker of the stage, each calling its own
+     * callback. The stage's workers take the place of the source's concurrency level.
+     * <p/>
+     * While the script is being reloaded, callbacks of the reloaded stage replace the current ones
+     * if the number of workers is the same.
+     *
+     * @param stage to pass batches through.
+     */
+    public synchronized void start(ScriptStage stage) throws ConfigurationException, IOException {
+        if (this.isReloading()) {
+            Global global = (Global) this.scope;
+            global.addWatchedScript(stage.getScript());
+            if (stage.getWorkers() != this.transforms.size()) {
+                log.warn("The number of workers of the stage has changed, the change takes effect after restart");
+                return;
             }
-        });
-        thread.start();
+            List<ScriptTransform> reloaded = stage.createTransforms(Context.getCurrentContext(), this.scope, this.contexts);
+            for (int i = 0; i < reloaded.size(); i++) {
+                global.replaceCallback(this.transforms.get(i), reloaded.get(i).getCallback());
+            }
+            return;
+        }
+
+        if (this.scope instanceof Global) {
+            ((Global) this.scope).addWatchedScript(stage.getScript());
+        }
+        List<ScriptTransform> transforms = stage.createTransforms(Context.getCurrentContext(), this.scope, this.contexts);
+        this.pipeline.attach(this.source, transforms, stage.isOrdered());
+        this.transforms = transforms;
+    }
+
+    /**
+     * Starts reading the source, aggregating every batch over the windows of the aggregator, which
+     * emits a message per key of every closed window.
+     * <p/>
+     * While the script is being reloaded a running source keeps going with the same aggregator.
+     *
+     * @param aggregator to pass batches through.
+     */
+    public synchronized void start(WindowAggregator aggregator) throws ConfigurationException {
+        if (this.isReloading()) {
+            return;
+        }
+
+        this.pipeline.attach(this.source, aggregator);
+        // there are no callbacks to replace on reload
+        this.transforms = Collections.emptyList();
     }
 
-    public void stop() {
+    /**
+     * Stops reading the source and waits for batches in flight to reach sink buffers.
+     */
+    public synchronized void stop() throws InterruptedException {
+        this.pipeline.detach(this.source);
+        this.transforms = null;
+    }
 
+    private boolean isReloading() {
+        return this.transforms != null && this.scope instanceof Global && ((Global) this.scope).isReloading();
     }
 }
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave;
+
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class BootstrapTest {
+    private static final Map<String, long[]> configured = new ConcurrentHashMap<String, long[]>();
+    private static final Set<String> closed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private ExecutorService executor;
+    private Bootstrap bootstrap;
+
+    @Before
+    public void setUp() {
+        configured.clear();
+        closed.clear();
+        this.executor = Executors.newFixedThreadPool(8);
+        this.bootstrap = new Bootstrap(new ComponentsFactory(), this.executor);
+    }
+
+    @After
+    public void tearDown() {
+        this.executor.shutdown();
+    }
+
+    private static Configuration section(String name, Class<?> type) {
+        return Sections.section(name, "class", type.getName());
+    }
+
+    private void add(String name, Class<?> type, String... dependencies) {
+        this.bootstrap.addSource(name, section(name, type), Arrays.asList(dependencies));
+    }
+
+    @Test
+    public void testConfiguresIndependentComponentsConcurrently() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            this.add("s" + i, SlowSource.class);
+        }
+        long started = System.nanoTime();
+        Map<String, Component> components = this.bootstrap.run();
+
+        Assert.assertTrue(System.nanoTime() - started < 8 * SlowSource.DELAY * 1000000L / 2);
+        Assert.assertEquals(8, components.size());
+        Assert.assertEquals("s0", components.get("s0").getName());
+        Assert.assertEquals(8, this.bootstrap.getTimings().size());
+        Assert.assertTrue(this.bootstrap.getTimings().get("s7") >= SlowSource.DELAY);
+    }
+
+    @Test
+    public void testConfiguresDependenciesFirst() throws Exception {
+        this.add("c", SlowSource.class, "a", "b");
+        this.add("b", SlowSource.class, "a");
+        this.add("a", SlowSource.class);
+        this.add("d", SlowSource.class);
+        Map<String, Component> components = this.bootstrap.run();
+
+        Assert.assertEquals(Arrays.asList("c", "b", "a", "d"), new ArrayList<String>(components.keySet()));
+        Assert.assertTrue(configured.get("a")[1] <= configured.get("b")[0]);
+        Assert.assertTrue(configured.get("b")[1] <= configured.get("c")[0]);
+        Assert.assertTrue(configured.get("d")[0] < configured.get("b")[0]);
+    }
+
+    @Test
+    public void testAggregatesFailures() throws Exception {
+        this.add("a", FailingSource.class);
+        this.add("b", FailingSource.class);
+        this.add("c", SlowSource.class, "a");
+        try {
+            this.bootstrap.run();
+            Assert.fail();
+        } catch (ConfigurationException ex) {
+            Assert.assertEquals("2 components have failed: broken a; broken b;", ex.getMessage());
+            Assert.assertEquals(1, ex.getSuppressed().length);
+        }
+        Assert.assertFalse(configured.containsKey("c"));
+    }
+
+    @Test
+    public void testClosesComponentsOnUnexpectedFailures() throws Exception {
+        this.add("a", ClosingSource.class);
+        this.add("b", CrashingSource.class);
+        try {
+            this.bootstrap.run();
+            Assert.fail();
+        } catch (ConfigurationException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("a", "b")), closed);
+    }
+
+    @Test
+    public void testRejectsCircularDependencies() {
+        this.add("a", SlowSource.class, "b");
+        this.add("b", SlowSource.class, "c");
+        this.add("c", SlowSource.class, "a");
+        try {
+            this.bootstrap.run();
+            Assert.fail();
+        } catch (ConfigurationException ex) {
+            Assert.assertEquals("Circular dependency: [a, b, c, a]", ex.getMessage());
+        }
+        Assert.assertTrue(configured.isEmpty());
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testRejectsUnknownDependencies() throws Exception {
+        this.bootstrap.addSink("a", section("a", SlowSource.class), Collections.singletonList("missing"));
+        this.bootstrap.run();
+    }
+
+    public static class SlowSource extends Source {
+        static final long DELAY = 100;
+
+        @Override
+        public String take() {
+            return null;
+        }
+
+        @Override
+        public void configure(Configuration config) throws ConfigurationException {
+            long started = System.nanoTime();
+            try {
+                Thread.sleep(DELAY);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            super.configure(config);
+            configured.put(config.getSectionName(), new long[]{started, System.nanoTime()});
+        }
+    }
+
+    public static class FailingSource extends SlowSource {
+        @Override
+        public void configure(Configuration config) throws ConfigurationException {
+            try {
+                Thread.sleep(DELAY);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            throw new ConfigurationException("broken " + config.getSectionName());
+        }
+    }
+
+    public static class ClosingSource extends SlowSource implements Closeable {
+        private String section;
+
+        @Override
+        public void configure(Configuration config) throws ConfigurationException {
+            this.section = config.getSectionName();
+            super.configure(config);
+        }
+
+        @Override
+        public void close() {
+            closed.add(this.section);
+        }
+    }
+
+    public static class CrashingSource extends ClosingSource {
+        @Override
+        public void configure(Configuration config) throws ConfigurationException {
+            super.configure(config);
+            throw new IllegalStateException("crashed " + config.getSectionName());
+        }
+    }
+}
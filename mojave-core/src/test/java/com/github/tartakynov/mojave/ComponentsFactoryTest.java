@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave;
+
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import com.github.tartakynov.mojave.file.FileSource;
+import com.github.tartakynov.mojave.net.NetSink;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ComponentsFactoryTest {
+    private final ComponentsFactory factory = new ComponentsFactory();
+
+    @Test
+    public void testCreatesComponentsByShortNames() throws Exception {
+        Assert.assertTrue(this.factory.createSource("file") instanceof FileSource);
+        Assert.assertTrue(this.factory.createSink("net") instanceof NetSink);
+    }
+
+    @Test
+    public void testKeepsCauses() {
+        try {
+            this.factory.createSource("com.example.Missing");
+            Assert.fail();
+        } catch (ConfigurationException ex) {
+            Assert.assertTrue(ex.getCause() instanceof ClassNotFoundException);
+        }
+        try {
+            this.factory.createSource(FailingSource.class.getName());
+            Assert.fail();
+        } catch (ConfigurationException ex) {
+            Assert.assertEquals("broken", ex.getCause().getMessage());
+        }
+        try {
+            this.factory.createSink(NamedSource.class.getName());
+            Assert.fail();
+        } catch (ConfigurationException ex) {
+            Assert.assertEquals(NamedSource.class.getName() + " is not a Sink", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testCreatesThroughOverriddenCreate() throws Exception {
+        final List<String> created = new ArrayList<String>();
+        ComponentsFactory factory = new ComponentsFactory() {
+            @Override
+            protected <T extends Component> T create(String className) throws ConfigurationException {
+                created.add(className);
+                return super.create(className);
+            }
+        };
+
+        Assert.assertTrue(factory.createSource("file") instanceof FileSource);
+        Assert.assertTrue(factory.createSink("net") instanceof NetSink);
+        Assert.assertEquals(Arrays.asList(FileSource.class.getName(), NetSink.class.getName()), created);
+    }
+
+    public static class NamedSource extends Source {
+        @Override
+        public String take() {
+            return null;
+        }
+    }
+
+    public static class FailingSource extends NamedSource {
+        public FailingSource() {
+            throw new IllegalStateException("broken");
+        }
+    }
+}
@@ -25,14 +25,15 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.ScriptableObject;
 
-import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public class ConfigurationTest {
-    private Configuration configuration;
+    protected Configuration configuration;
 
-    private static Configuration getConfiguration(Object configJsObj) {
+    protected Configuration getConfiguration(Object configJsObj) {
         Map<String, String> map = Global.convertJsObjectToMap((NativeObject) configJsObj);
         return new Configuration(map);
     }
@@ -65,6 +66,25 @@ public class ConfigurationTest {
         Assert.assertFalse(config.contains("FalseSection"));
     }
 
+    @Test
+    public void testContainsSectionsHoldingValuesOnly() {
+        NativeObject x = new NativeObject();
+        ScriptableObject.putProperty(x, "y", "1");
+        NativeObject b = new NativeObject();
+        ScriptableObject.putProperty(b, "c", "2");
+        NativeObject a = new NativeObject();
+        ScriptableObject.putProperty(a, "b", b);
+        NativeObject root = new NativeObject();
+        ScriptableObject.putProperty(root, "x", x);
+        ScriptableObject.putProperty(root, "a", a);
+        Configuration config = this.getConfiguration(root);
+
+        Assert.assertTrue(config.contains("x"));
+        Assert.assertTrue(config.getSection("a").contains("b"));
+        Assert.assertSame(config.getSection("x"), config.getSection("x"));
+        Assert.assertEquals("2", config.getSection("a").getSection("b").get("c"));
+    }
+
     @Test
     public void testGetSectionName() {
         Configuration sectionA = this.configuration.getSection("testSectionA");
@@ -76,7 +96,7 @@ public class ConfigurationTest {
 
     @Test
     public void testGetArray() {
-        ArrayList<String> array = this.configuration.getArray("testSectionA.testPropertyAIntArray");
+        List<String> array = this.configuration.getArray("testSectionA.testPropertyAIntArray");
         Assert.assertNotNull(array);
         Assert.assertEquals(5, array.size());
         Assert.assertEquals("1", array.get(0));
@@ -108,4 +128,29 @@ public class ConfigurationTest {
         Configuration config = this.configuration;
         Assert.assertEquals(1.0, config.getDouble("testSectionA.testPropertyAInt", 0.0), 0.001);
     }
+
+    @Test
+    public void testGetSectionNames() {
+        Configuration sectionA = this.configuration.getSection("testSectionA");
+        Assert.assertTrue(this.configuration.getSectionNames().contains("testSectionA"));
+        Assert.assertTrue(sectionA.getSectionNames().contains("testSectionB"));
+        Assert.assertTrue(sectionA.getSectionNames().contains("testPropertyAIntArray"));
+        Assert.assertFalse(sectionA.getSectionNames().contains("testPropertyAInt"));
+    }
+
+    @Test
+    public void testSectionIsView() {
+        Configuration sectionA = this.configuration.getSection("testSectionA");
+        Assert.assertSame(sectionA, this.configuration.getSection("testSectionA"));
+        Assert.assertTrue(sectionA.contains("testSectionB.testPropertyBInt"));
+        Assert.assertEquals(5, sectionA.getArray("testPropertyAIntArray").size());
+        Assert.assertEquals(1, sectionA.getSection("testSectionB").getInt32("testPropertyBInt", 0));
+        Assert.assertEquals("hello world", sectionA.getProperties().get("testPropertyAString"));
+        Assert.assertFalse(this.configuration.getSection("FalseSection").contains("testPropertyAInt"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIsImmutable() {
+        this.configuration.getProperties().put("testSectionA.testPropertyAInt", "2");
+    }
 }
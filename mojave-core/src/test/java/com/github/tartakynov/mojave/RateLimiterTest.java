@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave;
+
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class RateLimiterTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static Configuration section(String... keyValues) {
+        return Sections.section("test", keyValues);
+    }
+
+    @Test
+    public void testPassesEverythingWithoutLimits() throws Exception {
+        RateLimiter limiter = RateLimiter.create(section());
+        Assert.assertEquals(0, limiter.reserve(1000000, Long.MAX_VALUE / 2));
+        Assert.assertFalse(limiter.limitsBytes());
+    }
+
+    @Test
+    public void testAllowsBurstsThenSpreadsMessages() throws Exception {
+        long started = System.nanoTime();
+        RateLimiter limiter = RateLimiter.create(section("messageRate", "100", "messageBurst", "10"));
+        Assert.assertTrue(limiter.reserve(10, 0) <= 0);
+        long wait = limiter.reserve(10, 0);
+        long elapsed = System.nanoTime() - started;
+        Assert.assertTrue(wait >= 100 * MS - elapsed && wait <= 100 * MS);
+        Assert.assertTrue(limiter.reserve(1, 0) > wait);
+    }
+
+    @Test
+    public void testLimitsBytesSeparately() throws Exception {
+        long started = System.nanoTime();
+        RateLimiter limiter = RateLimiter.create(section("byteRate", "1000"));
+        Assert.assertEquals(1000, limiter.getByteBurst());
+        Assert.assertTrue(limiter.limitsBytes());
+        Assert.assertTrue(limiter.reserve(1000000, 1000) <= 0);
+        long wait = limiter.reserve(1, 500);
+        long elapsed = System.nanoTime() - started;
+        Assert.assertTrue(wait >= 500 * MS - elapsed && wait <= 500 * MS);
+    }
+
+    @Test
+    public void testSharesRateAmongThreads() throws Exception {
+        final RateLimiter limiter = RateLimiter.create(section("messageRate", "1000", "messageBurst", "1"));
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 50; j++) {
+                            limiter.acquire(1, 0);
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }));
+        }
+        long started = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertTrue(System.nanoTime() - started >= 195 * MS);
+    }
+
+    @Test
+    public void testWakesParkedCallersWhenLimitsChange() throws Exception {
+        final RateLimiter limiter = RateLimiter.create(section("messageRate", "1", "messageBurst", "1"));
+        limiter.acquire(1, 0);
+        Thread parked = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    limiter.acquire(10, 0);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        long started = System.nanoTime();
+        parked.start();
+        Thread.sleep(50);
+        limiter.update(section("messageRate", "0"));
+        parked.join();
+
+        Assert.assertTrue(System.nanoTime() - started < 1000 * MS);
+        Assert.assertEquals(0, limiter.getMessageRate(), 0);
+        Assert.assertEquals(0, limiter.reserve(1000, 0));
+    }
+
+    @Test
+    public void testUpdateKeepsLimitsNotGiven() throws Exception {
+        RateLimiter limiter = RateLimiter.create(section("messageRate", "100", "messageBurst", "5", "byteRate", "1000"));
+        limiter.update(section("byteRate", "2000"));
+        Assert.assertEquals(100, limiter.getMessageRate(), 0);
+        Assert.assertEquals(5, limiter.getMessageBurst());
+        Assert.assertEquals(2000, limiter.getByteRate(), 0);
+        Assert.assertEquals(2000, limiter.getByteBurst());
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testRejectsNegativeRates() throws Exception {
+        RateLimiter.create(section("messageRate", "-1"));
+    }
+}
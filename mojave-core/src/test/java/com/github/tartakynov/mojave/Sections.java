@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds configuration sections of tests from key-value pairs.
+ */
+public final class Sections {
+    private Sections() {
+    }
+
+    /**
+     * Creates a section.
+     *
+     * @param name      of the section.
+     * @param keyValues alternating keys and values.
+     * @return the section.
+     */
+    public static Configuration section(String name, String... keyValues) {
+        return new Configuration(name, values(keyValues));
+    }
+
+    /**
+     * Creates a section of default values overridden by the given ones.
+     *
+     * @param name      of the section.
+     * @param defaults  alternating keys and values.
+     * @param keyValues alternating keys and values.
+     * @return the section.
+     */
+    public static Configuration section(String name, String[] defaults, String... keyValues) {
+        Map<String, String> values = values(defaults);
+        values.putAll(values(keyValues));
+        return new Configuration(name, values);
+    }
+
+    private static Map<String, String> values(String... keyValues) {
+        Map<String, String> values = new HashMap<String, String>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            values.put(keyValues[i], keyValues[i + 1]);
+        }
+        return values;
+    }
+}
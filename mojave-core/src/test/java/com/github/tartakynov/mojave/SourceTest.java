@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+public class SourceTest {
+    private QueueSource source;
+
+    @Before
+    public void setUp() throws Exception {
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("batchSize", "3");
+        this.source = new QueueSource();
+        this.source.configure(new Configuration("test", values));
+    }
+
+    @Test
+    public void testConfigure() {
+        Assert.assertEquals(3, this.source.getBatchSize());
+        Assert.assertEquals(Source.DEFAULT_BATCH_TIMEOUT, this.source.getBatchTimeout());
+    }
+
+    @Test
+    public void testTakeBatchStopsWhenFull() {
+        for (int i = 0; i < 5; i++) {
+            this.source.messages.add(String.valueOf(i));
+        }
+        List<String> batch = new ArrayList<String>();
+        Assert.assertEquals(3, this.source.takeBatch(batch, this.source.getBatchSize(), 0));
+        Assert.assertEquals("0", batch.get(0));
+        Assert.assertEquals("2", batch.get(2));
+    }
+
+    @Test
+    public void testTakeBatchReturnsPartialBatch() {
+        this.source.messages.add("a");
+        List<String> batch = new ArrayList<String>();
+        Assert.assertEquals(1, this.source.takeBatch(batch, 3, TimeUnit.SECONDS.toNanos(10)));
+    }
+
+    @Test
+    public void testTakeBatchTimesOut() {
+        List<String> batch = new ArrayList<String>();
+        Assert.assertEquals(0, this.source.takeBatch(batch, 3, TimeUnit.MILLISECONDS.toNanos(5)));
+        Assert.assertTrue(batch.isEmpty());
+    }
+
+    private static class QueueSource extends Source {
+        private final Queue<String> messages = new LinkedList<String>();
+
+        @Override
+        public String take() {
+            return this.messages.poll();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.aggregation;
+
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import com.github.tartakynov.mojave.pipeline.KeyExtractor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class WindowAggregatorTest {
+    private static final KeyExtractor KEY = new KeyExtractor() {
+        @Override
+        public Object getKey(CharSequence message) {
+            return message.toString().split(":")[0];
+        }
+    };
+
+    private static final ValueExtractor VALUE = new ValueExtractor() {
+        @Override
+        public double getValue(CharSequence message) {
+            String[] fields = message.toString().split(":");
+            return fields.length > 1 ? Double.parseDouble(fields[1]) : Double.NaN;
+        }
+    };
+
+    private static List<CharSequence> batch(String... messages) {
+        return new ArrayList<CharSequence>(Arrays.asList(messages));
+    }
+
+    @Test
+    public void testEmitsTumblingWindowsWhenTheyClose() throws Exception {
+        WindowAggregator aggregator = new WindowAggregator("w", 1000, 1000,
+                Arrays.asList(Aggregate.COUNT, Aggregate.SUM, Aggregate.MIN, Aggregate.MAX, Aggregate.AVG),
+                KEY, VALUE, null, 0);
+
+        Assert.assertNull(aggregator.apply(batch("a:1", "b:10", "a:3"), 1500));
+        Assert.assertNull(aggregator.apply(batch("a:2", "b"), 1999));
+        Assert.assertNull(aggregator.tick(1999));
+
+        List<CharSequence> output = aggregator.tick(2000);
+        Assert.assertEquals(Arrays.<CharSequence>asList(
+                "{\"window\":\"w\",\"key\":\"a\",\"start\":1000,\"end\":2000,\"count\":3,\"sum\":6.0,\"min\":1.0,\"max\":3.0,\"avg\":2.0}",
+                "{\"window\":\"w\",\"key\":\"b\",\"start\":1000,\"end\":2000,\"count\":2,\"sum\":10.0,\"min\":10.0,\"max\":10.0,\"avg\":10.0}"),
+                sorted(output));
+
+        Assert.assertNull(aggregator.apply(batch("a:5"), 2100));
+        Assert.assertNull(aggregator.tick(2999));
+        Assert.assertEquals(Collections.<CharSequence>singletonList(
+                "{\"window\":\"w\",\"key\":\"a\",\"start\":2000,\"end\":3000,\"count\":1,\"sum\":5.0,\"min\":5.0,\"max\":5.0,\"avg\":5.0}"),
+                aggregator.apply(batch(), 9000));
+        Assert.assertNull(aggregator.flush());
+    }
+
+    @Test
+    public void testEmitsSlidingWindowsFromPanes() throws Exception {
+        WindowAggregator aggregator = new WindowAggregator("w", 3000, 1000, Collections.singletonList(Aggregate.COUNT),
+                null, null, null, 0);
+
+        Assert.assertNull(aggregator.apply(batch("x"), 0));
+        Assert.assertEquals(Collections.<CharSequence>singletonList("{\"window\":\"w\",\"start\":-2000,\"end\":1000,\"count\":1}"),
+                aggregator.apply(batch("x", "x"), 1000));
+        Assert.assertEquals(Collections.<CharSequence>singletonList("{\"window\":\"w\",\"start\":-1000,\"end\":2000,\"count\":3}"),
+                aggregator.apply(batch("x", "x", "x"), 2500));
+
+        Assert.assertEquals(Arrays.<CharSequence>asList(
+                "{\"window\":\"w\",\"start\":0,\"end\":3000,\"count\":6}",
+                "{\"window\":\"w\",\"start\":1000,\"end\":4000,\"count\":5}",
+                "{\"window\":\"w\",\"start\":2000,\"end\":5000,\"count\":3}"), aggregator.flush());
+        Assert.assertNull(aggregator.tick(100000));
+    }
+
+    @Test
+    public void testEstimatesDistinctValues() throws Exception {
+        WindowAggregator aggregator = new WindowAggregator("w", 1000, 1000,
+                Arrays.asList(Aggregate.DISTINCT, Aggregate.COUNT), KEY, null, new KeyExtractor() {
+            @Override
+            public Object getKey(CharSequence message) {
+                return message.toString().split(":")[1];
+            }
+        }, WindowAggregator.DEFAULT_PRECISION);
+
+        List<CharSequence> batch = new ArrayList<CharSequence>();
+        for (int i = 0; i < 100000; i++) {
+            batch.add("many:" + (i % 20000));
+            if (i % 1000 == 0) {
+                batch.add("few:" + (i % 3));
+            }
+        }
+        aggregator.apply(batch, 0);
+
+        List<CharSequence> output = sorted(aggregator.flush());
+        Assert.assertEquals("{\"window\":\"w\",\"key\":\"few\",\"start\":0,\"end\":1000,\"count\":100,\"distinct\":3}", output.get(0));
+        String many = output.get(1).toString();
+        long distinct = Long.parseLong(many.substring(many.indexOf("\"distinct\":") + 11, many.length() - 1));
+        Assert.assertEquals(20000, distinct, 20000 * 0.05);
+    }
+
+    @Test
+    public void testKeepsTableStateAcrossResizes() {
+        AggregateTable first = new AggregateTable(4);
+        AggregateTable second = new AggregateTable(4);
+        for (int i = 0; i < 1000; i++) {
+            int slot = first.add("key" + (i % 100), i);
+            first.offer(slot, AggregateTable.hash(String.valueOf(i)));
+            second.add("key" + (i % 50), Double.NaN);
+        }
+        first.merge(second);
+
+        Assert.assertEquals(100, first.size());
+        for (int slot = 0; slot < first.capacity(); slot++) {
+            String key = first.keyAt(slot);
+            if (key != null) {
+                int index = Integer.parseInt(key.substring(3));
+                Assert.assertEquals(index < 50 ? 30 : 10, first.count(slot));
+                Assert.assertEquals(index, first.min(slot), 0);
+                Assert.assertEquals(900 + index, first.max(slot), 0);
+                Assert.assertEquals(450 + index, first.avg(slot), 0);
+            }
+        }
+        first.clear();
+        Assert.assertEquals(0, first.size());
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testRejectsSizeNotMultipleOfSlide() throws Exception {
+        new WindowAggregator("w", 1000, 300, Collections.singletonList(Aggregate.COUNT), null, null, null, 0);
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testRequiresValueForSums() throws Exception {
+        new WindowAggregator("w", 1000, 1000, Collections.singletonList(Aggregate.SUM), KEY, null, null, 0);
+    }
+
+    private static List<CharSequence> sorted(List<CharSequence> messages) {
+        List<String> result = new ArrayList<String>();
+        for (CharSequence message : messages) {
+            result.add(message.toString());
+        }
+        Collections.sort(result);
+        return new ArrayList<CharSequence>(result);
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.cache;
+
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LookupCacheTest {
+    private static final Weigher<String> LENGTH = new Weigher<String>() {
+        @Override
+        public long weigh(String key, String value) {
+            return value.length();
+        }
+    };
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        LookupCache<String> cache = new LookupCache<String>("c", 3, 0, Eviction.LRU, 0, null, null);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        Assert.assertEquals("1", cache.get("a"));
+        cache.put("d", "4");
+
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals("1", cache.get("a"));
+        Assert.assertEquals("4", cache.get("d"));
+        Assert.assertEquals(3, cache.getSize());
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertEquals(3, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testExpiresEntriesAfterTtl() throws Exception {
+        LookupCache<String> cache = new LookupCache<String>("c", 2, 0, Eviction.TTL, 50, null, null);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        Assert.assertEquals("1", cache.get("a"));
+        cache.put("c", "3");
+        Assert.assertNull("the least recently written goes first", cache.getIfPresent("a"));
+
+        Thread.sleep(60);
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNull(cache.get("c"));
+    }
+
+    @Test
+    public void testBoundsWeight() throws Exception {
+        LookupCache<String> cache = new LookupCache<String>("c", 0, 10, Eviction.LRU, 0, null, LENGTH);
+        cache.put("a", "1234");
+        cache.put("b", "1234");
+        cache.put("c", "1234");
+        cache.put("huge", "12345678901");
+
+        Assert.assertEquals(8, cache.getWeight());
+        Assert.assertNull(cache.getIfPresent("a"));
+        Assert.assertNull(cache.getIfPresent("huge"));
+        Assert.assertEquals("1234", cache.getIfPresent("c"));
+    }
+
+    @Test
+    public void testLoadsMissesOncePerKey() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final LookupCache<String> cache = new LookupCache<String>("c", 100, 0, Eviction.LRU, 0, new Loader<String>() {
+            @Override
+            public String load(String key) throws Exception {
+                loads.incrementAndGet();
+                loading.await();
+                return "value of " + key;
+            }
+        }, null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        final AtomicInteger loaded = new AtomicInteger();
+        for (int i = 0; i < 4; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if ("value of k".equals(cache.get("k"))) {
+                            loaded.incrementAndGet();
+                        }
+                    } catch (Exception ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            });
+        }
+        Thread.sleep(50);
+        loading.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(4, loaded.get());
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals("value of k", cache.get("k"));
+        Assert.assertEquals(1, cache.getLoads());
+        Assert.assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testDoesNotCacheLoadsOverlappingChanges() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final LookupCache<String> cache = new LookupCache<String>("c", 100, 0, Eviction.LRU, 0, new Loader<String>() {
+            @Override
+            public String load(String key) throws Exception {
+                started.countDown();
+                loading.await();
+                return "stale";
+            }
+        }, null);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    cache.get("k");
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        cache.put("k", "fresh");
+        loading.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals("fresh", cache.getIfPresent("k"));
+    }
+
+    @Test
+    public void testWeighsOnlyWhenBoundedByWeight() throws Exception {
+        final AtomicInteger weighed = new AtomicInteger();
+        LookupCache<String> cache = new LookupCache<String>("c", 10, 0, Eviction.LRU, 0, null, new Weigher<String>() {
+            @Override
+            public long weigh(String key, String value) {
+                weighed.incrementAndGet();
+                return value.length();
+            }
+        });
+        cache.put("a", "1234");
+
+        Assert.assertEquals(0, weighed.get());
+        Assert.assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void testRefreshesCachedKeys() throws Exception {
+        final AtomicInteger version = new AtomicInteger();
+        LookupCache<String> cache = new LookupCache<String>("c", 100, 0, Eviction.LRU, 0, new Loader<String>() {
+            @Override
+            public String load(String key) {
+                return "gone".equals(key) && version.get() > 0 ? null : key + version.get();
+            }
+        }, null);
+        Assert.assertEquals("a0", cache.get("a"));
+        Assert.assertEquals("gone0", cache.get("gone"));
+
+        version.incrementAndGet();
+        Assert.assertEquals(2, cache.refresh());
+        Assert.assertEquals("a1", cache.getIfPresent("a"));
+        Assert.assertNull(cache.getIfPresent("gone"));
+    }
+
+    @Test
+    public void testSpreadsLargeCachesOverSegments() throws Exception {
+        LookupCache<String> cache = new LookupCache<String>("c", 10000, 0, Eviction.LRU, 0, null, null);
+        for (int i = 0; i < 20000; i++) {
+            cache.put(String.valueOf(i), "v");
+        }
+        Assert.assertTrue(cache.getSize() <= 10000);
+        Assert.assertTrue(cache.getSize() > 9000);
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testRequiresTtlForTtlEviction() throws Exception {
+        new LookupCache<String>("c", 10, 0, Eviction.TTL, 0, null, null);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.codec;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class CsvTest {
+    @Test
+    public void testParsesQuotedFields() {
+        Assert.assertEquals(Arrays.asList("a", "b,c", "say \"hi\"", ""), Csv.parse("a,\"b,c\",\"say \"\"hi\"\"\",", ','));
+        Assert.assertEquals(Arrays.asList(""), Csv.parse("", ','));
+        Assert.assertEquals(Arrays.asList("1", "2", "3"), Csv.parse("1\t2\t3", '\t'));
+    }
+
+    @Test
+    public void testReadsSingleFields() {
+        String line = "\"x,y\",2,\"\"\"3\"\"\",4";
+        Assert.assertEquals("x,y", Csv.field(line, 0, ','));
+        Assert.assertEquals("\"3\"", Csv.field(line, 2, ','));
+        Assert.assertEquals("4", Csv.field(line, 3, ','));
+        Assert.assertNull(Csv.field(line, 4, ','));
+    }
+
+    @Test
+    public void testWritesFieldsBack() {
+        StringBuilder out = new StringBuilder();
+        Csv.write(Arrays.asList("a", "b|c", "q\"", null, 5), '|', out);
+        Assert.assertEquals("a|\"b|c\"|\"q\"\"\"||5", out.toString());
+        Assert.assertEquals(Arrays.asList("a", "b|c", "q\"", "", "5"), Csv.parse(out, '|'));
+    }
+}
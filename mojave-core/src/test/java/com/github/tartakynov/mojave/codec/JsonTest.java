@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.codec;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JsonTest {
+    private static final String DOCUMENT = "{\"id\": 7, \"name\": \"caf\\u00e9 \\\"x\\\"\", \"tags\": [\"a\", {\"b\": [1, 2]}],"
+            + " \"n\\u0061me\": \"escaped\", \"ok\": true, \"none\": null, \"ratio\": -1.5e2}";
+
+    @Test
+    public void testParsesDocuments() {
+        Map<?, ?> document = (Map<?, ?>) Json.parse(DOCUMENT);
+        Assert.assertEquals(7.0, document.get("id"));
+        Assert.assertEquals("escaped", document.get("name"));
+        Assert.assertEquals(Boolean.TRUE, document.get("ok"));
+        Assert.assertTrue(document.containsKey("none"));
+        Assert.assertNull(document.get("none"));
+        Assert.assertEquals(-150.0, document.get("ratio"));
+        List<?> tags = (List<?>) document.get("tags");
+        Assert.assertEquals("a", tags.get(0));
+        Assert.assertEquals(Arrays.asList(1.0, 2.0), ((Map<?, ?>) tags.get(1)).get("b"));
+    }
+
+    @Test
+    public void testFindsMembersInPlace() {
+        int pos = Json.find(DOCUMENT, 0, "name");
+        Assert.assertEquals("caf\u00e9 \"x\"", Json.read(DOCUMENT, pos, Json.COLLECTIONS));
+        Assert.assertEquals(Boolean.TRUE, Json.read(DOCUMENT, Json.find(DOCUMENT, 0, "ok"), Json.COLLECTIONS));
+        Assert.assertEquals(-1, Json.find(DOCUMENT, 0, "missing"));
+        Assert.assertEquals(-1, Json.find("{}", 0, "a"));
+
+        int tags = Json.find(DOCUMENT, 0, "tags");
+        int[] items = Json.items(DOCUMENT, tags);
+        Assert.assertEquals(2, items.length);
+        Assert.assertEquals(Arrays.asList(1.0, 2.0), Json.read(DOCUMENT, Json.find(DOCUMENT, items[1], "b"), Json.COLLECTIONS));
+        Assert.assertEquals(Arrays.asList("id", "name", "tags", "name", "ok", "none", "ratio"), Json.names(DOCUMENT, 0));
+        Assert.assertEquals(DOCUMENT.length(), Json.skip(DOCUMENT, 0));
+    }
+
+    @Test
+    public void testWritesValues() {
+        Map<String, Object> value = new LinkedHashMap<String, Object>();
+        value.put("s", "line\n\"q\"\u0001");
+        value.put("i", 3);
+        value.put("d", 0.5);
+        value.put("a", Arrays.asList(true, null));
+        StringBuilder out = new StringBuilder();
+        Json.write(value, out);
+
+        Assert.assertEquals("{\"s\":\"line\\n\\\"q\\\"\\u0001\",\"i\":3,\"d\":0.5,\"a\":[true,null]}", out.toString());
+        Assert.assertEquals(value.get("s"), ((Map<?, ?>) Json.parse(out)).get("s"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsTrailingText() {
+        Json.parse("{\"a\": 1} x");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsUnterminatedStrings() {
+        Json.parse("{\"a\": \"1}");
+    }
+
+    @Test
+    public void testRejectsNumbersOutsideJsonGrammar() {
+        for (String number : new String[]{"1f", "0x1p3", "01", "Infinity", "-", "1.", ".5", "1e", "+1"}) {
+            try {
+                Json.parse("[" + number + "]");
+                Assert.fail(number);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        Assert.assertEquals(Arrays.asList(0.0, -1.5, 2000.0, 0.03), Json.parse("[0, -1.5, 2e3, 3E-2]"));
+    }
+}
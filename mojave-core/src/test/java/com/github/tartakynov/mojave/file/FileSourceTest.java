@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.file;
+
+import com.github.tartakynov.mojave.ComponentsFactory;
+import com.github.tartakynov.mojave.Configuration;
+import com.github.tartakynov.mojave.Message;
+import com.github.tartakynov.mojave.Sections;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class FileSourceTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Configuration section(String name, String... keyValues) {
+        return Sections.section(name, new String[]{"directory", this.folder.getRoot().getPath(), "prefix", "events"},
+                keyValues);
+    }
+
+    private List<String> drain(FileSource source) {
+        return this.drain(source, 0);
+    }
+
+    /**
+     * Takes what the source has, waiting for at least count messages.
+     */
+    private List<String> drain(FileSource source, int count) {
+        List<Message> messages = new ArrayList<Message>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        do {
+            source.takeMessages(messages, 1000, 0);
+        } while (messages.size() < count && System.nanoTime() < deadline);
+        List<String> result = new ArrayList<String>();
+        for (Message message : messages) {
+            result.add(message.toString());
+            message.release();
+        }
+        return result;
+    }
+
+    @Test
+    public void testReadsWhatSinkWrites() throws Exception {
+        for (String framing : new String[]{"newline", "length"}) {
+            FileSink sink = new FileSink();
+            sink.configure(section("sink", "framing", framing));
+            sink.write(Arrays.asList("first", "", "third")).get();
+            FileSource source = new FileSource();
+            source.configure(section(framing, "framing", framing));
+
+            Assert.assertEquals(Arrays.asList("first", "", "third"), this.drain(source));
+            sink.write(Arrays.asList("fourth")).get();
+            Assert.assertEquals("fourth", source.take());
+            Assert.assertNull(source.take());
+            sink.close();
+            this.folder.delete();
+            this.folder.create();
+        }
+    }
+
+    @Test
+    public void testRejectsBatchesWithDelimitersUnderNewlineFraming() throws Exception {
+        FileSink sink = new FileSink();
+        sink.configure(section("sink"));
+        for (String message : new String[]{"two\nlines", "zero\u0000byte"}) {
+            try {
+                sink.write(Arrays.asList("valid", message)).get();
+                Assert.fail();
+            } catch (ExecutionException ex) {
+                Assert.assertTrue(ex.getCause() instanceof IOException);
+            }
+        }
+        sink.write(Arrays.asList("fine")).get();
+        FileSource source = new FileSource();
+        source.configure(section("source"));
+        Assert.assertEquals(Arrays.asList("fine"), this.drain(source));
+        sink.close();
+    }
+
+    @Test
+    public void testSkipsRecordsNotFittingBuffer() throws Exception {
+        FileSink sink = new FileSink();
+        sink.configure(section("sink"));
+        sink.write(Arrays.asList("first", "too long to fit", "third")).get();
+        FileSource source = new FileSource();
+        source.configure(section("source"));
+
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        Assert.assertTrue(source.read(buffer));
+        Assert.assertEquals(5, buffer.position());
+        buffer.clear();
+        Assert.assertTrue(source.read(buffer));
+        buffer.flip();
+        Assert.assertEquals("third", StandardCharsets.UTF_8.decode(buffer).toString());
+        Assert.assertEquals(1, source.getSkipped());
+        sink.close();
+    }
+
+    @Test
+    public void testRollsSegments() throws Exception {
+        FileSink sink = new FileSink();
+        sink.configure(section("sink", "segmentSize", "16", "maxSegments", "2"));
+        FileSource source = new FileSource();
+        source.configure(section("source"));
+
+        sink.write(Arrays.asList("0123456", "abcdef")).get();
+        Assert.assertEquals(Arrays.asList("0123456", "abcdef"), this.drain(source));
+        sink.write(Arrays.asList("ghijkl", "mnopqr", "stuvwx")).get();
+        Assert.assertEquals(Arrays.asList("ghijkl", "mnopqr", "stuvwx"), this.drain(source, 3));
+        Assert.assertEquals(2, Segments.list(this.folder.getRoot(), "events").length);
+    }
+
+    @Test
+    public void testResumesFromPersistedOffset() throws Exception {
+        FileSink sink = new FileSink();
+        sink.configure(section("sink"));
+        sink.write(Arrays.asList("a", "b", "c")).get();
+        sink.close();
+
+        FileSource first = new FileSource();
+        first.configure(section("source", "batchSize", "2"));
+        Assert.assertEquals("a", first.take());
+
+        sink = new FileSink();
+        sink.configure(section("sink"));
+        sink.write(Arrays.asList("d")).get();
+
+        FileSource second = new FileSource();
+        second.configure(section("source"));
+        Assert.assertEquals(Arrays.asList("b", "c", "d"), this.drain(second));
+    }
+
+    @Test
+    public void testCreatedByComponentsFactory() throws Exception {
+        ComponentsFactory factory = new ComponentsFactory();
+        Assert.assertTrue(factory.createSource(FileSource.class.getName()) instanceof FileSource);
+        Assert.assertTrue(factory.createSink(FileSink.class.getName()) instanceof FileSink);
+    }
+}
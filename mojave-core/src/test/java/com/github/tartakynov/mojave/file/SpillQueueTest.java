@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.file;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SpillQueueTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<String> drain(SpillQueue queue, int max) throws Exception {
+        List<CharSequence> messages = new ArrayList<CharSequence>();
+        queue.drainTo(messages, max, 0);
+        List<String> result = new ArrayList<String>();
+        for (CharSequence message : messages) {
+            result.add(message.toString());
+        }
+        return result;
+    }
+
+    @Test
+    public void testDrainsInOrder() throws Exception {
+        SpillQueue queue = new SpillQueue(this.folder.getRoot(), "sink", 32, 0, 0);
+        queue.putAll(Arrays.asList("first", "second\nline", "", "fourth"));
+        Assert.assertEquals(4, queue.size());
+        Assert.assertEquals(Arrays.asList("first", "second\nline"), this.drain(queue, 2));
+        Assert.assertEquals(Arrays.asList("", "fourth"), this.drain(queue, 10));
+        Assert.assertEquals(0, queue.size());
+        queue.close();
+    }
+
+    @Test
+    public void testDeletesAcknowledgedSegments() throws Exception {
+        SpillQueue queue = new SpillQueue(this.folder.getRoot(), "sink", 16, 0, 0);
+        queue.putAll(Arrays.asList("0123456789", "0123456789", "0123456789"));
+        Assert.assertEquals(3, Segments.list(this.folder.getRoot(), "sink").length);
+        this.drain(queue, 3);
+        queue.acknowledge(2);
+        Assert.assertEquals(1, Segments.list(this.folder.getRoot(), "sink").length);
+        queue.close();
+    }
+
+    @Test
+    public void testReplaysUnacknowledgedMessages() throws Exception {
+        SpillQueue queue = new SpillQueue(this.folder.getRoot(), "sink", 16, 0, 0);
+        queue.putAll(Arrays.asList("a", "b", "c", "d", "e"));
+        this.drain(queue, 4);
+        queue.acknowledge(2);
+        queue.close();
+
+        queue = new SpillQueue(this.folder.getRoot(), "sink", 16, 0, 0);
+        Assert.assertEquals(3, queue.size());
+        queue.putAll(Arrays.asList("f"));
+        Assert.assertEquals(Arrays.asList("c", "d", "e", "f"), this.drain(queue, 10));
+        queue.close();
+    }
+
+    @Test(timeout = 5000)
+    public void testBlocksWhenFull() throws Exception {
+        final SpillQueue queue = new SpillQueue(this.folder.getRoot(), "sink", 16, 2, 0);
+        queue.putAll(Arrays.asList("0123456789", "0123456789"));
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    queue.put("0123456789");
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        producer.start();
+        producer.join(200);
+        Assert.assertTrue(producer.isAlive());
+        this.drain(queue, 1);
+        queue.acknowledge(1);
+        producer.join();
+        Assert.assertEquals(2, queue.size());
+        queue.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsSingleSegmentLimit() throws Exception {
+        new SpillQueue(this.folder.getRoot(), "sink", 16, 1, 0);
+    }
+
+    @Test
+    public void testRejectsBatchesWithMessagesNotFittingSegment() throws Exception {
+        SpillQueue queue = new SpillQueue(this.folder.getRoot(), "sink", 16, 0, 0);
+        try {
+            queue.putAll(Arrays.asList("fits", "0123456789abcdef"));
+            Assert.fail();
+        } catch (IllegalStateException ex) {
+            Assert.assertEquals(0, queue.size());
+        }
+        queue.putAll(Arrays.asList("next"));
+        Assert.assertEquals(Arrays.asList("next"), this.drain(queue, 10));
+        queue.close();
+    }
+}
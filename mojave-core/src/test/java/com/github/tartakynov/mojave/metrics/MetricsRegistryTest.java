@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+public class MetricsRegistryTest {
+    @Test
+    public void testKeepsComponentsByKindAndName() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Assert.assertSame(registry.sink("out"), registry.sink("out"));
+        Assert.assertNotSame(registry.sink("out"), registry.source("out"));
+        Assert.assertEquals(2, registry.getAll().size());
+    }
+
+    @Test
+    public void testPublishesMBeans() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.source("in").recordBatch(3, 30, 1000);
+        registry.registerMBeans(server);
+        registry.sink("out").recordError();
+
+        ObjectName source = new ObjectName(MetricsRegistry.DOMAIN + ":type=Source,name=\"in\"");
+        ObjectName sink = new ObjectName(MetricsRegistry.DOMAIN + ":type=Sink,name=\"out\"");
+        Assert.assertEquals(3L, server.getAttribute(source, "Messages"));
+        Assert.assertEquals(30L, server.getAttribute(source, "Bytes"));
+        Assert.assertEquals(1L, server.getAttribute(sink, "Errors"));
+
+        registry.unregisterMBeans();
+        Assert.assertFalse(server.isRegistered(source));
+    }
+}
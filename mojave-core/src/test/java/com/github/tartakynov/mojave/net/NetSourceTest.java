@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.net;
+
+import com.github.tartakynov.mojave.Configuration;
+import com.github.tartakynov.mojave.Message;
+import com.github.tartakynov.mojave.Sections;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class NetSourceTest {
+    private final List<NetSource> sources = new ArrayList<NetSource>();
+
+    @After
+    public void tearDown() {
+        for (NetSource source : this.sources) {
+            source.close();
+        }
+    }
+
+    private static Configuration section(String name, String... keyValues) {
+        return Sections.section(name, new String[]{"host", "127.0.0.1", "port", "0"}, keyValues);
+    }
+
+    private NetSource listen(String... keyValues) throws Exception {
+        NetSource source = new NetSource();
+        source.configure(section("source", keyValues));
+        this.sources.add(source);
+        return source;
+    }
+
+    private static List<String> take(NetSource source, int count) {
+        List<Message> messages = new ArrayList<Message>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (messages.size() < count && System.nanoTime() < deadline) {
+            source.takeMessages(messages, count - messages.size(), TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        List<String> result = new ArrayList<String>();
+        for (Message message : messages) {
+            result.add(message.toString());
+            message.release();
+        }
+        return result;
+    }
+
+    @Test
+    public void testReadsLinesFromConnections() throws Exception {
+        NetSource source = this.listen("loops", "2");
+        List<Socket> sockets = new ArrayList<Socket>();
+        for (int i = 0; i < 4; i++) {
+            Socket socket = new Socket("127.0.0.1", source.getLocalPort());
+            socket.getOutputStream().write(("a" + i + "\r\nb").getBytes("UTF-8"));
+            sockets.add(socket);
+        }
+        for (int i = 0; i < 4; i++) {
+            sockets.get(i).getOutputStream().write((i + "\n\nlast" + i).getBytes("UTF-8"));
+            sockets.get(i).close();
+        }
+
+        List<String> messages = take(source, 16);
+        Assert.assertEquals(16, messages.size());
+        Assert.assertEquals(4, Collections.frequency(messages, ""));
+        for (int i = 0; i < 4; i++) {
+            List<String> actual = new ArrayList<String>();
+            for (String message : messages) {
+                if (message.endsWith(String.valueOf(i))) {
+                    actual.add(message);
+                }
+            }
+            Assert.assertEquals(Arrays.asList("a" + i, "b" + i, "last" + i), actual);
+        }
+    }
+
+    @Test
+    public void testReadsLengthPrefixedMessages() throws Exception {
+        NetSource source = this.listen("framing", "length");
+        Socket socket = new Socket("127.0.0.1", source.getLocalPort());
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        for (String message : new String[]{"first\n", "", "third"}) {
+            out.writeInt(message.length());
+            out.writeBytes(message);
+        }
+        out.flush();
+
+        Assert.assertEquals(Arrays.asList("first\n", "", "third"), take(source, 3));
+        socket.close();
+    }
+
+    @Test
+    public void testClosesConnectionsSendingLongMessages() throws Exception {
+        NetSource source = this.listen("bufferSize", "8");
+        Socket socket = new Socket("127.0.0.1", source.getLocalPort());
+        socket.getOutputStream().write("short\n0123456789\nnext\n".getBytes("UTF-8"));
+
+        Assert.assertEquals(Arrays.asList("short"), take(source, 1));
+        Assert.assertEquals(-1, socket.getInputStream().read());
+        Assert.assertNull(source.take());
+        socket.close();
+    }
+
+    @Test
+    public void testHoldsSendersBackWhileQueueIsFull() throws Exception {
+        NetSource source = this.listen("queueSize", "16", "receiveBufferSize", "64");
+        Socket socket = new Socket("127.0.0.1", source.getLocalPort());
+        OutputStream out = socket.getOutputStream();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append(i).append('\n');
+        }
+        out.write(text.toString().getBytes("UTF-8"));
+        socket.close();
+
+        List<String> messages = take(source, 2000);
+        Assert.assertEquals(2000, messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            Assert.assertEquals(String.valueOf(i), messages.get(i));
+        }
+    }
+
+    @Test
+    public void testReceivesDatagrams() throws Exception {
+        NetSource source = this.listen("protocol", "udp");
+        DatagramSocket socket = new DatagramSocket();
+        for (String datagram : new String[]{"first\n", "second", "third\nfourth\n"}) {
+            byte[] bytes = datagram.getBytes("UTF-8");
+            socket.send(new DatagramPacket(bytes, bytes.length, InetAddress.getByName("127.0.0.1"), source.getLocalPort()));
+        }
+        socket.close();
+
+        Assert.assertEquals(Arrays.asList("first", "second", "third", "fourth"), take(source, 4));
+        Assert.assertEquals(0, source.getDropped());
+    }
+
+    @Test
+    public void testDropsLongDatagrams() throws Exception {
+        NetSource source = this.listen("protocol", "udp", "bufferSize", "8");
+        DatagramSocket socket = new DatagramSocket();
+        for (String datagram : new String[]{"123456789", "ok\n"}) {
+            byte[] bytes = datagram.getBytes("UTF-8");
+            socket.send(new DatagramPacket(bytes, bytes.length, InetAddress.getByName("127.0.0.1"), source.getLocalPort()));
+        }
+        socket.close();
+
+        Assert.assertEquals(Arrays.asList("ok"), take(source, 1));
+        Assert.assertEquals(1, source.getDropped());
+    }
+
+    @Test
+    public void testReadsWhatSinkWrites() throws Exception {
+        for (String[] settings : new String[][]{{"protocol", "tcp", "framing", "length"}, {"protocol", "udp"}}) {
+            NetSource source = this.listen(settings);
+            List<String> keyValues = new ArrayList<String>(Arrays.asList(settings));
+            keyValues.addAll(Arrays.asList("port", String.valueOf(source.getLocalPort()), "loops", "2"));
+            NetSink sink = new NetSink();
+            sink.configure(section("sink", keyValues.toArray(new String[keyValues.size()])));
+
+            List<String> sent = new ArrayList<String>();
+            for (int batch = 0; batch < 10; batch++) {
+                List<String> messages = new ArrayList<String>();
+                for (int i = 0; i < 10; i++) {
+                    messages.add(batch + ":" + i);
+                }
+                sink.write(messages).get(10, TimeUnit.SECONDS);
+                sent.addAll(messages);
+            }
+
+            List<String> received = take(source, sent.size());
+            Assert.assertEquals(sent.size(), received.size());
+            Assert.assertTrue(received.containsAll(sent));
+            sink.close();
+            Assert.assertTrue(sink.write(Arrays.asList("closed")).isCompletedExceptionally());
+        }
+    }
+}
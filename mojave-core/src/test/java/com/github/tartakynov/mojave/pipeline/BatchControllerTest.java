@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import com.github.tartakynov.mojave.metrics.ComponentMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class BatchControllerTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+    private final ComponentMetrics metrics = new ComponentMetrics("sink", "test");
+
+    private BatchController controller(int batchSize, long linger) {
+        return new BatchController(batchSize, 1, 1000, linger * MS, 0, 40 * MS, 100 * MS, this.metrics);
+    }
+
+    @Test
+    public void testKeepsFixedSettings() {
+        BatchController controller = new BatchController(64, 5 * MS, this.metrics);
+        for (int i = 1; i <= 100; i++) {
+            controller.record(64, 1000 * MS, 10000, i * 1000 * MS);
+        }
+        Assert.assertEquals(64, controller.getBatchSize());
+        Assert.assertEquals(5 * MS, controller.getLinger());
+        Assert.assertEquals(64, this.metrics.getBatchSizeLimit());
+        Assert.assertEquals(5000, this.metrics.getLinger());
+    }
+
+    @Test
+    public void testGrowsBatchesToWorkOffBacklog() {
+        BatchController controller = this.controller(64, 20);
+        controller.record(64, 150 * MS, 5000, 100 * MS);
+        Assert.assertEquals(80, controller.getBatchSize());
+        Assert.assertEquals(0, controller.getLinger());
+
+        for (int i = 2; i <= 100; i++) {
+            controller.record(controller.getBatchSize(), 150 * MS, 5000, i * 100 * MS);
+        }
+        Assert.assertEquals(1000, controller.getBatchSize());
+        Assert.assertEquals(1000, this.metrics.getBatchSizeLimit());
+    }
+
+    @Test
+    public void testDropsLingerThenShrinksBatchesWithoutBacklog() {
+        BatchController controller = this.controller(64, 20);
+        controller.record(10, 150 * MS, 0, 100 * MS);
+        Assert.assertEquals(10 * MS, controller.getLinger());
+        Assert.assertEquals(64, controller.getBatchSize());
+
+        for (int i = 2; i <= 30; i++) {
+            controller.record(10, 150 * MS, 0, i * 100 * MS);
+        }
+        Assert.assertEquals(0, controller.getLinger());
+        Assert.assertTrue(controller.getBatchSize() < 64);
+        Assert.assertTrue(controller.getBatchSize() >= 1);
+    }
+
+    @Test
+    public void testLingersWhileBatchesLeaveUnderfilled() {
+        BatchController controller = this.controller(64, 0);
+        for (int i = 1; i <= 20; i++) {
+            controller.record(3, 10 * MS, 0, i * 100 * MS);
+        }
+        Assert.assertEquals(40 * MS, controller.getLinger());
+        Assert.assertEquals(40000, this.metrics.getLinger());
+        Assert.assertEquals(64, controller.getBatchSize());
+    }
+
+    @Test
+    public void testAdjustsAtMostOncePerTarget() {
+        BatchController controller = this.controller(64, 0);
+        controller.record(64, 10 * MS, 5000, 100 * MS);
+        for (int i = 1; i < 10; i++) {
+            controller.record(64, 10 * MS, 5000, 100 * MS + i * 10 * MS);
+        }
+        Assert.assertEquals(80, controller.getBatchSize());
+    }
+}
@@ -0,0 +1,518 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import com.github.tartakynov.mojave.BufferPool;
+import com.github.tartakynov.mojave.ByteSink;
+import com.github.tartakynov.mojave.ByteSource;
+import com.github.tartakynov.mojave.Configuration;
+import com.github.tartakynov.mojave.Message;
+import com.github.tartakynov.mojave.Sections;
+import com.github.tartakynov.mojave.Sink;
+import com.github.tartakynov.mojave.Source;
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import com.github.tartakynov.mojave.metrics.MetricsRegistry;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public class PipelineTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static boolean hasVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
+    private static Thread findThread(String name) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(name)) {
+                return thread;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testMovesMessagesFromSourceToSinks() throws Exception {
+        CountingSource source = new CountingSource(1000);
+        source.configure(Sections.section("numbers", "batchSize", "16"));
+        CollectingSink first = new CollectingSink();
+        first.configure(Sections.section("first"));
+        CollectingSink second = new CollectingSink();
+        second.configure(Sections.section("second"));
+
+        Pipeline pipeline = new Pipeline(Sections.section("pipeline", "queueDepth", "8", "batchSize", "4"));
+        pipeline.addSink(first, Sections.section("first"));
+        pipeline.addSink(second, Sections.section("second", "queueDepth", "32", "threads", "2"));
+        pipeline.attach(source, Transform.IDENTITY);
+        source.exhausted.await();
+        pipeline.stop();
+
+        Assert.assertEquals(1000, first.messages.size());
+        Assert.assertEquals(1000, second.messages.size());
+        Assert.assertEquals("0", first.messages.get(0));
+        Assert.assertEquals("999", first.messages.get(999));
+
+        MetricsRegistry metrics = pipeline.getMetrics();
+        Assert.assertEquals(1000, metrics.source("numbers").getMessages());
+        Assert.assertEquals(2890, metrics.source("numbers").getBytes());
+        Assert.assertEquals(16, metrics.source("numbers").getMaxBatchSize());
+        Assert.assertEquals(1000, metrics.sink("second").getMessages());
+        Assert.assertEquals(0, metrics.sink("second").getQueueDepth());
+        Assert.assertEquals(0, metrics.sink("second").getErrors());
+        Assert.assertEquals(4, metrics.sink("second").getBatchSizeLimit());
+        Assert.assertEquals(3, metrics.getAll().size());
+    }
+
+    @Test
+    public void testStopsOnce() throws Exception {
+        CollectingSink sink = new CollectingSink();
+        sink.configure(Sections.section("sink"));
+        Pipeline pipeline = new Pipeline(Sections.section("pipeline"));
+        pipeline.addSink(sink, Sections.section("sink"));
+        pipeline.start();
+
+        pipeline.stop();
+        pipeline.stop();
+        Assert.assertEquals(1, sink.closed.get());
+    }
+
+    @Test
+    public void testTunesBatchingTowardTargetLatency() throws Exception {
+        CountingSource source = new CountingSource(20000);
+        source.configure(Sections.section("numbers", "batchSize", "256"));
+        CollectingSink sink = new CollectingSink();
+        sink.configure(Sections.section("sink"));
+
+        Pipeline pipeline = new Pipeline(Sections.section("pipeline", "queueDepth", "4096", "batchSize", "1"));
+        pipeline.addSink(sink, Sections.section("sink", "targetLatency", "1", "maxBatchSize", "512"));
+        pipeline.attach(source, Transform.IDENTITY);
+        source.exhausted.await();
+        pipeline.stop();
+
+        Assert.assertEquals(20000, sink.messages.size());
+        int batchSize = pipeline.getMetrics().sink("sink").getBatchSizeLimit();
+        Assert.assertTrue(batchSize >= 1 && batchSize <= 512);
+    }
+
+    @Test
+    public void testRunsConcurrencyLevelConsumers() throws Exception {
+        CountingSource source = new CountingSource(1000);
+        source.configure(Sections.section("numbers", "batchSize", "8", "concurrencyLevel", "4"));
+        CollectingSink sink = new CollectingSink();
+        sink.configure(Sections.section("sink"));
+
+        Pipeline pipeline = new Pipeline(Sections.section("pipeline", "workerThreads", "2"));
+        pipeline.addSink(sink, Sections.section("sink"));
+        pipeline.attach(source, Transform.IDENTITY);
+        source.exhausted.await();
+        pipeline.detach(source);
+        pipeline.stop();
+
+        Assert.assertEquals(4, source.getConcurrencyLevel());
+        Assert.assertEquals(1000, new HashSet<String>(sink.messages).size());
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testRejectsUnknownExecutionMode() throws Exception {
+        new Pipeline(Sections.section("pipeline", "executionMode", "green"));
+    }
+
+    @Test
+    public void testRunsOnVirtualThreads() throws Exception {
+        Assume.assumeTrue(hasVirtualThreads());
+        CountingSource source = new CountingSource(1000);
+        source.configure(Sections.section("numbers", "batchSize", "8", "concurrencyLevel", "4"));
+        CollectingSink sink = new CollectingSink();
+        sink.configure(Sections.section("sink"));
+
+        Pipeline pipeline = new Pipeline(Sections.section("pipeline", "executionMode", "virtual"));
+        pipeline.addSink(sink, Sections.section("sink"));
+        pipeline.attach(source, Collections.nCopies(4, Transform.IDENTITY), true);
+        source.exhausted.await();
+        Assert.assertFalse(findThread("mojave-pipeline").isDaemon());
+        pipeline.stop();
+
+        Assert.assertNull(findThread("mojave-pipeline"));
+        Assert.assertEquals(1000, sink.messages.size());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(String.valueOf(i), sink.messages.get(i));
+        }
+    }
+
+    @Test
+    public void testReleasesMessagesTransformsDrop() throws Exception {
+        final AtomicInteger released = new AtomicInteger();
+        BufferPool pool = new BufferPool(8, 8, false) {
+            @Override
+            public void release(ByteBuffer buffer) {
+                released.incrementAndGet();
+                super.release(buffer);
+            }
+        };
+        Message first = new Message(ByteBuffer.wrap("a".getBytes(UTF8)), pool);
+        Message second = new Message(ByteBuffer.wrap("b".getBytes(UTF8)), pool);
+        List<CharSequence> input = Arrays.<CharSequence>asList(first, second);
+
+        SourceReader.releaseDropped(input, Arrays.<CharSequence>asList(first, first, "c"));
+        Assert.assertEquals(1, released.get());
+        first.release();
+        Assert.assertEquals(1, released.get());
+        first.release();
+        Assert.assertEquals(2, released.get());
+        try {
+            first.release();
+            Assert.fail();
+        } catch (IllegalStateException ex) {
+            Assert.assertEquals(2, released.get());
+        }
+    }
+
+    @Test
+    public void testTransformDropsBatches() throws Exception {
+        CountingSource source = new CountingSource(100);
+        source.configure(Sections.section("numbers"));
+        CollectingSink sink = new CollectingSink();
+        sink.configure(Sections.section("sink"));
+
+        Pipeline pipeline = new Pipeline(Sections.section("pipeline"));
+        pipeline.addSink(sink, Sections.section("sink"));
+        pipeline.attach(source, new Transform() {
+            @Override
+            public List<CharSequence> apply(List<CharSequence> batch) {
+                return null;
+            }
+        });
+        source.exhausted.await();
+        pipeline.stop();
+
+        Assert.assertTrue(sink.messages.isEmpty());
+    }
+
+    @Test
+    public void testPassesBytesThrough() throws Exception {
+        CountingByteSource source = new CountingByteSource(100);
+        source.configure(Sections.section("bytes", "bufferSize", "16", "directBuffers", "true"));
+        CollectingByteSink first = new CollectingByteSink();
+        first.configure(Sections.section("first"));
+        CollectingByteSink second = new CollectingByteSink();
+        second.configure(Sections.section("second"));
+
+        Pipeline pipeline = new Pipeline(Sections.section("pipeline"));
+        pipeline.addSink(first, Sections.section("first"));
+        pipeline.addSink(second, Sections.section("second"));
+        pipeline.attach(source, Transform.IDENTITY);
+        source.exhausted.await();
+        pipeline.stop();
+
+        Assert.assertEquals(100, first.messages.size());
+        Assert.assertEquals(100, second.messages.size());
+        Assert.assertEquals("message 99", first.messages.get(99));
+    }
+
+    @Test
+    public void testOrderedStageKeepsSourceOrder() throws Exception {
+        CountingSource source = new CountingSource(1000);
+        source.configure(Sections.section("numbers", "batchSize", "7"));
+        CollectingSink sink = new CollectingSink();
+        sink.configure(Sections.section("sink"));
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlapped = new AtomicInteger();
+        List<Transform> transforms = new ArrayList<Transform>();
+        for (int i = 0; i < 4; i++) {
+            transforms.add(new Transform() {
+                @Override
+                public List<CharSequence> apply(List<CharSequence> batch) {
+                    if (running.incrementAndGet() > 1) {
+                        overlapped.incrementAndGet();
+                    }
+                    LockSupport.parkNanos((Integer.parseInt(batch.get(0).toString()) % 3) * 100000L);
+                    running.decrementAndGet();
+                    return batch;
+                }
+            });
+        }
+
+        Pipeline pipeline = new Pipeline(Sections.section("pipeline", "workerThreads", "4"));
+        pipeline.addSink(sink, Sections.section("sink"));
+        pipeline.attach(source, transforms, true);
+        source.exhausted.await();
+        pipeline.stop();
+
+        Assert.assertEquals(1000, sink.messages.size());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(String.valueOf(i), sink.messages.get(i));
+        }
+        Assert.assertTrue(overlapped.get() > 0);
+    }
+
+    @Test
+    public void testRoutesKeysToPartitionsInOrder() throws Exception {
+        CountingSource source = new CountingSource(1000);
+        source.configure(Sections.section("numbers", "batchSize", "16"));
+        List<CollectingSink> partitions = new ArrayList<CollectingSink>();
+        for (int i = 0; i < 4; i++) {
+            CollectingSink partition = new CollectingSink();
+            partition.configure(Sections.section("sink-" + i));
+            partitions.add(partition);
+        }
+        KeyExtractor lastDigit = new KeyExtractor() {
+            @Override
+            public Object getKey(CharSequence message) {
+                return message.charAt(message.length() - 1);
+            }
+        };
+
+        Pipeline pipeline = new Pipeline(Sections.section("pipeline", "queueDepth", "8"));
+        pipeline.addSink(partitions, lastDigit, Sections.section("sink", "batchSize", "4"));
+        pipeline.attach(source, Transform.IDENTITY);
+        source.exhausted.await();
+        pipeline.stop();
+
+        int total = 0;
+        Map<Object, Integer> owners = new HashMap<Object, Integer>();
+        for (int i = 0; i < partitions.size(); i++) {
+            int previous = -1;
+            for (String message : partitions.get(i).messages) {
+                Integer owner = owners.put(lastDigit.getKey(message), i);
+                Assert.assertTrue(owner == null || owner == i);
+                Assert.assertTrue(Integer.parseInt(message) > previous);
+                previous = Integer.parseInt(message);
+            }
+            total += partitions.get(i).messages.size();
+            Assert.assertEquals(partitions.get(i).messages.size(), pipeline.getMetrics().sink("sink-" + i).getMessages());
+        }
+        Assert.assertEquals(1000, total);
+        Assert.assertEquals(10, owners.size());
+    }
+
+    @Test
+    public void testGroupsMessagesIntoCommits() throws Exception {
+        CountingSource source = new CountingSource(100);
+        source.configure(Sections.section("numbers", "batchSize", "1"));
+        AsyncSink sink = new AsyncSink();
+        sink.configure(Sections.section("sink"));
+
+        Pipeline pipeline = new Pipeline(Sections.section("pipeline"));
+        pipeline.addSink(sink, Sections.section("sink", "batchSize", "50", "linger", "1000", "maxInFlight", "2"));
+        pipeline.attach(source, Transform.IDENTITY);
+        source.exhausted.await();
+        pipeline.stop();
+
+        Assert.assertEquals(100, sink.messages.size());
+        Assert.assertEquals(Arrays.asList(50, 50), sink.commits);
+        Assert.assertTrue(sink.flushes.get() >= 1);
+        Assert.assertEquals(1, sink.closes.get());
+    }
+
+    @Test
+    public void testSpillQueueRidesOutSinkOutage() throws Exception {
+        CountingSource source = new CountingSource(100);
+        source.configure(Sections.section("numbers", "batchSize", "10"));
+        FailingSink sink = new FailingSink(3);
+        sink.configure(Sections.section("sink"));
+
+        String spillDirectory = this.folder.getRoot().getPath();
+        Pipeline pipeline = new Pipeline(Sections.section("pipeline", "spillDirectory", spillDirectory));
+        pipeline.addSink(sink, Sections.section("sink", "batchSize", "10", "retryInterval", "10"));
+        pipeline.attach(source, Transform.IDENTITY);
+        source.exhausted.await();
+        pipeline.stop();
+
+        Assert.assertEquals(100, sink.messages.size());
+        Assert.assertEquals(100, new HashSet<String>(sink.messages).size());
+    }
+
+    @Test
+    public void testSpillQueueReplaysAfterRestart() throws Exception {
+        String directory = this.folder.getRoot().getPath();
+        CountingSource source = new CountingSource(50);
+        source.configure(Sections.section("numbers"));
+        FailingSink down = new FailingSink(Integer.MAX_VALUE);
+        down.configure(Sections.section("sink"));
+        Pipeline pipeline = new Pipeline(Sections.section("pipeline"));
+        pipeline.addSink(down, Sections.section("sink", "spillDirectory", directory, "retryInterval", "10"));
+        pipeline.attach(source, Transform.IDENTITY);
+        source.exhausted.await();
+        pipeline.stop();
+        Assert.assertTrue(down.messages.isEmpty());
+
+        CollectingSink up = new CollectingSink();
+        up.configure(Sections.section("sink"));
+        pipeline = new Pipeline(Sections.section("pipeline"));
+        pipeline.addSink(up, Sections.section("sink", "spillDirectory", directory));
+        pipeline.start();
+        pipeline.stop();
+        Assert.assertEquals(50, up.messages.size());
+    }
+
+    static class FailingSink extends CollectingSink {
+        private final AtomicInteger failures;
+
+        FailingSink(int failures) {
+            this.failures = new AtomicInteger(failures);
+        }
+
+        @Override
+        public CompletableFuture<Void> write(List<String> batch) {
+            if (this.failures.getAndDecrement() > 0) {
+                CompletableFuture<Void> future = new CompletableFuture<Void>();
+                future.completeExceptionally(new IllegalStateException("The sink is down."));
+                return future;
+            }
+            return super.write(batch);
+        }
+    }
+
+    static class AsyncSink extends CollectingSink {
+        final List<Integer> commits = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger flushes = new AtomicInteger();
+        final AtomicInteger closes = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<Void> write(final List<String> batch) {
+            this.commits.add(batch.size());
+            return CompletableFuture.runAsync(new Runnable() {
+                @Override
+                public void run() {
+                    messages.addAll(batch);
+                }
+            });
+        }
+
+        @Override
+        public void flush() {
+            this.flushes.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+            this.closes.incrementAndGet();
+        }
+    }
+
+    static class CountingByteSource extends ByteSource {
+        final CountDownLatch exhausted = new CountDownLatch(1);
+        private final AtomicInteger next = new AtomicInteger();
+        private final int count;
+
+        CountingByteSource(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public boolean read(ByteBuffer buffer) {
+            int value = this.next.getAndIncrement();
+            if (value < this.count) {
+                buffer.put(("message " + value).getBytes(UTF8));
+                return true;
+            }
+            this.exhausted.countDown();
+            return false;
+        }
+    }
+
+    static class CollectingByteSink extends CollectingSink implements ByteSink {
+        @Override
+        public CompletableFuture<Void> writeMessages(List<Message> batch) {
+            for (Message message : batch) {
+                ByteBuffer buffer = message.getBuffer();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                this.messages.add(new String(bytes, UTF8));
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    static class CountingSource extends Source {
+        final CountDownLatch exhausted = new CountDownLatch(1);
+        private final AtomicInteger next = new AtomicInteger();
+        private final int count;
+
+        CountingSource(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public String take() {
+            int value = this.next.getAndIncrement();
+            if (value < this.count) {
+                return String.valueOf(value);
+            }
+            this.exhausted.countDown();
+            return null;
+        }
+    }
+
+    static class CollectingSink implements Sink {
+        final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicInteger closed = new AtomicInteger();
+        private String name;
+
+        @Override
+        public CompletableFuture<Void> write(List<String> batch) {
+            this.messages.addAll(batch);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            this.closed.incrementAndGet();
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public void configure(Configuration config) {
+            this.name = config.getSectionName();
+        }
+    }
+}
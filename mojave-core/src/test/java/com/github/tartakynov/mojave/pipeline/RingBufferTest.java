@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class RingBufferTest {
+    @Test
+    public void testDrainToKeepsOrder() throws Exception {
+        RingBuffer<String> buffer = new RingBuffer<String>(4);
+        buffer.putAll(Arrays.asList("a", "b", "c"));
+        buffer.put("d");
+        List<String> batch = new ArrayList<String>();
+        Assert.assertEquals(3, buffer.drainTo(batch, 3, 0));
+        buffer.put("e");
+        Assert.assertEquals(2, buffer.drainTo(batch, 10, 0));
+        Assert.assertEquals(Arrays.asList("a", "b", "c", "d", "e"), batch);
+        Assert.assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testDrainToTimesOut() throws Exception {
+        RingBuffer<String> buffer = new RingBuffer<String>(1);
+        List<String> batch = new ArrayList<String>();
+        Assert.assertEquals(0, buffer.drainTo(batch, 1, TimeUnit.MILLISECONDS.toNanos(5)));
+    }
+
+    @Test
+    public void testPutBlocksWhileFull() throws Exception {
+        final RingBuffer<String> buffer = new RingBuffer<String>(2);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    buffer.putAll(Arrays.asList("a", "b", "c", "d", "e"));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        producer.start();
+        producer.join(100);
+        Assert.assertTrue(producer.isAlive());
+        Assert.assertEquals(2, buffer.size());
+
+        List<String> batch = new ArrayList<String>();
+        while (batch.size() < 5) {
+            buffer.drainTo(batch, 5, TimeUnit.SECONDS.toNanos(1));
+        }
+        producer.join();
+        Assert.assertEquals(Arrays.asList("a", "b", "c", "d", "e"), batch);
+    }
+}
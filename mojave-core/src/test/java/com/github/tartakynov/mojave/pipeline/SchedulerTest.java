@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.pipeline;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SchedulerTest {
+    private Scheduler scheduler;
+
+    @Before
+    public void setUp() {
+        this.scheduler = new Scheduler(2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.scheduler.shutdown();
+    }
+
+    @Test
+    public void testRunsMoreConsumersThanThreads() throws Exception {
+        final CountDownLatch started = new CountDownLatch(5);
+        final AtomicInteger steps = new AtomicInteger();
+        List<Runnable> consumers = new ArrayList<Runnable>();
+        for (int i = 0; i < 5; i++) {
+            consumers.add(new Runnable() {
+                private boolean first = true;
+
+                @Override
+                public void run() {
+                    if (this.first) {
+                        this.first = false;
+                        started.countDown();
+                    }
+                    steps.incrementAndGet();
+                }
+            });
+        }
+
+        Scheduler.Group group = this.scheduler.schedule(consumers);
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        group.stop();
+        group.await();
+
+        int stepsAfterStop = steps.get();
+        Thread.sleep(20);
+        Assert.assertEquals(stepsAfterStop, steps.get());
+    }
+
+    @Test
+    public void testStopWaitsForCurrentStep() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final AtomicInteger finished = new AtomicInteger();
+        List<Runnable> consumers = new ArrayList<Runnable>();
+        consumers.add(new Runnable() {
+            @Override
+            public void run() {
+                entered.countDown();
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                finished.incrementAndGet();
+            }
+        });
+
+        Scheduler.Group group = this.scheduler.schedule(consumers);
+        Assert.assertTrue(entered.await(5, TimeUnit.SECONDS));
+        group.stop();
+        group.await();
+        Assert.assertTrue(finished.get() >= 1);
+    }
+
+    @Test(timeout = 5000)
+    public void testCountsFailedConsumersAsDone() throws Exception {
+        List<Runnable> consumers = new ArrayList<Runnable>();
+        consumers.add(new Runnable() {
+            @Override
+            public void run() {
+                throw new AssertionError("step failed");
+            }
+        });
+
+        Scheduler.Group group = this.scheduler.schedule(consumers);
+        group.await();
+    }
+
+    @Test
+    public void testRunsExitActionsWhenThreadsStop() throws Exception {
+        final AtomicInteger registered = new AtomicInteger();
+        final AtomicInteger exited = new AtomicInteger();
+        final Runnable exit = new Runnable() {
+            @Override
+            public void run() {
+                exited.incrementAndGet();
+            }
+        };
+        List<Runnable> consumers = new ArrayList<Runnable>();
+        consumers.add(new Runnable() {
+            private boolean first = true;
+
+            @Override
+            public void run() {
+                if (this.first && Scheduler.onThreadExit(exit)) {
+                    registered.incrementAndGet();
+                }
+                this.first = false;
+            }
+        });
+
+        Scheduler.Group group = this.scheduler.schedule(consumers);
+        Thread.sleep(20);
+        group.stop();
+        group.await();
+        this.scheduler.shutdown();
+
+        Assert.assertEquals(1, registered.get());
+        Assert.assertEquals(1, exited.get());
+        Assert.assertFalse(Scheduler.onThreadExit(exit));
+    }
+
+    @Test
+    public void testRunsConsumersOnOwnThreads() throws Exception {
+        Scheduler threads = new Scheduler(ExecutionMode.POOLED.newThreadFactory("test-consumer-"));
+        final Set<String> names = Collections.synchronizedSet(new HashSet<String>());
+        final CountDownLatch started = new CountDownLatch(3);
+        List<Runnable> consumers = new ArrayList<Runnable>();
+        for (int i = 0; i < 3; i++) {
+            consumers.add(new Runnable() {
+                @Override
+                public void run() {
+                    if (names.add(Thread.currentThread().getName())) {
+                        started.countDown();
+                    }
+                }
+            });
+        }
+
+        Scheduler.Group group = threads.schedule(consumers);
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        group.stop();
+        group.await();
+        threads.shutdown();
+        Assert.assertEquals(3, names.size());
+    }
+}
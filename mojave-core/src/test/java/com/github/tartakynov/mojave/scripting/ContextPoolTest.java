@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ContextPoolTest {
+    @Test
+    public void testKeepsSettingsOfEnteredContext() {
+        Context ctx = Context.enter();
+        try {
+            ctx.setOptimizationLevel(9);
+            ContextPool pool = new ContextPool(ctx);
+            ctx.setOptimizationLevel(-1);
+
+            Assert.assertSame(ctx, pool.current());
+            Assert.assertEquals(-1, ctx.getOptimizationLevel());
+        } finally {
+            Context.exit();
+        }
+        Assert.assertNull(Context.getCurrentContext());
+    }
+
+    @Test
+    public void testEntersContextsWithPoolSettings() throws Exception {
+        final ContextPool pool;
+        Context ctx = Context.enter();
+        try {
+            ctx.setOptimizationLevel(-1);
+            pool = new ContextPool(ctx);
+        } finally {
+            Context.exit();
+        }
+
+        final AtomicReference<Context> entered = new AtomicReference<Context>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                entered.set(pool.current());
+            }
+        });
+        thread.start();
+        thread.join();
+        Assert.assertEquals(-1, entered.get().getOptimizationLevel());
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import com.github.tartakynov.mojave.Configuration;
+import com.github.tartakynov.mojave.Sink;
+import com.github.tartakynov.mojave.Source;
+import com.github.tartakynov.mojave.exceptions.ConfigurationException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class MojaveTest {
+    private static final Queue<String> input = new ConcurrentLinkedQueue<String>();
+    private static final BlockingQueue<String> output = new LinkedBlockingQueue<String>();
+    private static final ConcurrentMap<String, String> partitioned = new ConcurrentHashMap<String, String>();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Global global;
+
+    @Before
+    public void setUp() throws Exception {
+        input.clear();
+        output.clear();
+        partitioned.clear();
+        this.global = new Global(Context.enter(), false);
+    }
+
+    @After
+    public void tearDown() {
+        Context.exit();
+    }
+
+    @Test
+    public void testRunsScriptedPipeline() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            input.add(String.valueOf(i));
+        }
+        this.global.run(MojaveTest.class.getClassLoader().getResource("pipeline.js").getFile());
+
+        for (int i = 0; i < 50; i++) {
+            String message = output.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(message);
+            Assert.assertTrue(message.startsWith("even "));
+        }
+        ((Mojave) this.global.get("mojave", this.global)).stop();
+        Assert.assertTrue(output.isEmpty());
+        Assert.assertEquals(100.0, this.evaluate("metrics.source('numbers').messages"), 0);
+        Assert.assertEquals(50.0, this.evaluate("metrics.stage('numbers').messages"), 0);
+        Assert.assertEquals(50.0, this.evaluate("metrics.sink('out').messages"), 0);
+    }
+
+    @Test
+    public void testReloadReplacesCallbacks() throws Exception {
+        File script = File.createTempFile("reload", ".js");
+        try {
+            write(script, "v1");
+            this.global.run(script.getPath());
+            Object mojave = this.global.get("mojave", this.global);
+            input.add("a");
+            Assert.assertEquals("v1 a", output.poll(5, TimeUnit.SECONDS));
+
+            write(script, "v2");
+            script.setLastModified(script.lastModified() + 2000);
+            this.global.reload();
+            Assert.assertSame(mojave, this.global.get("mojave", this.global));
+            input.add("b");
+            Assert.assertEquals("v2 b", output.poll(5, TimeUnit.SECONDS));
+            ((Mojave) mojave).stop();
+        } finally {
+            script.delete();
+        }
+    }
+
+    @Test
+    public void testReloadSwapsModulesOnlyOnSuccess() throws Exception {
+        File module = this.folder.newFile("module.js");
+        File script = this.folder.newFile("main.js");
+        writeText(module, "exports.value = 1;");
+        writeText(script, "var module = require('module.js');");
+        this.global.run(script.getPath());
+        Map<String, Scriptable> modules = this.global.modules;
+        Object exports = this.global.get("module", this.global);
+
+        writeText(script, "var module = require('module.js'); throw new Error('broken');");
+        try {
+            this.global.reload();
+            Assert.fail();
+        } catch (RuntimeException ex) {
+            Assert.assertSame(modules, this.global.modules);
+        }
+
+        writeText(script, "var module = require('module.js');");
+        this.global.reload();
+        Assert.assertNotSame(modules, this.global.modules);
+        Assert.assertNotSame(exports, this.global.get("module", this.global));
+        Assert.assertSame(modules.get(module.getCanonicalPath()), exports);
+    }
+
+    @Test
+    public void testRunsStageWorkersInOwnScopes() throws Exception {
+        File script = File.createTempFile("main", ".js");
+        File stage = File.createTempFile("stage", ".js");
+        try {
+            FileWriter out = new FileWriter(stage);
+            try {
+                out.write("var calls = 0;\n"
+                        + "exports.transform = function (messages) {\n"
+                        + "    calls++;\n"
+                        + "    return messages.map(function (m) { return 'stage ' + m + ' ' + (calls > 0); });\n"
+                        + "};\n");
+            } finally {
+                out.close();
+            }
+            out = new FileWriter(script);
+            try {
+                out.write("mojave = new Mojave({sources: {s: {'class': '" + MemorySource.class.getName() + "', batchSize: 3}}, "
+                        + "sinks: {out: {'class': '" + MemorySink.class.getName() + "'}}});\n"
+                        + "mojave.sources.s.start(mojave.stage({script: '" + stage.getName() + "', workers: 3}));\n");
+            } finally {
+                out.close();
+            }
+            for (int i = 0; i < 100; i++) {
+                input.add(String.valueOf(i));
+            }
+            this.global.run(script.getPath());
+
+            for (int i = 0; i < 100; i++) {
+                Assert.assertEquals("stage " + i + " true", output.poll(5, TimeUnit.SECONDS));
+            }
+            Assert.assertFalse(this.global.has("calls", this.global));
+            ((Mojave) this.global.get("mojave", this.global)).stop();
+        } finally {
+            script.delete();
+            stage.delete();
+        }
+    }
+
+    @Test
+    public void testRoutesToPartitionsByScriptKey() throws Exception {
+        for (int i = 0; i < 90; i++) {
+            input.add("abc".charAt(i % 3) + ":" + i);
+        }
+        Context.getCurrentContext().evaluateString(this.global, "mojave = new Mojave({"
+                + "sources: {s: {'class': '" + MemorySource.class.getName() + "', batchSize: 8}}, "
+                + "sinks: {out: {'class': '" + MemorySink.class.getName() + "', partitions: 2, "
+                + "key: function (m) { return String(m).split(':')[0]; }}}});\n"
+                + "mojave.sources.s.start(function (messages) { return messages; });", "test", 1, null);
+
+        for (int i = 0; i < 90; i++) {
+            Assert.assertNotNull(output.poll(5, TimeUnit.SECONDS));
+        }
+        ((Mojave) this.global.get("mojave", this.global)).stop();
+        Assert.assertEquals(90.0, this.evaluate("metrics.sink('out-0').messages + metrics.sink('out-1').messages"), 0);
+        Assert.assertEquals(90, partitioned.size());
+        for (Map.Entry<String, String> entry : partitioned.entrySet()) {
+            String key = entry.getKey().split(":")[0];
+            for (Map.Entry<String, String> other : partitioned.entrySet()) {
+                if (other.getKey().startsWith(key + ":")) {
+                    Assert.assertEquals(entry.getValue(), other.getValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReportsInitTimesOfDependentComponents() throws Exception {
+        Context.getCurrentContext().evaluateString(this.global, "mojave = new Mojave({"
+                + "sources: {s: {'class': '" + MemorySource.class.getName() + "', dependsOn: ['sinks.out']}}, "
+                + "sinks: {out: {'class': '" + MemorySink.class.getName() + "', partitions: 2}}});", "test", 1, null);
+
+        Assert.assertEquals("sinks.out-0,sinks.out-1,sources.s", Context.toString(Context.getCurrentContext()
+                .evaluateString(this.global, "Object.keys(mojave.initTimes).join()", "test", 1, null)));
+        Assert.assertTrue(this.evaluate("mojave.initTimes['sources.s']") >= 0);
+        ((Mojave) this.global.get("mojave", this.global)).stop();
+    }
+
+    @Test
+    public void testChangesRateLimitsAtRuntime() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            input.add(String.valueOf(i));
+        }
+        Context.getCurrentContext().evaluateString(this.global, "mojave = new Mojave({"
+                + "sources: {s: {'class': '" + MemorySource.class.getName() + "', batchSize: 1, messageRate: 0.5, messageBurst: 1}}, "
+                + "sinks: {out: {'class': '" + MemorySink.class.getName() + "', partitions: 2}}});\n"
+                + "mojave.sources.s.start(function (messages) { return messages; });", "test", 1, null);
+
+        Assert.assertNotNull(output.poll(5, TimeUnit.SECONDS));
+        Assert.assertNull(output.poll(200, TimeUnit.MILLISECONDS));
+        Context.getCurrentContext().evaluateString(this.global, "mojave.limit('sources.s', {messageRate: 0});\n"
+                + "mojave.limit('sinks.out', {byteRate: 1000000});", "test", 1, null);
+        for (int i = 1; i < 20; i++) {
+            Assert.assertNotNull(output.poll(5, TimeUnit.SECONDS));
+        }
+        Mojave mojave = (Mojave) this.global.get("mojave", this.global);
+        try {
+            mojave.limit("sinks.missing", Context.getCurrentContext().newObject(this.global));
+            Assert.fail();
+        } catch (ConfigurationException ex) {
+            Assert.assertEquals("Unknown component: sinks.missing", ex.getMessage());
+        }
+        mojave.stop();
+    }
+
+    @Test
+    public void testAggregatesDeclaredWindows() throws Exception {
+        for (int i = 0; i < 30; i++) {
+            input.add("abc".charAt(i % 3) + ":" + i);
+        }
+        Context.getCurrentContext().evaluateString(this.global, "mojave = new Mojave({"
+                + "sources: {s: {'class': '" + MemorySource.class.getName() + "', batchSize: 8}}, "
+                + "sinks: {out: {'class': '" + MemorySink.class.getName() + "'}}, "
+                + "windows: {w: {size: 3600000, aggregates: ['count', 'max'], "
+                + "key: function (m) { return String(m).split(':')[0]; }, "
+                + "value: function (m) { return Number(String(m).split(':')[1]); }}}});\n"
+                + "mojave.sources.s.start(mojave.windows.w);", "test", 1, null);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!input.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        ((Mojave) this.global.get("mojave", this.global)).stop();
+        Assert.assertEquals(3, output.size());
+        for (String message : output) {
+            Assert.assertTrue(message, message.matches("\\{\"window\":\"w\",\"key\":\"[abc]\",\"start\":\\d+,\"end\":\\d+,\"count\":10,\"max\":2[789]\\.0}"));
+        }
+    }
+
+    private double evaluate(String expression) {
+        return Context.toNumber(Context.getCurrentContext().evaluateString(this.global, expression, "test", 1, null));
+    }
+
+    private static void writeText(File file, String text) throws IOException {
+        FileWriter out = new FileWriter(file);
+        try {
+            out.write(text);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void write(File script, String version) throws IOException {
+        FileWriter out = new FileWriter(script);
+        try {
+            out.write("mojave = new Mojave({sources: {s: {'class': '" + MemorySource.class.getName() + "'}}, "
+                    + "sinks: {out: {'class': '" + MemorySink.class.getName() + "'}}});\n"
+                    + "mojave.sources.s.start(function (messages) { return '" + version + " ' + messages[0]; });\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    public static class MemorySource extends Source {
+        @Override
+        public String take() {
+            return input.poll();
+        }
+    }
+
+    public static class MemorySink implements Sink {
+        private String name;
+
+        @Override
+        public CompletableFuture<Void> write(List<String> batch) {
+            for (String message : batch) {
+                partitioned.put(message, this.name);
+            }
+            output.addAll(batch);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public void configure(Configuration config) {
+            this.name = config.getSectionName();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+public class ScriptCacheTest {
+    private Context context;
+    private File directory;
+    private File script;
+
+    private static void write(File file, String source) throws IOException {
+        FileWriter out = new FileWriter(file);
+        try {
+            out.write(source);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        this.context = Context.enter();
+        this.directory = File.createTempFile("mojave", "");
+        this.directory.delete();
+        this.directory.mkdirs();
+        this.script = new File(this.directory, "answer.js");
+        write(this.script, "var answer = 40 + 2;");
+    }
+
+    @After
+    public void tearDown() {
+        Context.exit();
+        delete(this.directory);
+    }
+
+    @Test
+    public void testReturnsCachedScriptUntilModified() throws Exception {
+        ScriptCache cache = new ScriptCache();
+        Script first = cache.get(this.context, this.script);
+        Assert.assertSame(first, cache.get(this.context, new File(this.directory, "./answer.js")));
+
+        write(this.script, "var answer = 43;");
+        this.script.setLastModified(this.script.lastModified() + 2000);
+        Assert.assertNotSame(first, cache.get(this.context, this.script));
+    }
+
+    @Test
+    public void testLoadsCompiledClassesFromDirectory() throws Exception {
+        File classes = new File(this.directory, "classes");
+        this.context.setOptimizationLevel(9);
+        ScriptCache cache = new ScriptCache();
+        cache.setDirectory(classes);
+        cache.get(this.context, this.script);
+        Assert.assertEquals(1, classes.listFiles().length);
+
+        ScriptCache restarted = new ScriptCache();
+        restarted.setDirectory(classes);
+        Script script = restarted.get(this.context, this.script);
+        Scriptable scope = this.context.initStandardObjects();
+        script.exec(this.context, scope);
+        Assert.assertEquals(42, Context.toNumber(scope.get("answer", scope)), 0.001);
+    }
+
+    @Test
+    public void testDeletesClassesOfOlderVersions() throws Exception {
+        File classes = new File(this.directory, "classes");
+        this.context.setOptimizationLevel(9);
+        ScriptCache cache = new ScriptCache();
+        cache.setDirectory(classes);
+        cache.get(this.context, this.script);
+        String[] first = classes.list();
+
+        write(this.script, "var answer = 43;");
+        this.script.setLastModified(this.script.lastModified() + 2000);
+        cache.get(this.context, this.script);
+        String[] second = classes.list();
+        Assert.assertEquals(1, second.length);
+        Assert.assertNotEquals(first[0], second[0]);
+    }
+}
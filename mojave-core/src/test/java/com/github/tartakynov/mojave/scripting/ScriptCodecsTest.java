@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.WrappedException;
+
+public class ScriptCodecsTest {
+    private Global global;
+
+    @Before
+    public void setUp() throws Exception {
+        this.global = new Global(Context.enter(), false);
+    }
+
+    @After
+    public void tearDown() {
+        Context.exit();
+    }
+
+    @Test
+    public void testReadsFieldsOfJsonViews() {
+        this.evaluate("var m = json('{\"user\": {\"id\": 42, \"tags\": [\"a\", \"b\"]}, \"text\": \"hi\"}');");
+
+        Assert.assertEquals(42.0, this.evaluate("m.user.id"));
+        Assert.assertEquals("a,b", this.evaluate("m.user.tags.join(',')"));
+        Assert.assertEquals(true, this.evaluate("m.missing === undefined && 'text' in m"));
+        Assert.assertEquals("{\"id\": 42, \"tags\": [\"a\", \"b\"]}", this.evaluate("toJson(m.user)"));
+
+        this.evaluate("m.text = 'changed'; delete m.user;");
+        Assert.assertEquals("{\"text\":\"changed\"}", this.evaluate("toJson(m)"));
+    }
+
+    @Test
+    public void testKeepsSourceOfViewsOnlyRead() {
+        this.evaluate("var m = json('{\"a\": {\"b\": [1, 2]}, \"c\": 3}');");
+
+        Assert.assertEquals("[object Object]", this.evaluate("'' + m"));
+        Assert.assertEquals("a,c", this.evaluate("var names = []; for (var name in m) names.push(name); names.join(',')"));
+        Assert.assertEquals("{\"a\": {\"b\": [1, 2]}, \"c\": 3}", this.evaluate("toJson(m)"));
+
+        this.evaluate("m.a.b.push(3);");
+        Assert.assertEquals("{\"a\":{\"b\":[1,2,3]},\"c\":3}", this.evaluate("toJson(m)"));
+    }
+
+    @Test
+    public void testRejectsEmptyJson() {
+        try {
+            this.evaluate("json('  ')");
+            Assert.fail();
+        } catch (WrappedException ex) {
+            Assert.assertTrue(ex.getWrappedException() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void testParsesAndSerializesJson() {
+        Assert.assertEquals(3.0, this.evaluate("parseJson('{\"a\": [1, {\"b\": 3}]}').a[1].b"));
+        Assert.assertEquals("{\"a\":[1,2.5,null],\"s\":\"q\\\"\",\"n\":null}",
+                this.evaluate("toJson({a: [1, 2.5, undefined], s: 'q\"', n: null, f: function () {}})"));
+    }
+
+    @Test
+    public void testSplitsAndJoinsDelimitedLines() {
+        Assert.assertEquals("b,c", this.evaluate("csv('a,\"b,c\",d')[1]"));
+        Assert.assertEquals("3", this.evaluate("csvField('1|2|3', 2, '|')"));
+        Assert.assertEquals(true, this.evaluate("csvField('1,2', 5) === undefined"));
+        Assert.assertEquals(true, this.evaluate("csvField('1,2', -1) === undefined"));
+        Assert.assertEquals("x\t\"y\"\"\"\t", this.evaluate("toCsv(['x', 'y\"', null], '\\t')"));
+    }
+
+    private Object evaluate(String source) {
+        return Context.getCurrentContext().evaluateString(this.global, source, "test", 1, null);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+
+public class ScriptableCacheTest {
+    private Global global;
+
+    @Before
+    public void setUp() throws Exception {
+        this.global = new Global(Context.enter(), false);
+    }
+
+    @After
+    public void tearDown() {
+        Context.exit();
+    }
+
+    @Test
+    public void testLoadsMissesWithScriptLoader() {
+        this.evaluate("var loads = 0;\n"
+                + "var users = cache('users', {maxEntries: 2, loader: function (id) { loads++; return {id: id, name: 'user ' + id}; }});");
+
+        Assert.assertEquals("user 1", this.evaluate("users.get(1).name"));
+        Assert.assertEquals("user 1", this.evaluate("users.get('1').name"));
+        Assert.assertEquals(1.0, this.evaluate("loads"));
+        this.evaluate("users.get(2); users.get(3);");
+        Assert.assertEquals(3.0, this.evaluate("loads"));
+        Assert.assertEquals(true, this.evaluate("users.stats().size == 2 && users.stats().evictions == 1"));
+        Assert.assertEquals(0.25, this.evaluate("users.stats().hitRate"));
+    }
+
+    @Test
+    public void testKeepsCacheAcrossCalls() {
+        this.evaluate("cache('codes', {eviction: 'ttl', ttl: 60000}).putAll({a: 'alpha', b: 'beta'});");
+
+        Assert.assertEquals("beta", this.evaluate("cache('codes').get('b')"));
+        Assert.assertEquals(true, this.evaluate("cache('codes').get('c') === undefined"));
+        this.evaluate("cache('codes').invalidate('b')");
+        Assert.assertEquals(1.0, this.evaluate("cache('codes').stats().size"));
+        Assert.assertEquals(true, this.evaluate("cache('codes') === cache('codes')"));
+    }
+
+    private Object evaluate(String source) {
+        return Context.getCurrentContext().evaluateString(this.global, source, "test", 1, null);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.tartakynov.mojave.scripting;
+
+import com.github.tartakynov.mojave.Configuration;
+import com.github.tartakynov.mojave.ConfigurationTest;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.util.Collections;
+
+public class ScriptableTreeTest extends ConfigurationTest {
+    @Override
+    protected Configuration getConfiguration(Object configJsObj) {
+        return new Configuration(new ScriptableTree((NativeObject) configJsObj));
+    }
+
+    @Test
+    public void testKeepsTypes() {
+        Configuration section = this.configuration.getSection("testSectionA");
+        Assert.assertEquals(1.0, section.getDouble("testPropertyAInt", 0.0), 0.001);
+        Assert.assertEquals("1", section.getArray("testPropertyAIntArray").get(0));
+        Assert.assertTrue(section.getBoolean("testPropertyABoolean", false));
+        Assert.assertEquals(7, section.getInt32("testSectionWithValue", 0));
+        Assert.assertEquals(8, section.getSection("testSectionWithValue").getInt32("testPropertyCInt", 0));
+    }
+
+    @Test
+    public void testIgnoresLaterChanges() {
+        NativeObject root = new NativeObject();
+        NativeObject section = new NativeObject();
+        ScriptableObject.putProperty(section, "key", "before");
+        ScriptableObject.putProperty(root, "section", section);
+        Configuration configuration = this.getConfiguration(root);
+
+        ScriptableObject.putProperty(section, "key", "after");
+        ScriptableObject.putProperty(root, "added", "value");
+        Assert.assertEquals("before", configuration.getSection("section").get("key"));
+        Assert.assertNull(configuration.get("added"));
+        Assert.assertEquals(Collections.singleton("section"), configuration.getSectionNames());
+    }
+}
@@ -4,6 +4,11 @@ config = {
         testPropertyAString: 'hello world',
         testPropertyADate: new Date(),
         testPropertyAIntArray: [1, 2, 3, 4, 5],
+        testPropertyABoolean: true,
+        testSectionWithValue: {
+            __: 7,
+            testPropertyCInt: 8
+        },
         testSectionB: {
             testPropertyBInt: 1
         }
@@ -0,0 +1,28 @@
+mojave = new Mojave({
+    pipeline: {
+        workerThreads: 2,
+        queueDepth: 16
+    },
+    sources: {
+        numbers: {
+            'class': 'com.github.tartakynov.mojave.scripting.MojaveTest$MemorySource',
+            concurrencyLevel: 2,
+            batchSize: 10
+        }
+    },
+    sinks: {
+        out: {
+            'class': 'com.github.tartakynov.mojave.scripting.MojaveTest$MemorySink'
+        }
+    }
+});
+
+mojave.sources.numbers.start(function (messages) {
+    var result = [];
+    for (var i = 0; i < messages.length; i++) {
+        if (messages[i] % 2 == 0) {
+            result.push('even ' + messages[i]);
+        }
+    }
+    return result;
+});
@@ -6,6 +6,9 @@ import org.mozilla.javascript.Context;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
 
 /**
  * Hello world!
@@ -14,11 +17,22 @@ public class App {
     private static final Logger log = LoggerFactory.getLogger(App.class);
 
     public static void main(String[] args) throws Exception {
+        String scriptCacheDir = System.getProperty("mojave.scriptCacheDir");
+        if (scriptCacheDir != null) {
+            Global.getScriptCache().setDirectory(new File(scriptCacheDir));
+        }
+
         Context context = Context.enter();
         context.setOptimizationLevel(9);
         try {
             Global global = new Global(context, false);
+            if (Boolean.parseBoolean(System.getProperty("mojave.jmx", "true"))) {
+                global.getMetrics().registerMBeans(ManagementFactory.getPlatformMBeanServer());
+            }
             global.run("c:\\src\\test.js");
+            if (Boolean.getBoolean("mojave.hotReload")) {
+                global.watch(1000);
+            }
             log.debug("hello");
         } finally {
             Context.exit();